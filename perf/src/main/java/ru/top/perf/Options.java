@@ -0,0 +1,54 @@
+package ru.top.perf;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Разбор аргументов вида --key=value (флаг без значения считается true)
+public final class Options {
+    private final Map<String, String> values = new HashMap<>();
+
+    public Options(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+
+    public boolean has(String key) {
+        return values.containsKey(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return values.containsKey(key) ? Integer.parseInt(values.get(key)) : defaultValue;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return values.containsKey(key) ? Long.parseLong(values.get(key)) : defaultValue;
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        return values.containsKey(key) ? Double.parseDouble(values.get(key)) : defaultValue;
+    }
+
+    // Список вида a=1,b=2 в упорядоченную карту
+    public Map<String, Double> getWeights(String key, String defaultValue) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String pair : get(key, defaultValue).split(",")) {
+            String[] parts = pair.trim().split("=");
+            weights.put(parts[0], Double.parseDouble(parts[1]));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.top.perf;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Запуск сервера чата отдельным процессом на временной базе SQLite
+public final class ServerProcess implements AutoCloseable {
+    private final Process process;
+    private final Path workDir;
+    private final int port;
+    private final int managementPort;
+    private final long startNanos;
+
+    private ServerProcess(Process process, Path workDir, int port, int managementPort, long startNanos) {
+        this.process = process;
+        this.workDir = workDir;
+        this.port = port;
+        this.managementPort = managementPort;
+        this.startNanos = startNanos;
+    }
+
+    // jvmArgs - параметры JVM (например, -XX:SharedArchiveFile), appArgs - свойства Spring (--key=value)
+    public static ServerProcess start(Path jar, Path database, List<String> jvmArgs, List<String> appArgs) throws IOException {
+        Path workDir = database.toAbsolutePath().getParent();
+        Files.createDirectories(workDir);
+        int port = freePort();
+        int managementPort = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.toAbsolutePath().toString());
+        command.add("--server.port=" + port);
+        command.add("--management.server.port=" + managementPort);
+        command.add("--chat.event-bus.tcp.port=" + freePort());
+        command.add("--spring.datasource.url=jdbc:sqlite:" + database.toAbsolutePath());
+        command.add("--spring.jpa.show-sql=false");
+        command.add("--camel.springboot.tracing=false");
+        command.addAll(appArgs);
+        long startNanos = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("server.log").toFile())
+                .start();
+        return new ServerProcess(process, workDir, port, managementPort, startNanos);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    // Эндпоинты actuator (порт management.server.port)
+    public String managementUrl() {
+        return "http://localhost:" + managementPort;
+    }
+
+    public Path workDir() {
+        return workDir;
+    }
+
+    // Ожидание первого успешного ответа; возвращает время от запуска процесса до него
+    public Duration awaitFirstResponse(Duration timeout) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl() + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"probe\",\"password\":\"probe\"}"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("Server exited with code " + process.exitValue() + ", see " + workDir.resolve("server.log"));
+            }
+            try {
+                HttpResponse<Void> response = client.send(probe, HttpResponse.BodyHandlers.discarding());
+                // пока Camel не поднял маршруты, Spring отвечает 403/404 сам
+                int status = response.statusCode();
+                if (status < 500 && status != 403 && status != 404) {
+                    return Duration.ofNanos(System.nanoTime() - startNanos);
+                }
+            } catch (IOException e) {
+                // сервер ещё не слушает порт
+            }
+            Thread.sleep(20);
+        }
+        throw new IOException("Server did not answer within " + timeout + ", see " + workDir.resolve("server.log"));
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(20, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
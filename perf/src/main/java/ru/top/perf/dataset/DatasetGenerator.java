@@ -0,0 +1,297 @@
+package ru.top.perf.dataset;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import ru.top.perf.Options;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+// Генератор синтетической базы chat.db для нагрузочных тестов и проверки планов запросов.
+// Пишет напрямую в SQLite пакетными вставками; при одинаковом seed результат повторяется
+// (кроме соли BCrypt у общего пароля пользователей).
+//
+// java -cp perf/target/chat-perf-1.0-SNAPSHOT.jar ru.top.perf.dataset.DatasetGenerator \
+//      --db=dataset.db --users=20000 --groups=2000 --messages=5000000 --seed=42
+//
+// Пользователи: user<N> / --password (по умолчанию password), email user<N>@example.com.
+// Активность пользователей и бесед подчиняется закону Ципфа (--user-alpha, --conversation-alpha),
+// размеры групп - усечённому Парето (--group-size-alpha, --min-group-size, --max-group-size),
+// длина сообщений - логнормальному распределению (--size-median, --size-sigma, --max-size).
+// Сообщения равномерно распределены по --days дням до --end и вставляются в хронологическом порядке.
+public final class DatasetGenerator {
+    private static final String[] WORDS = {
+            "hello", "meeting", "deploy", "lunch", "release", "review", "coffee", "report", "build", "ticket",
+            "merge", "tomorrow", "today", "please", "thanks", "agenda", "budget", "client", "design", "update",
+            "привет", "встреча", "релиз", "отчёт", "задача", "спасибо", "завтра", "сегодня", "обед", "проект"
+    };
+
+    private final SplittableRandom random;
+    private final int userCount;
+    private final int groupCount;
+    private final long messageCount;
+    private final int batchSize;
+
+    private final String[] userIds;
+    private final String[] groupIds;
+    private int[][] groupMembers;
+
+    private DatasetGenerator(Options options) {
+        this.random = new SplittableRandom(options.getLong("seed", 42));
+        this.userCount = options.getInt("users", 10_000);
+        this.groupCount = options.getInt("groups", 1_000);
+        this.messageCount = options.getLong("messages", 1_000_000);
+        this.batchSize = options.getInt("batch", 5_000);
+        if (userCount < 2) {
+            throw new IllegalArgumentException("At least two users are required");
+        }
+        this.userIds = new String[userCount];
+        this.groupIds = new String[groupCount];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        Path database = Path.of(options.get("db", "chat-dataset.db"));
+        if (Files.exists(database)) {
+            if (!options.has("overwrite")) {
+                throw new IllegalArgumentException(database + " already exists, pass --overwrite to replace it");
+            }
+            Files.delete(database);
+        }
+        Path schema = Path.of(options.get("schema", "src/main/resources/schema.sql"));
+
+        long started = System.nanoTime();
+        DatasetGenerator generator = new DatasetGenerator(options);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            prepare(connection, schema);
+            connection.setAutoCommit(false);
+            generator.insertUsers(connection, options.get("password", "password"));
+            generator.insertGroups(connection, options);
+            generator.insertMessages(connection, options);
+            connection.setAutoCommit(true);
+            finish(connection, options.has("analyze"));
+        }
+        System.out.printf("Dataset written to %s (%.1f MB) in %.1f s%n", database.toAbsolutePath(),
+                Files.size(database) / 1048576.0, (System.nanoTime() - started) / 1e9);
+    }
+
+    // Схема приложения плюс режимы SQLite для массовой загрузки: без журнала и fsync,
+    // файл всё равно пересоздаётся целиком при сбое
+    private static void prepare(Connection connection, Path schema) throws IOException, SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=OFF");
+            statement.execute("PRAGMA synchronous=OFF");
+            statement.execute("PRAGMA locking_mode=EXCLUSIVE");
+            statement.execute("PRAGMA temp_store=MEMORY");
+            statement.execute("PRAGMA cache_size=-262144");
+            for (String sql : Files.readString(schema).split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static void finish(Connection connection, boolean analyze) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (analyze) {
+                statement.execute("ANALYZE");
+            }
+            statement.execute("PRAGMA journal_mode=DELETE");
+        }
+    }
+
+    private void insertUsers(Connection connection, String password) throws SQLException {
+        // Один хеш на всех: BCrypt на миллионе строк занял бы часы
+        String hash = BCrypt.hashpw(password, BCrypt.gensalt());
+        LocalDate birthdateBase = LocalDate.of(1960, 1, 1);
+        long inserted = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO chat_user (id, username, password, birthdate, email, phone) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < userCount; i++) {
+                userIds[i] = uuid();
+                insert.setString(1, userIds[i]);
+                insert.setString(2, "user" + i);
+                insert.setString(3, hash);
+                insert.setDate(4, Date.valueOf(birthdateBase.plusDays(random.nextInt(45 * 365))));
+                insert.setString(5, "user" + i + "@example.com");
+                insert.setString(6, String.format("+7%010d", random.nextLong(10_000_000_000L)));
+                insert.addBatch();
+                inserted = flushIfFull(connection, insert, inserted + 1);
+            }
+            flush(connection, insert);
+        }
+        System.out.printf("users: %d%n", userCount);
+    }
+
+    private void insertGroups(Connection connection, Options options) throws SQLException {
+        int minSize = Math.min(options.getInt("min-group-size", 3), userCount);
+        int maxSize = Math.min(options.getInt("max-group-size", 5_000), userCount);
+        double sizeAlpha = options.getDouble("group-size-alpha", 1.2);
+        // Активные пользователи состоят в большем числе групп
+        double[] userWeights = Distributions.zipfCumulative(userCount, options.getDouble("user-alpha", 0.8));
+
+        groupMembers = new int[groupCount][];
+        long memberships = 0;
+        long inserted = 0;
+        try (PreparedStatement group = connection.prepareStatement("INSERT INTO chat_group (id, name) VALUES (?, ?)");
+             PreparedStatement member = connection.prepareStatement(
+                     "INSERT INTO chat_user_groups (user_id, group_id) VALUES (?, ?)")) {
+            for (int g = 0; g < groupCount; g++) {
+                groupIds[g] = uuid();
+                group.setString(1, groupIds[g]);
+                group.setString(2, "group" + g);
+                group.addBatch();
+                groupMembers[g] = pickMembers(Distributions.pareto(minSize, maxSize, sizeAlpha, random), userWeights);
+                for (int user : groupMembers[g]) {
+                    member.setString(1, userIds[user]);
+                    member.setString(2, groupIds[g]);
+                    member.addBatch();
+                    inserted = flushIfFull(connection, member, inserted + 1);
+                }
+                memberships += groupMembers[g].length;
+            }
+            group.executeBatch();
+            flush(connection, member);
+        }
+        int largest = 0;
+        for (int[] members : groupMembers) {
+            largest = Math.max(largest, members.length);
+        }
+        System.out.printf("groups: %d, memberships: %d, largest group: %d%n", groupCount, memberships, largest);
+    }
+
+    // Различные участники с весами активности; для больших групп взвешенный отбор
+    // с отказами слишком медленный, поэтому остаток добирается равномерно
+    private int[] pickMembers(int size, double[] userWeights) {
+        Set<Integer> members = new HashSet<>(size * 2);
+        int attempts = size * 4;
+        while (members.size() < size && attempts-- > 0) {
+            members.add(Distributions.sample(userWeights, random));
+        }
+        while (members.size() < size) {
+            members.add(random.nextInt(userCount));
+        }
+        return members.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void insertMessages(Connection connection, Options options) throws SQLException {
+        double privateShare = groupCount == 0 ? 1 : options.getDouble("private-share", 0.7);
+        double conversationAlpha = options.getDouble("conversation-alpha", 1.0);
+        double sizeMedian = options.getDouble("size-median", 40);
+        double sizeSigma = options.getDouble("size-sigma", 0.9);
+        int maxSize = options.getInt("max-size", 2_000);
+        LocalDateTime end = LocalDateTime.parse(options.get("end", "2025-01-01T00:00:00"));
+        LocalDateTime start = end.minusDays(options.getLong("days", 365));
+        long spanMillis = ChronoUnit.MILLIS.between(start, end);
+
+        int[][] privatePairs = pickPrivatePairs(options.getInt("private-conversations", userCount * 4),
+                Distributions.zipfCumulative(userCount, options.getDouble("user-alpha", 0.8)));
+        double[] privateWeights = Distributions.zipfCumulative(privatePairs.length, conversationAlpha);
+        double[] groupWeights = groupCount == 0 ? null : Distributions.zipfCumulative(groupCount, conversationAlpha);
+
+        long progressStep = Math.max(messageCount / 20, 1);
+        long began = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO chat_message (id, content, sender_id, recipient_id, group_id, chat_type, timestamp) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (long i = 0; i < messageCount; i++) {
+                insert.setString(1, uuid());
+                insert.setString(2, content(Distributions.logNormal(sizeMedian, sizeSigma, 1, maxSize, random)));
+                if (random.nextDouble() < privateShare) {
+                    int[] pair = privatePairs[Distributions.sample(privateWeights, random)];
+                    int sender = random.nextBoolean() ? 0 : 1;
+                    insert.setString(3, userIds[pair[sender]]);
+                    insert.setString(4, userIds[pair[1 - sender]]);
+                    insert.setString(5, null);
+                    insert.setString(6, "PRIVATE");
+                } else {
+                    int group = Distributions.sample(groupWeights, random);
+                    int[] members = groupMembers[group];
+                    insert.setString(3, userIds[members[random.nextInt(members.length)]]);
+                    insert.setString(4, null);
+                    insert.setString(5, groupIds[group]);
+                    insert.setString(6, "GROUP");
+                }
+                // Монотонное время с джиттером внутри своего интервала: вставка идёт в хронологическом порядке
+                long offset = (long) ((i + random.nextDouble()) * spanMillis / messageCount);
+                insert.setTimestamp(7, Timestamp.valueOf(start.plus(offset, ChronoUnit.MILLIS)));
+                insert.addBatch();
+                flushIfFull(connection, insert, i + 1);
+                if ((i + 1) % progressStep == 0) {
+                    double seconds = (System.nanoTime() - began) / 1e9;
+                    System.out.printf("messages: %d / %d (%.0f rows/s)%n", i + 1, messageCount, (i + 1) / seconds);
+                }
+            }
+            flush(connection, insert);
+        }
+        System.out.printf("messages: %d in %d private conversations and %d groups%n",
+                messageCount, privatePairs.length, groupCount);
+    }
+
+    private int[][] pickPrivatePairs(int count, double[] userWeights) {
+        long maxPairs = (long) userCount * (userCount - 1) / 2;
+        int target = (int) Math.min(count, maxPairs);
+        Set<Long> seen = new HashSet<>(target * 2);
+        List<int[]> pairs = new ArrayList<>(target);
+        while (pairs.size() < target) {
+            int a = Distributions.sample(userWeights, random);
+            int b = random.nextInt(userCount);
+            if (a == b) {
+                continue;
+            }
+            long key = (long) Math.min(a, b) * userCount + Math.max(a, b);
+            if (seen.add(key)) {
+                pairs.add(new int[]{a, b});
+            }
+        }
+        return pairs.toArray(new int[0][]);
+    }
+
+    private String content(int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.setLength(length);
+        return text.toString().stripTrailing();
+    }
+
+    // UUID версии 4 из генератора с seed, чтобы идентификаторы повторялись между запусками
+    private String uuid() {
+        long most = (random.nextLong() & 0xffffffffffff0fffL) | 0x0000000000004000L;
+        long least = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(most, least).toString();
+    }
+
+    private long flushIfFull(Connection connection, PreparedStatement statement, long pending) throws SQLException {
+        if (pending % batchSize == 0) {
+            flush(connection, statement);
+        }
+        return pending;
+    }
+
+    private static void flush(Connection connection, PreparedStatement statement) throws SQLException {
+        statement.executeBatch();
+        connection.commit();
+    }
+}
@@ -0,0 +1,53 @@
+package ru.top.perf.dataset;
+
+import java.util.SplittableRandom;
+
+// Распределения для генератора данных; все функции детерминированы при одинаковом seed
+final class Distributions {
+    private Distributions() {
+    }
+
+    // Накопленные веса закона Ципфа: элемент ранга k получает вес 1 / k^alpha
+    static double[] zipfCumulative(int n, double alpha) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, alpha);
+            cumulative[k] = sum;
+        }
+        return cumulative;
+    }
+
+    // Выбор индекса по накопленным весам двоичным поиском
+    static int sample(double[] cumulative, SplittableRandom random) {
+        double pick = random.nextDouble() * cumulative[cumulative.length - 1];
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < pick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Усечённое распределение Парето на [min, max] методом обратной функции
+    static int pareto(int min, int max, double alpha, SplittableRandom random) {
+        if (max <= min) {
+            return min;
+        }
+        double lowTail = Math.pow(min, -alpha);
+        double highTail = Math.pow(max, -alpha);
+        double value = Math.pow(lowTail - random.nextDouble() * (lowTail - highTail), -1 / alpha);
+        return (int) Math.min(max, Math.max(min, Math.round(value)));
+    }
+
+    // Логнормальное распределение с заданной медианой, усечённое снизу и сверху
+    static int logNormal(double median, double sigma, int min, int max, SplittableRandom random) {
+        double value = median * Math.exp(sigma * random.nextGaussian());
+        return (int) Math.min(max, Math.max(min, Math.round(value)));
+    }
+}
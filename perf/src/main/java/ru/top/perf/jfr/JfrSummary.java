@@ -0,0 +1,142 @@
+package ru.top.perf.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.HdrHistogram.Histogram;
+import ru.top.perf.Options;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Сводка записи JFR сервера (chat.jfr.enabled=true, настройки src/main/resources/jfr/chat.jfc):
+// время по маршрутам и этапам - шаги Camel, JWT, вызовы БД, сериализация - и паузы JVM, которые могли
+// совпасть со всплеском задержки (GC, ожидание монитора).
+// События читаются по одному, в памяти только гистограммы по ключам
+//
+// java -cp perf/target/chat-perf-1.0-SNAPSHOT.jar ru.top.perf.jfr.JfrSummary --file=chat.jfr --top=40 [--route=direct:sync]
+public final class JfrSummary {
+    private static final Pattern ID_SEGMENT = Pattern.compile("/[0-9a-fA-F-]{36}(?=/|$)");
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options(args);
+        Path file = Path.of(options.get("file", "chat.jfr"));
+        int top = options.getInt("top", 40);
+        String routeFilter = options.get("route", null);
+
+        Map<String, Stage> stages = new HashMap<>();
+        Map<String, Stage> jvm = new HashMap<>();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String type = event.getEventType().getName();
+                long micros = Math.max(1, event.getDuration().toNanos() / 1000);
+                if (type.startsWith("ru.top.chat.")) {
+                    String route = route(event);
+                    if (routeFilter != null && !routeFilter.equals(route)) {
+                        continue;
+                    }
+                    String stage = stage(type, event);
+                    stages.computeIfAbsent(route + "\u0000" + stage, key -> new Stage(route, stage))
+                            .record(micros, rows(event), bytes(event), failed(event));
+                } else if (type.equals("jdk.GCPhasePause") || type.equals("jdk.JavaMonitorEnter")) {
+                    jvm.computeIfAbsent(type, key -> new Stage("jvm", type)).record(micros, 0, 0, false);
+                }
+            }
+        }
+
+        System.out.printf("%-36s %-52s %8s %10s %8s %8s %8s %8s %10s %6s%n",
+                "route", "stage", "count", "total ms", "p50 us", "p99 us", "max us", "rows", "bytes", "fail");
+        List<Stage> sorted = new ArrayList<>(stages.values());
+        sorted.sort(Comparator.comparingLong((Stage stage) -> stage.totalMicros).reversed());
+        for (Stage stage : sorted.subList(0, Math.min(top, sorted.size()))) {
+            stage.print();
+        }
+        if (!jvm.isEmpty()) {
+            System.out.println();
+            for (Stage stage : jvm.values()) {
+                stage.print();
+            }
+        }
+    }
+
+    private static String route(RecordedEvent event) {
+        String route = event.hasField("routeId") ? event.getString("routeId") : null;
+        if (route == null) {
+            return "-";
+        }
+        // Пути запросов (события JWT) с идентификаторами сводятся к шаблону
+        return ID_SEGMENT.matcher(route).replaceAll("/{id}");
+    }
+
+    private static String stage(String type, RecordedEvent event) {
+        switch (type) {
+            case "ru.top.chat.RouteStage": {
+                String endpoint = event.getString("endpoint");
+                String stage = event.getString("stage") + "#" + event.getString("node");
+                return endpoint == null || endpoint.isEmpty() ? stage : stage + " " + endpoint;
+            }
+            case "ru.top.chat.Auth":
+                return "jwt";
+            case "ru.top.chat.DbCall":
+                return "db " + event.getString("operation");
+            case "ru.top.chat.Serialization":
+                return "json " + event.getString("type");
+            default:
+                return type;
+        }
+    }
+
+    private static long rows(RecordedEvent event) {
+        return event.hasField("rows") ? event.getInt("rows") : 0;
+    }
+
+    private static long bytes(RecordedEvent event) {
+        return event.hasField("bytes") ? event.getLong("bytes") : 0;
+    }
+
+    private static boolean failed(RecordedEvent event) {
+        return event.hasField("failed") && event.getBoolean("failed");
+    }
+
+    private static final class Stage {
+        private final String route;
+        private final String name;
+        private final Histogram micros = new Histogram(3_600_000_000L, 3);
+        private long totalMicros;
+        private long rows;
+        private long bytes;
+        private long failures;
+
+        Stage(String route, String name) {
+            this.route = route;
+            this.name = name;
+        }
+
+        void record(long micros, long rows, long bytes, boolean failed) {
+            this.micros.recordValue(Math.min(micros, this.micros.getHighestTrackableValue()));
+            this.totalMicros += micros;
+            this.rows += rows;
+            this.bytes += bytes;
+            if (failed) {
+                failures++;
+            }
+        }
+
+        void print() {
+            System.out.printf("%-36s %-52s %8d %10.1f %8d %8d %8d %8d %10d %6d%n",
+                    truncate(route, 36), truncate(name, 52), micros.getTotalCount(), totalMicros / 1000.0,
+                    micros.getValueAtPercentile(50), micros.getValueAtPercentile(99), micros.getMaxValue(),
+                    rows, bytes, failures);
+        }
+
+        private static String truncate(String value, int width) {
+            return value.length() <= width ? value : value.substring(0, width - 1) + "~";
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.top.perf.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+// Тонкий клиент REST API чата: построение запросов и синхронные вызовы для подготовки данных
+public final class ChatClient {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+    private final HttpClient http;
+
+    public ChatClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public HttpClient http() {
+        return http;
+    }
+
+    public String register(String username, String password) throws IOException, InterruptedException {
+        return call(post("/api/users/register", null, Map.of("username", username, "password", password))).path("id").asText();
+    }
+
+    public String login(String username, String password) throws IOException, InterruptedException {
+        return call(loginRequest(username, password)).path("token").asText();
+    }
+
+    public String createGroup(String token, String name) throws IOException, InterruptedException {
+        return call(post("/api/groups/create", token, Map.of("name", name))).path("id").asText();
+    }
+
+    public void joinGroup(String token, String groupId) throws IOException, InterruptedException {
+        call(post("/api/groups/join", token, Map.of("groupId", groupId)));
+    }
+
+    public HttpRequest loginRequest(String username, String password) {
+        return post("/api/auth/login", null, Map.of("username", username, "password", password));
+    }
+
+    public HttpRequest sendPrivate(String token, String senderId, String recipientId, String content) {
+        return post("/api/messages/private", token, Map.of("content", content, "senderId", senderId, "recipientId", recipientId));
+    }
+
+    public HttpRequest sendGroup(String token, String senderId, String groupId, String content) {
+        return post("/api/messages/group", token, Map.of("content", content, "senderId", senderId, "groupId", groupId));
+    }
+
+    public HttpRequest poll(String token, String otherUserId, String since) {
+        return get("/api/messages/private/conversation/" + otherUserId + "?since=" + encode(since), token);
+    }
+
+    public HttpRequest history(String token, String otherUserId) {
+        return get("/api/messages/private/history/" + otherUserId, token);
+    }
+
+    public HttpRequest groupMessages(String token, String groupId) {
+        return get("/api/messages/group/" + groupId, token);
+    }
+
+    public HttpRequest search(String token, String keyword) {
+        return get("/api/messages/search?keyword=" + encode(keyword), token);
+    }
+
+    private JsonNode call(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException(request.method() + " " + request.uri() + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return MAPPER.readTree(response.body());
+    }
+
+    public HttpRequest post(String path, String token, Map<String, ?> body) {
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)));
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.top.perf.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Статистика одного эндпоинта: гистограмма задержек (мкс) и коды ответов
+final class EndpointStats {
+    private final String name;
+    private final Histogram latencyMicros = new ConcurrentHistogram(3_600_000_000L, 3);
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    Histogram histogram() {
+        return latencyMicros;
+    }
+
+    // status = -1 для сетевых ошибок и таймаутов
+    void record(long latencyNanos, int status) {
+        latencyMicros.recordValue(Math.max(1, latencyNanos / 1000));
+        if (status >= 200 && status < 300) {
+            ok.increment();
+        } else {
+            failed.increment();
+        }
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    long total() {
+        return ok.sum() + failed.sum();
+    }
+
+    void print(PrintStream out, double seconds) {
+        Map<Integer, Long> codes = new TreeMap<>();
+        statuses.forEach((status, count) -> codes.put(status, count.sum()));
+        out.printf("%-14s %8d %9.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                name, total(), total() / seconds, failed.sum(),
+                latencyMicros.getValueAtPercentile(50) / 1000.0,
+                latencyMicros.getValueAtPercentile(90) / 1000.0,
+                latencyMicros.getValueAtPercentile(99) / 1000.0,
+                latencyMicros.getValueAtPercentile(99.9) / 1000.0,
+                latencyMicros.getMaxValue() / 1000.0,
+                codes);
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf("%-14s %8s %9s %7s %9s %9s %9s %9s %9s  %s%n",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "status codes");
+    }
+}
@@ -0,0 +1,239 @@
+package ru.top.perf.loadtest;
+
+import ru.top.perf.Options;
+import ru.top.perf.ServerProcess;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Нагрузочный тест с открытой моделью: запросы приходят пуассоновским потоком с заданной частотой
+// независимо от скорости ответов сервера, задержка считается от запланированного момента отправки
+// (без coordinated omission). По умолчанию запускает сервер на временной базе SQLite.
+//
+// java -jar perf/target/chat-perf-1.0-SNAPSHOT.jar --jar=target/chat-server-1.0-SNAPSHOT.jar \
+//      --users=200 --groups=20 --group-size=15 --rate=300 --warmup=10 --duration=60 \
+//      --mix=send=35,groupSend=10,poll=35,history=5,groupRead=8,search=5,login=2 --hdr-out=load-report
+// --base-url=http://host:port - нагрузка на уже запущенный сервер, --app-args="--key=value ..." - свойства запускаемого сервера,
+// --database=dataset.db - запуск на копии базы из DatasetGenerator вместо пустой
+public final class LoadTest {
+    private static final String DEFAULT_MIX = "send=35,groupSend=10,poll=35,history=5,groupRead=8,search=5,login=2";
+    private static final String PASSWORD = "load-test-password";
+    private static final String[] WORDS = {"hello", "meeting", "deploy", "lunch", "release", "review", "coffee", "report"};
+
+    private record User(String username, String id, String token) {
+    }
+
+    private record Group(String id, int[] members) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        int userCount = options.getInt("users", 100);
+        int groupCount = options.getInt("groups", 10);
+        int groupSize = options.getInt("group-size", 10);
+        double rate = options.getDouble("rate", 200);
+        long warmupSeconds = options.getLong("warmup", 10);
+        long durationSeconds = options.getLong("duration", 60);
+        int maxInFlight = options.getInt("max-in-flight", 5000);
+        SplittableRandom random = new SplittableRandom(options.getLong("seed", 42));
+        Map<String, Double> mix = options.getWeights("mix", DEFAULT_MIX);
+
+        ServerProcess server = null;
+        String baseUrl = options.get("base-url", null);
+        if (baseUrl == null) {
+            Path workDir = Files.createTempDirectory("chat-load-test");
+            Path database = workDir.resolve("chat.db");
+            if (options.has("database")) {
+                Files.copy(Path.of(options.get("database", "")), database);
+            }
+            List<String> appArgs = new ArrayList<>(List.of("--chat.rate-limit.enabled=false"));
+            if (options.has("app-args")) {
+                appArgs.addAll(Arrays.asList(options.get("app-args", "").split(" ")));
+            }
+            server = ServerProcess.start(Path.of(options.get("jar", "target/chat-server-1.0-SNAPSHOT.jar")),
+                    database, List.of(), appArgs);
+            Duration started = server.awaitFirstResponse(Duration.ofMinutes(2));
+            System.out.printf("Server started in %d ms at %s (work dir %s)%n", started.toMillis(), server.baseUrl(), workDir);
+            baseUrl = server.baseUrl();
+        }
+        try {
+            ChatClient client = new ChatClient(baseUrl);
+            List<User> users = createUsers(client, userCount);
+            List<Group> groups = createGroups(client, users, groupCount, groupSize, random);
+            System.out.printf("Prepared %d users and %d groups%n", users.size(), groups.size());
+
+            Map<String, EndpointStats> stats = new LinkedHashMap<>();
+            for (String operation : mix.keySet()) {
+                stats.put(operation, new EndpointStats(operation));
+            }
+            run(client, users, groups, mix, stats, rate, warmupSeconds, durationSeconds, maxInFlight, random);
+            if (options.has("hdr-out")) {
+                writeHistograms(Path.of(options.get("hdr-out", "")), stats);
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static List<User> createUsers(ChatClient client, int count) throws IOException, InterruptedException {
+        String prefix = "load" + Long.toString(System.currentTimeMillis(), 36) + "_";
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String username = prefix + i;
+            String id = client.register(username, PASSWORD);
+            users.add(new User(username, id, client.login(username, PASSWORD)));
+        }
+        return users;
+    }
+
+    private static List<Group> createGroups(ChatClient client, List<User> users, int count, int size,
+                                            SplittableRandom random) throws IOException, InterruptedException {
+        List<Group> groups = new ArrayList<>(count);
+        for (int g = 0; g < count; g++) {
+            User owner = users.get(random.nextInt(users.size()));
+            String groupId = client.createGroup(owner.token(), "load-group-" + g + "-" + System.nanoTime());
+            int[] members = random.ints(0, users.size()).distinct().limit(Math.min(size, users.size())).toArray();
+            for (int member : members) {
+                client.joinGroup(users.get(member).token(), groupId);
+            }
+            groups.add(new Group(groupId, members));
+        }
+        return groups;
+    }
+
+    private static void run(ChatClient client, List<User> users, List<Group> groups, Map<String, Double> mix,
+                            Map<String, EndpointStats> stats, double rate, long warmupSeconds, long durationSeconds,
+                            int maxInFlight, SplittableRandom random) throws InterruptedException {
+        String[] operations = mix.keySet().toArray(new String[0]);
+        double[] cumulative = new double[operations.length];
+        double sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += mix.get(operations[i]);
+            cumulative[i] = sum;
+        }
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        LongAdder dropped = new LongAdder();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        double meanIntervalNanos = 1_000_000_000d / rate;
+        long next = start;
+        System.out.printf("Running open-model workload: %.1f req/s, warmup %d s, measurement %d s%n", rate, warmupSeconds, durationSeconds);
+
+        while (next < end) {
+            next += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            double pick = random.nextDouble() * sum;
+            int index = 0;
+            while (cumulative[index] < pick) {
+                index++;
+            }
+            String operation = operations[index];
+            HttpRequest request = buildRequest(client, operation, users, groups, random);
+            boolean measured = next >= measureFrom;
+            if (!inFlight.tryAcquire()) {
+                // Клиент сам не успевает: фиксируем, а не замедляем поток запросов
+                if (measured) {
+                    dropped.increment();
+                }
+                continue;
+            }
+            long intendedStart = next;
+            client.http().sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                inFlight.release();
+                if (measured) {
+                    stats.get(operation).record(System.nanoTime() - intendedStart, error != null ? -1 : response.statusCode());
+                }
+            });
+        }
+        inFlight.acquire(maxInFlight);
+        report(System.out, stats, durationSeconds, dropped.sum());
+    }
+
+    private static HttpRequest buildRequest(ChatClient client, String operation, List<User> users, List<Group> groups,
+                                            SplittableRandom random) {
+        User user = users.get(random.nextInt(users.size()));
+        User other = users.get(random.nextInt(users.size()));
+        while (other == user && users.size() > 1) {
+            other = users.get(random.nextInt(users.size()));
+        }
+        switch (operation) {
+            case "send":
+                return client.sendPrivate(user.token(), user.id(), other.id(), sentence(random));
+            case "groupSend": {
+                Group group = groups.get(random.nextInt(groups.size()));
+                User member = users.get(group.members()[random.nextInt(group.members().length)]);
+                return client.sendGroup(member.token(), member.id(), group.id(), sentence(random));
+            }
+            case "poll":
+                return client.poll(user.token(), other.id(),
+                        LocalDateTime.now().minusSeconds(5).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            case "history":
+                return client.history(user.token(), other.id());
+            case "groupRead": {
+                Group group = groups.get(random.nextInt(groups.size()));
+                return client.groupMessages(users.get(group.members()[0]).token(), group.id());
+            }
+            case "search":
+                return client.search(user.token(), WORDS[random.nextInt(WORDS.length)]);
+            case "login":
+                return client.loginRequest(user.username(), PASSWORD);
+            default:
+                throw new IllegalArgumentException("Unknown operation in mix: " + operation);
+        }
+    }
+
+    private static String sentence(SplittableRandom random) {
+        StringBuilder text = new StringBuilder();
+        int words = 3 + random.nextInt(12);
+        for (int i = 0; i < words; i++) {
+            text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    // Полные распределения задержек в формате .hgrm (значения в миллисекундах)
+    private static void writeHistograms(Path directory, Map<String, EndpointStats> stats) throws IOException {
+        Files.createDirectories(directory);
+        for (EndpointStats endpoint : stats.values()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(endpoint.name() + ".hgrm")))) {
+                endpoint.histogram().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println("Latency histograms written to " + directory.toAbsolutePath());
+    }
+
+    private static void report(PrintStream out, Map<String, EndpointStats> stats, long seconds, long dropped) {
+        out.println();
+        EndpointStats.printHeader(out);
+        long total = 0;
+        for (EndpointStats endpoint : stats.values()) {
+            endpoint.print(out, seconds);
+            total += endpoint.total();
+        }
+        out.printf("%ntotal: %d requests, %.1f req/s, %d dropped by client (max in-flight reached)%n",
+                total, total / (double) seconds, dropped);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.top.perf.payload;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import ru.top.perf.Options;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+// Размер и время кодирования/разбора списка сообщений в JSON, Smile и CBOR - те же форматы и настройки,
+// что у PayloadCodec сервера (Smile с общими строковыми значениями). Сообщения в том же виде, что в ответах
+// /api/messages/private/history и /api/messages/search: переписка двух пользователей и группа из --group-members
+// участников, текст случайной длины до --max-content символов. Для каждого размера списка (--sizes) после
+// --warmup пачек измеряются --batches пачек по --batch-ms; печатается медиана времени на один список.
+// gzip-размер - для сравнения с JSON, сжатым на уровне HTTP
+//
+// java -cp perf/target/chat-perf-1.0-SNAPSHOT.jar ru.top.perf.payload.PayloadBenchmark --sizes=1,50,500
+public final class PayloadBenchmark {
+    private static final TypeReference<List<MessagePayload>> LIST = new TypeReference<>() {
+    };
+    private static final String[] WORDS = ("привет как дела ok see you tomorrow meeting at the office send me the file "
+            + "thanks 👍 созвон в пять давай завтра release deployed logs attached").split(" ");
+    // Время с миллисекундами, как в ответах сервера
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    // Сообщение в виде ответа сервера (Message сериализуется с id отправителя, получателя и группы)
+    public record MessagePayload(String id, String content, String chatType, String timestamp, String attachmentId,
+                                 String editedAt, String senderId, String groupId, String recipientId) {
+    }
+
+    private record Codec(String name, ObjectWriter writer, ObjectReader reader) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        int[] sizes = Arrays.stream(options.get("sizes", "1,50,500").split(",")).mapToInt(Integer::parseInt).toArray();
+        int groupMembers = options.getInt("group-members", 20);
+        int maxContent = options.getInt("max-content", 200);
+        long batchNanos = options.getLong("batch-ms", 200) * 1_000_000;
+        int warmup = options.getInt("warmup", 5);
+        int batches = options.getInt("batches", 11);
+
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        List<Codec> codecs = List.of(
+                codec("json", new ObjectMapper()),
+                codec("smile", new ObjectMapper(smileFactory)),
+                codec("cbor", new ObjectMapper(new CBORFactory())));
+
+        System.out.printf("%-8s %-7s %-8s %10s %10s %8s %12s %12s%n",
+                "chat", "format", "messages", "bytes", "gzip", "vs json", "encode us", "decode us");
+        for (String chat : List.of("private", "group")) {
+            for (int size : sizes) {
+                List<MessagePayload> messages = messages(chat, size, chat.equals("group") ? groupMembers : 2, maxContent);
+                long jsonBytes = 0;
+                for (Codec codec : codecs) {
+                    byte[] encoded = codec.writer().writeValueAsBytes(messages);
+                    List<MessagePayload> decoded = codec.reader().readValue(encoded);
+                    if (!decoded.equals(messages)) {
+                        throw new IllegalStateException(codec.name() + " round trip changed the payload");
+                    }
+                    if (codec.name().equals("json")) {
+                        jsonBytes = encoded.length;
+                    }
+                    double encodeMicros = measure(warmup, batches, batchNanos, () -> codec.writer().writeValueAsBytes(messages));
+                    double decodeMicros = measure(warmup, batches, batchNanos, () -> codec.reader().readValue(encoded));
+                    System.out.printf("%-8s %-7s %8d %10d %10d %7.0f%% %12.2f %12.2f%n", chat, codec.name(), size,
+                            encoded.length, gzip(encoded), 100.0 * encoded.length / jsonBytes, encodeMicros, decodeMicros);
+                }
+            }
+        }
+    }
+
+    private static Codec codec(String name, ObjectMapper mapper) {
+        return new Codec(name, mapper.writerFor(LIST), mapper.readerFor(LIST));
+    }
+
+    private interface Operation {
+        Object run() throws IOException;
+    }
+
+    // Результаты операций копятся здесь, чтобы JIT их не выбросил
+    private static volatile int sink;
+
+    // Медиана времени одной операции по пачкам, мкс; пачка - сколько операций успеет за batchNanos
+    private static double measure(int warmup, int batches, long batchNanos, Operation operation) throws IOException {
+        double[] samples = new double[batches];
+        for (int batch = -warmup; batch < batches; batch++) {
+            int hash = 0;
+            long operations = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                hash += operation.run().hashCode();
+                operations++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < batchNanos);
+            sink += hash;
+            if (batch >= 0) {
+                samples[batch] = elapsed / 1000.0 / operations;
+            }
+        }
+        Arrays.sort(samples);
+        return samples[batches / 2];
+    }
+
+    private static int gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.size();
+    }
+
+    // Детерминированный набор: одинаковый при одинаковых параметрах
+    private static List<MessagePayload> messages(String chat, int count, int participants, int maxContent) {
+        SplittableRandom random = new SplittableRandom(count * 31L + participants);
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < participants; i++) {
+            users.add(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+        String groupId = new UUID(random.nextLong(), random.nextLong()).toString();
+        LocalDateTime time = LocalDateTime.of(2025, 3, 1, 9, 0);
+        List<MessagePayload> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            time = time.plus(random.nextLong(1, 600_000), ChronoUnit.MILLIS);
+            String sender = users.get(random.nextInt(participants));
+            boolean group = chat.equals("group");
+            String recipient = group ? null : users.get(1 - users.indexOf(sender));
+            StringBuilder content = new StringBuilder();
+            int length = random.nextInt(3, Math.max(4, maxContent));
+            while (content.length() < length) {
+                content.append(content.length() == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            String timestamp = TIMESTAMP.format(time);
+            messages.add(new MessagePayload(new UUID(random.nextLong(), random.nextLong()).toString(), content.toString(),
+                    group ? "GROUP" : "PRIVATE", timestamp, null, random.nextInt(10) == 0 ? timestamp : null,
+                    sender, group ? groupId : null, recipient));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.top.perf.startup;
+
+import ru.top.perf.Options;
+import ru.top.perf.ServerProcess;
+import ru.top.perf.loadtest.ChatClient;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Время до первого ответа сервера (time-to-first-request) в трёх вариантах запуска:
+// обычный fat jar, fast-start (Spring AOT, профиль fast-start) и fast-start с AppCDS-архивом.
+// Архив создаётся тренировочным запуском с -XX:ArchiveClassesAtExit, если его ещё нет (или --retrain).
+//
+// mvn package -DskipTests && mvn -Pfast-start package -DskipTests && mvn -f perf/pom.xml package
+// java -cp perf/target/chat-perf-1.0-SNAPSHOT.jar ru.top.perf.startup.StartupBenchmark --runs=5
+public final class StartupBenchmark {
+    private static final List<String> FAST_START_JVM_ARGS = List.of("-Dspring.aot.enabled=true");
+    private static final List<String> FAST_START_APP_ARGS = List.of("--spring.profiles.active=fast-start");
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        Path jar = Path.of(options.get("jar", "target/chat-server-1.0-SNAPSHOT.jar"));
+        Path fastJar = Path.of(options.get("fast-jar", "target/fast-start/chat-server-1.0-SNAPSHOT-fast-start.jar"));
+        Path archive = Path.of(options.get("cds-archive", "target/fast-start/chat-server.jsa")).toAbsolutePath();
+        int runs = options.getInt("runs", 5);
+
+        if (options.has("retrain") || !Files.exists(archive)) {
+            train(fastJar, archive);
+        }
+
+        List<String> cdsJvmArgs = new ArrayList<>(FAST_START_JVM_ARGS);
+        cdsJvmArgs.add("-XX:SharedArchiveFile=" + archive);
+        long[] baseline = measure("baseline", jar, List.of(), List.of(), runs);
+        long[] fastStart = measure("fast-start", fastJar, FAST_START_JVM_ARGS, FAST_START_APP_ARGS, runs);
+        long[] fastStartCds = measure("fast-start+cds", fastJar, cdsJvmArgs, FAST_START_APP_ARGS, runs);
+
+        System.out.println();
+        System.out.printf("%-16s %8s %8s %8s%n", "mode", "min ms", "p50 ms", "max ms");
+        print("baseline", baseline);
+        print("fast-start", fastStart);
+        print("fast-start+cds", fastStartCds);
+        System.out.printf("%nmedian speed-up with fast-start+cds: %.2fx%n", baseline[runs / 2] / (double) fastStartCds[runs / 2]);
+    }
+
+    // Тренировочный запуск: сервер проходит основные маршруты, а при завершении JVM
+    // записывает все загруженные классы в динамический CDS-архив
+    private static void train(Path fastJar, Path archive) throws Exception {
+        System.out.println("Training run, writing CDS archive " + archive);
+        Files.deleteIfExists(archive);
+        List<String> jvmArgs = new ArrayList<>(FAST_START_JVM_ARGS);
+        jvmArgs.add("-XX:ArchiveClassesAtExit=" + archive);
+        ServerProcess server = ServerProcess.start(fastJar, Files.createTempDirectory("chat-startup").resolve("chat.db"),
+                jvmArgs, FAST_START_APP_ARGS);
+        try {
+            server.awaitFirstResponse(Duration.ofMinutes(3));
+            exercise(new ChatClient(server.baseUrl()));
+        } finally {
+            server.close();
+        }
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("JVM did not write " + archive + ", see " + server.workDir().resolve("server.log"));
+        }
+    }
+
+    private static void exercise(ChatClient client) throws Exception {
+        String aliceId = client.register("alice", "training");
+        String bobId = client.register("bob", "training");
+        String alice = client.login("alice", "training");
+        String bob = client.login("bob", "training");
+        String groupId = client.createGroup(alice, "training");
+        client.joinGroup(bob, groupId);
+        List<HttpRequest> requests = Arrays.asList(
+                client.sendPrivate(alice, aliceId, bobId, "hello"),
+                client.sendGroup(bob, bobId, groupId, "hello group"),
+                client.poll(bob, aliceId, "2000-01-01T00:00:00"),
+                client.history(alice, bobId),
+                client.groupMessages(alice, groupId),
+                client.search(alice, "hello"));
+        for (HttpRequest request : requests) {
+            client.http().send(request, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    // Каждый запуск - новый процесс на пустой базе; результат отсортирован
+    private static long[] measure(String mode, Path jar, List<String> jvmArgs, List<String> appArgs, int runs) throws Exception {
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            ServerProcess server = ServerProcess.start(jar, Files.createTempDirectory("chat-startup").resolve("chat.db"),
+                    jvmArgs, appArgs);
+            try {
+                millis[i] = server.awaitFirstResponse(Duration.ofMinutes(3)).toMillis();
+            } finally {
+                server.close();
+            }
+            System.out.printf("%s run %d: %d ms%n", mode, i + 1, millis[i]);
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private static void print(String mode, long[] millis) {
+        System.out.printf("%-16s %8d %8d %8d%n", mode, millis[0], millis[millis.length / 2], millis[millis.length - 1]);
+    }
+}
@@ -0,0 +1,119 @@
+package ru.top.perf.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ru.top.perf.Options;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Заглушка получателя вебхуков (chat.webhooks.destinations=http://localhost:<port>/hook) для проверки доставки:
+// принимает пачки {"events": [...]}, считает события и проверяет порядок внутри переписки. Повторно пришедший id -
+// дубль (повтор после сбоя, допустим), новый id меньше последнего в своей переписке - нарушение порядка.
+// --fail-rate отвечает 503 на долю запросов до разбора тела, --delay-ms задерживает ответ - проверка повторов
+// и ограничения параллельности
+//
+// java -cp perf/target/chat-perf-1.0-SNAPSHOT.jar ru.top.perf.webhook.WebhookStub --port=9099 --fail-rate=0.2 [--delay-ms=50]
+public final class WebhookStub {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final double failRate;
+    private final long delayMs;
+    private final Map<String, Long> lastIdByConversation = new HashMap<>();
+    private final Set<Long> seen = new HashSet<>();
+    private long batches;
+    private long failed;
+    private long events;
+    private long duplicates;
+    private long reordered;
+    private int inFlight;
+    private int maxInFlight;
+
+    private WebhookStub(double failRate, long delayMs) {
+        this.failRate = failRate;
+        this.delayMs = delayMs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        int port = options.getInt("port", 9099);
+        WebhookStub stub = new WebhookStub(options.getDouble("fail-rate", 0), options.getLong("delay-ms", 0));
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", stub::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        System.out.printf("Webhook stub listening on http://localhost:%d/hook%n", port);
+        long reportEvery = options.getLong("report-seconds", 5) * 1000;
+        while (true) {
+            Thread.sleep(reportEvery);
+            stub.report();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            synchronized (this) {
+                inFlight++;
+                maxInFlight = Math.max(maxInFlight, inFlight);
+            }
+            try {
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+                if (ThreadLocalRandom.current().nextDouble() < failRate) {
+                    synchronized (this) {
+                        failed++;
+                    }
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                JsonNode body;
+                try (InputStream in = exchange.getRequestBody()) {
+                    body = MAPPER.readTree(in);
+                }
+                record(body.path("events"));
+                exchange.sendResponseHeaders(204, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+
+    private synchronized void record(JsonNode batch) {
+        batches++;
+        for (JsonNode event : batch) {
+            long id = event.path("id").asLong();
+            String conversation = event.path("conversationKey").asText();
+            events++;
+            if (!seen.add(id)) {
+                duplicates++;
+                continue;
+            }
+            Long last = lastIdByConversation.get(conversation);
+            if (last != null && id < last) {
+                reordered++;
+            } else {
+                lastIdByConversation.put(conversation, id);
+            }
+        }
+    }
+
+    private synchronized void report() {
+        System.out.printf("batches=%d failed=%d events=%d unique=%d duplicates=%d reordered=%d conversations=%d max-in-flight=%d%n",
+                batches, failed, events, seen.size(), duplicates, reordered, lastIdByConversation.size(), maxInFlight);
+    }
+}
@@ -20,6 +20,7 @@ public class MainRoute extends RouteBuilder {
         restConfiguration()
                 .component("servlet") // Использование сервлета для обработки HTTP-запросов
                 .bindingMode(RestBindingMode.off) // Отключение автоматической привязки данных
+                .consumerProperty("disableStreamCache", "true") // Тело читается RequestDecoder'ом прямо из потока сервлета, без кеширования в памяти
                 .dataFormatProperty("prettyPrint", "true"); // Включение форматирования JSON
     }
 }
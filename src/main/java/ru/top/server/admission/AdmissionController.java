@@ -0,0 +1,118 @@
+package ru.top.server.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import ru.top.server.config.HttpStatusException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Контроль допуска перед маршрутами, работающими с БД.
+// Для каждого класса маршрутов: не больше concurrency одновременно выполняющихся запросов и не больше
+// queue-depth ожидающих; ожидание ограничено max-wait-ms и дедлайном клиента. Остальные запросы
+// сразу получают 503, вместо того чтобы копиться на потоках Tomcat.
+// Очередь - это ожидание на семафоре в потоке запроса: маршруты читают SecurityContext из ThreadLocal,
+// поэтому передавать обмен в другой поток (seda:) нельзя
+@Component
+public class AdmissionController {
+
+    // Абсолютный дедлайн клиента (epoch millis) или относительный таймаут запроса
+    static final String DEADLINE_HEADER = "X-Request-Deadline";
+    static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final boolean enabled;
+    private final Map<RouteClass, Lane> lanes = new EnumMap<>(RouteClass.class);
+
+    public AdmissionController(Environment environment, MeterRegistry meterRegistry) {
+        this.enabled = environment.getProperty("chat.admission.enabled", Boolean.class, true);
+        for (RouteClass routeClass : RouteClass.values()) {
+            String prefix = "chat.admission." + routeClass.key();
+            Lane lane = new Lane(
+                    environment.getProperty(prefix + ".concurrency", Integer.class, 8),
+                    environment.getProperty(prefix + ".queue-depth", Integer.class, 64),
+                    environment.getProperty(prefix + ".max-wait-ms", Long.class, 2000L),
+                    Counter.builder("chat.admission.rejected").tag("class", routeClass.key()).tag("reason", "queue-full")
+                            .description("Requests shed by admission control").register(meterRegistry),
+                    Counter.builder("chat.admission.rejected").tag("class", routeClass.key()).tag("reason", "deadline")
+                            .description("Requests shed by admission control").register(meterRegistry));
+            Gauge.builder("chat.admission.queued", lane.waiting, AtomicInteger::get)
+                    .tag("class", routeClass.key())
+                    .description("Requests waiting for admission")
+                    .register(meterRegistry);
+            lanes.put(routeClass, lane);
+        }
+    }
+
+    // Допуск обмена; разрешение возвращается автоматически по завершении обмена
+    public void admit(Exchange exchange, RouteClass routeClass) throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        Lane lane = lanes.get(routeClass);
+        long now = System.currentTimeMillis();
+        long deadline = clientDeadline(exchange, now);
+        if (deadline <= now) {
+            lane.deadlineRejected.increment();
+            throw new HttpStatusException(503, "Request deadline already passed");
+        }
+        if (!lane.permits.tryAcquire()) {
+            if (lane.waiting.incrementAndGet() > lane.queueDepth) {
+                lane.waiting.decrementAndGet();
+                lane.queueRejected.increment();
+                throw new HttpStatusException(503, "Server overloaded, " + routeClass.key() + " queue is full",
+                        Map.of("Retry-After", "1"));
+            }
+            boolean acquired;
+            try {
+                acquired = lane.permits.tryAcquire(Math.min(lane.maxWaitMs, deadline - now), TimeUnit.MILLISECONDS);
+            } finally {
+                lane.waiting.decrementAndGet();
+            }
+            if (!acquired) {
+                lane.deadlineRejected.increment();
+                throw new HttpStatusException(503, "Server overloaded, " + routeClass.key() + " admission timed out",
+                        Map.of("Retry-After", "1"));
+            }
+        }
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completed) {
+                lane.permits.release();
+            }
+        });
+    }
+
+    private static long clientDeadline(Exchange exchange, long now) {
+        Long deadline = exchange.getMessage().getHeader(DEADLINE_HEADER, Long.class);
+        if (deadline != null) {
+            return deadline;
+        }
+        Long timeout = exchange.getMessage().getHeader(TIMEOUT_HEADER, Long.class);
+        return timeout != null ? now + timeout : Long.MAX_VALUE;
+    }
+
+    private static final class Lane {
+        private final Semaphore permits;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final int queueDepth;
+        private final long maxWaitMs;
+        private final Counter queueRejected;
+        private final Counter deadlineRejected;
+
+        Lane(int concurrency, int queueDepth, long maxWaitMs, Counter queueRejected, Counter deadlineRejected) {
+            this.permits = new Semaphore(concurrency, true);
+            this.queueDepth = queueDepth;
+            this.maxWaitMs = maxWaitMs;
+            this.queueRejected = queueRejected;
+            this.deadlineRejected = deadlineRejected;
+        }
+    }
+}
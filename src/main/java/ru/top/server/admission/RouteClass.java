@@ -0,0 +1,18 @@
+package ru.top.server.admission;
+
+// Классы маршрутов с отдельными очередями допуска; key используется в свойствах и тегах метрик
+public enum RouteClass {
+    WRITE("write"),
+    READ("read"),
+    SEARCH("search");
+
+    private final String key;
+
+    RouteClass(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,144 @@
+package ru.top.server.attachment;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.camel.Exchange;
+import org.apache.camel.http.common.HttpMessage;
+import org.springframework.stereotype.Component;
+import ru.top.server.model.ChatAttachment;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Set;
+
+// Отдача вложения прямо в HttpServletResponse, минуя тело обмена Camel.
+// Сильный ETag - sha256 содержимого (содержимое по id не меняется), поддерживаются If-None-Match, Range и If-Range.
+// Если коннектор Tomcat поддерживает sendfile, файл передаёт сам Tomcat после выхода из сервлета
+// (FileChannel.transferTo в сокет, без копирования через heap); иначе - FileChannel.transferTo в канал ответа.
+// Content-Type загрузившего отдаётся только для изображений, видео и аудио из INLINE_TYPES (показ inline);
+// всё остальное (text/html, image/svg+xml и т.п.) - как application/octet-stream с Content-Disposition: attachment,
+// чтобы файл не исполнился в origin API. nosniff и CSP sandbox запрещают браузеру угадывать тип и запускать скрипты
+@Component
+public class AttachmentSender {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String DOWNLOAD_TYPE = "application/octet-stream";
+    private static final Set<String> INLINE_TYPES = Set.of(
+            "image/png", "image/jpeg", "image/gif", "image/webp", "image/avif", "image/bmp",
+            "video/mp4", "video/webm", "video/ogg",
+            "audio/mpeg", "audio/ogg", "audio/wav", "audio/webm", "audio/mp4");
+
+    private final AttachmentStore attachmentStore;
+
+    public AttachmentSender(AttachmentStore attachmentStore) {
+        this.attachmentStore = attachmentStore;
+    }
+
+    public void send(Exchange exchange, ChatAttachment attachment) throws IOException {
+        HttpMessage message = exchange.getIn(HttpMessage.class);
+        HttpServletRequest request = message.getRequest();
+        HttpServletResponse response = message.getResponse();
+        long size = attachment.getSizeBytes();
+        String etag = "\"" + attachment.getSha256() + "\"";
+
+        // Ответ целиком пишется здесь: Camel не должен дописать заголовки запроса или тело.
+        // Код ответа дублируется в заголовок обмена, иначе Camel заменит его на 204 для пустого тела
+        exchange.getMessage().removeHeaders("*");
+        exchange.getMessage().setBody(null);
+
+        response.setHeader("ETag", etag);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Cache-Control", "private, max-age=31536000, immutable");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("Content-Security-Policy", "default-src 'none'; sandbox");
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            status(exchange, response, HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String ifRange = request.getHeader("If-Range");
+        ByteRange range = ifRange == null || ifRange.trim().equals(etag) ? ByteRange.parse(request.getHeader("Range"), size) : null;
+        if (range == ByteRange.UNSATISFIABLE) {
+            status(exchange, response, HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + size);
+            response.setContentLength(0);
+            return;
+        }
+        if (range == null) {
+            range = new ByteRange(0, size - 1);
+            status(exchange, response, HttpServletResponse.SC_OK);
+        } else {
+            status(exchange, response, HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + range.start() + "-" + range.end() + "/" + size);
+        }
+        String inlineType = inlineType(attachment.getContentType());
+        response.setContentType(inlineType != null ? inlineType : DOWNLOAD_TYPE);
+        String disposition = inlineType != null ? "inline" : "attachment";
+        if (attachment.getFileName() != null) {
+            response.setHeader("Content-Disposition", disposition + "; filename*=UTF-8''"
+                    + URLEncoder.encode(attachment.getFileName(), StandardCharsets.UTF_8).replace("+", "%20"));
+        } else {
+            response.setHeader("Content-Disposition", disposition);
+        }
+        response.setContentLengthLong(range.length());
+
+        Path file = attachmentStore.path(attachment.getSha256());
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    throw new IOException("Attachment file is shorter than recorded: " + file);
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+        response.flushBuffer();
+    }
+
+    private static void status(Exchange exchange, HttpServletResponse response, int status) {
+        response.setStatus(status);
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, status);
+    }
+
+    // Тип без параметров, если его можно показать inline, иначе null
+    private static String inlineType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        String type = (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim().toLowerCase(Locale.ROOT);
+        return INLINE_TYPES.contains(type) ? type : null;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.top.server.attachment;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.top.server.config.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Хранилище содержимого вложений, адресуемое по SHA-256: файл лежит в <directory>/<первые 2 символа>/<sha256>.
+// Загрузка идёт потоком блоками по 64 КБ во временный файл, хеш считается по ходу записи;
+// если такое содержимое уже есть, временный файл удаляется и новая копия не создаётся
+@Component
+public class AttachmentStore {
+    private static final Logger log = LoggerFactory.getLogger(AttachmentStore.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${chat.attachments.directory:attachments}")
+    private String directory;
+
+    @Value("${chat.attachments.max-bytes:52428800}")
+    private long maxBytes;
+
+    private Path root;
+    private Path incoming;
+
+    public record Blob(String sha256, long size) {
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        root = Path.of(directory).toAbsolutePath();
+        incoming = root.resolve("incoming");
+        Files.createDirectories(incoming);
+        // недописанные загрузки прошлого запуска
+        try (var leftovers = Files.list(incoming)) {
+            for (Path file : (Iterable<Path>) leftovers::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        log.info("Attachment store in {}", root);
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public Blob write(InputStream body) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(incoming, "upload-", ".part");
+        long size = 0;
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                byte[] chunk = new byte[BUFFER_SIZE];
+                ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                for (int read; (read = body.read(chunk)) != -1; ) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new HttpStatusException(413, "Attachment exceeds " + maxBytes + " bytes");
+                    }
+                    digest.update(chunk, 0, read);
+                    buffer.clear().limit(read);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+                out.force(false);
+            }
+            if (size == 0) {
+                throw new HttpStatusException(400, "Attachment is empty");
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = path(hash);
+            if (Files.exists(target)) {
+                Files.delete(temp);
+            } else {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // то же содержимое параллельно загрузил кто-то ещё
+                    Files.delete(temp);
+                }
+            }
+            return new Blob(hash, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    public Path path(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
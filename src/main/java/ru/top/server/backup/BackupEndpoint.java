@@ -0,0 +1,25 @@
+package ru.top.server.backup;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+// Административный запуск копии: POST /actuator/backup на порту management.server.port,
+// который не публикуется клиентам вместе с API
+@Component
+@Endpoint(id = "backup")
+public class BackupEndpoint {
+    private final DatabaseBackup databaseBackup;
+
+    public BackupEndpoint(DatabaseBackup databaseBackup) {
+        this.databaseBackup = databaseBackup;
+    }
+
+    @WriteOperation
+    public BackupResult backup() throws SQLException, IOException {
+        return databaseBackup.backup();
+    }
+}
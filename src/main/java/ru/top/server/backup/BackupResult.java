@@ -0,0 +1,5 @@
+package ru.top.server.backup;
+
+// Итог онлайн-копии: файл, число страниц базы, шагов копирования и перезапусков из-за записи в источник
+public record BackupResult(String file, int pages, int steps, int restarts, long millis) {
+}
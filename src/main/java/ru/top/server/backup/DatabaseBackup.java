@@ -0,0 +1,122 @@
+package ru.top.server.backup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.core.DB;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Онлайн-копия chat.db через backup API SQLite (sqlite3_backup_step) без остановки приложения.
+// Копирование идёт шагами по pages-per-step страниц; блокировка чтения источника держится только на время шага,
+// а между шагами поток спит step-pause-ms, и запись из MessageRoute успевает пройти.
+// Запись через другое соединение заставляет SQLite начать копию заново; после max-paced-restarts таких
+// перезапусков пауза отключается, и оставшаяся копия идёт подряд, чтобы копия под нагрузкой всё же завершилась.
+// Файл пишется как *.part и переименовывается только после успешного завершения
+@Component
+public class DatabaseBackup {
+    private static final Logger log = LoggerFactory.getLogger(DatabaseBackup.class);
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final DataSource dataSource;
+    private final Path directory;
+    private final int pagesPerStep;
+    private final long stepPauseMs;
+    private final int maxPacedRestarts;
+    private final int busyRetries;
+    private final int busySleepMs;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Timer duration;
+    private final Counter failures;
+
+    public DatabaseBackup(DataSource dataSource, MeterRegistry meterRegistry,
+                          @Value("${chat.backup.directory:backups}") String directory,
+                          @Value("${chat.backup.pages-per-step:256}") int pagesPerStep,
+                          @Value("${chat.backup.step-pause-ms:10}") long stepPauseMs,
+                          @Value("${chat.backup.max-paced-restarts:3}") int maxPacedRestarts,
+                          @Value("${chat.backup.busy-retries:100}") int busyRetries,
+                          @Value("${chat.backup.busy-sleep-ms:20}") int busySleepMs) {
+        this.dataSource = dataSource;
+        this.directory = Path.of(directory);
+        this.pagesPerStep = pagesPerStep;
+        this.stepPauseMs = stepPauseMs;
+        this.maxPacedRestarts = maxPacedRestarts;
+        this.busyRetries = busyRetries;
+        this.busySleepMs = busySleepMs;
+        this.duration = Timer.builder("chat.backup.duration").description("Online database backup time").register(meterRegistry);
+        this.failures = Counter.builder("chat.backup.failures").description("Failed online database backups").register(meterRegistry);
+    }
+
+    public BackupResult backup() throws SQLException, IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Backup is already running");
+        }
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve("chat-" + LocalDateTime.now().format(FILE_TIME) + ".db");
+            Path partial = directory.resolve(target.getFileName() + ".part");
+            Files.deleteIfExists(partial);
+            Progress progress = new Progress();
+            try (Connection connection = dataSource.getConnection()) {
+                DB db = connection.unwrap(SQLiteConnection.class).getDatabase();
+                int rc = db.backup("main", partial.toString(), progress, busySleepMs, busyRetries, pagesPerStep);
+                if (rc != SQLiteErrorCode.SQLITE_OK.code && rc != SQLiteErrorCode.SQLITE_DONE.code) {
+                    throw new SQLException("SQLite backup failed: " + SQLiteErrorCode.getErrorCode(rc));
+                }
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            log.info("Database backup {} written: {} pages, {} steps, {} restarts, {} ms",
+                    target, progress.pageCount, progress.steps, progress.restarts, millis);
+            return new BackupResult(target.toAbsolutePath().toString(), progress.pageCount, progress.steps, progress.restarts, millis);
+        } catch (SQLException | IOException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            running.set(false);
+        }
+    }
+
+    // Вызывается из sqlite3_backup_step между шагами, когда источник не заблокирован
+    private final class Progress implements DB.ProgressObserver {
+        private int pageCount;
+        private int steps;
+        private int restarts;
+        private int lastRemaining = Integer.MAX_VALUE;
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            this.pageCount = pageCount;
+            steps++;
+            if (remaining > lastRemaining) {
+                restarts++;
+            }
+            lastRemaining = remaining;
+            if (remaining > 0 && stepPauseMs > 0 && restarts < maxPacedRestarts) {
+                try {
+                    Thread.sleep(stepPauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.top.server.config;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.model.Model;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spring.boot.CamelContextConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Отложенный запуск редко используемых маршрутов (chat.startup.deferred-routes, список входных
+// эндпоинтов вида direct:userCount). Такие маршруты не стартуют вместе с контекстом, а запускаются
+// в фоновом потоке сразу после старта приложения. REST-маршрут, вызвавший direct: до этого момента,
+// ждёт появления потребителя (direct блокирует до 30 с по умолчанию), поэтому запросы не теряются
+@Component
+public class DeferredRouteStarter implements CamelContextConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(DeferredRouteStarter.class);
+
+    private final Set<String> deferredUris;
+    private final List<RouteDefinition> deferredRoutes = new ArrayList<>();
+
+    public DeferredRouteStarter(@Value("${chat.startup.deferred-routes:}") String deferredRouteUris) {
+        this.deferredUris = Stream.of(deferredRouteUris.split(","))
+                .map(String::trim)
+                .filter(uri -> !uri.isEmpty())
+                .map(DeferredRouteStarter::normalize)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void beforeApplicationStart(CamelContext camelContext) {
+        if (deferredUris.isEmpty()) {
+            return;
+        }
+        // К этому моменту RouteBuilder'ы уже добавили определения, но контекст ещё не запущен
+        for (RouteDefinition definition : camelContext.getCamelContextExtension().getContextPlugin(Model.class).getRouteDefinitions()) {
+            if (definition.getInput() != null && deferredUris.contains(normalize(definition.getInput().getEndpointUri()))) {
+                definition.setAutoStartup("false");
+                deferredRoutes.add(definition);
+            }
+        }
+    }
+
+    @Override
+    public void afterApplicationStart(CamelContext camelContext) {
+        if (deferredRoutes.isEmpty()) {
+            return;
+        }
+        Thread starter = new Thread(() -> {
+            for (RouteDefinition definition : deferredRoutes) {
+                try {
+                    camelContext.getRouteController().startRoute(definition.getRouteId());
+                } catch (Exception e) {
+                    log.error("Failed to start deferred route {}", definition.getRouteId(), e);
+                }
+            }
+            log.info("Started {} deferred routes", deferredRoutes.size());
+        }, "deferred-route-starter");
+        starter.setDaemon(true);
+        starter.start();
+    }
+
+    // direct://userCount и direct:userCount - один и тот же эндпоинт
+    private static String normalize(String uri) {
+        return uri.replaceFirst("^([a-zA-Z0-9+.-]+):/*", "$1:");
+    }
+}
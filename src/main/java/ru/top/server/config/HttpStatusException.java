@@ -0,0 +1,29 @@
+package ru.top.server.config;
+
+import java.util.Map;
+
+// Исключение с явным HTTP-кодом и заголовками ответа; RouteErrorHandler отдаёт их клиенту как есть
+public class HttpStatusException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final Map<String, String> headers;
+
+    public HttpStatusException(int statusCode, String message) {
+        this(statusCode, message, Map.of());
+    }
+
+    public HttpStatusException(int statusCode, String message, Map<String, String> headers) {
+        super(message);
+        this.statusCode = statusCode;
+        this.headers = headers;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+}
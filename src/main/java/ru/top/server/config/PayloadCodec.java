@@ -0,0 +1,129 @@
+package ru.top.server.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.camel.Exchange;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Согласование формата тел маршрутов сообщений: JSON по умолчанию, Smile или CBOR по заголовкам Accept (ответ)
+// и Content-Type (запрос). Бинарные форматы пишутся копиями основного ObjectMapper с другой фабрикой - те же DTO,
+// модули и формат дат, поэтому поля и значения совпадают с JSON. Ответы с ошибкой (RouteErrorHandler) - всегда JSON
+@Component
+public class PayloadCodec {
+    // Для produces/consumes в REST DSL
+    public static final String MEDIA_TYPES = "application/json,application/x-jackson-smile,application/cbor";
+
+    private final Map<PayloadFormat, ObjectMapper> mappers = new EnumMap<>(PayloadFormat.class);
+    private final Map<PayloadFormat, DistributionSummary> responseBytes = new EnumMap<>(PayloadFormat.class);
+
+    public PayloadCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        // Smile заменяет повторы имён полей (по умолчанию) и коротких строк (id отправителя, тип чата)
+        // ссылками на первое вхождение - в списке сообщений это основная экономия
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        mappers.put(PayloadFormat.JSON, objectMapper);
+        mappers.put(PayloadFormat.SMILE, objectMapper.copyWith(smileFactory));
+        mappers.put(PayloadFormat.CBOR, objectMapper.copyWith(new CBORFactory()));
+        for (PayloadFormat format : PayloadFormat.values()) {
+            responseBytes.put(format, DistributionSummary.builder("chat.payload.response.bytes")
+                    .tag("format", format.key())
+                    .baseUnit("bytes")
+                    .register(meterRegistry));
+        }
+    }
+
+    public ObjectMapper mapper(PayloadFormat format) {
+        return mappers.get(format);
+    }
+
+    // Формат тела запроса; без Content-Type или с неизвестным типом - JSON, как до согласования
+    public PayloadFormat requestFormat(Exchange exchange) {
+        String contentType = exchange.getIn().getHeader("Content-Type", String.class);
+        if (contentType == null) {
+            return PayloadFormat.JSON;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            PayloadFormat format = PayloadFormat.fromMediaType(mediaType.getType(), mediaType.getSubtype());
+            return format != null ? format : PayloadFormat.JSON;
+        } catch (InvalidMediaTypeException e) {
+            return PayloadFormat.JSON;
+        }
+    }
+
+    // Формат ответа: поддерживаемый тип с наибольшим q из Accept, при равных q - указанный раньше;
+    // */* и application/* - JSON. Заголовок без smile и cbor не разбирается
+    public PayloadFormat responseFormat(Exchange exchange) {
+        String accept = exchange.getIn().getHeader("Accept", String.class);
+        if (accept == null) {
+            return PayloadFormat.JSON;
+        }
+        String normalized = accept.toLowerCase(Locale.ROOT);
+        if (!normalized.contains("smile") && !normalized.contains("cbor")) {
+            return PayloadFormat.JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return PayloadFormat.JSON;
+        }
+        PayloadFormat best = PayloadFormat.JSON;
+        double bestQuality = 0;
+        for (MediaType mediaType : mediaTypes) {
+            PayloadFormat format = mediaType.isWildcardType()
+                    || mediaType.getType().equals("application") && mediaType.isWildcardSubtype()
+                    ? PayloadFormat.JSON
+                    : PayloadFormat.fromMediaType(mediaType.getType(), mediaType.getSubtype());
+            if (format != null && mediaType.getQualityValue() > bestQuality) {
+                best = format;
+                bestQuality = mediaType.getQualityValue();
+            }
+        }
+        return best;
+    }
+
+    // Ответ в согласованном формате
+    public void write(Exchange exchange, Object value) throws IOException {
+        PayloadFormat format = responseFormat(exchange);
+        respond(exchange, format, mappers.get(format).writeValueAsBytes(value));
+    }
+
+    // Готовый JSON (хвост переписки в памяти): для бинарного формата перекодируется потоком токенов, без дерева
+    public void writeJson(Exchange exchange, byte[] json) throws IOException {
+        PayloadFormat format = responseFormat(exchange);
+        if (format == PayloadFormat.JSON) {
+            respond(exchange, format, json);
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = mappers.get(PayloadFormat.JSON).createParser(json);
+             JsonGenerator generator = mappers.get(format).createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+        respond(exchange, format, out.toByteArray());
+    }
+
+    private void respond(Exchange exchange, PayloadFormat format, byte[] body) {
+        exchange.getMessage().setBody(body);
+        exchange.getMessage().setHeader("Content-Type", format.mediaType());
+        exchange.getMessage().setHeader("Vary", "Accept");
+        responseBytes.get(format).record(body.length);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.top.server.config;
+
+// Форматы тел запросов и ответов; key используется в тегах метрик
+public enum PayloadFormat {
+    JSON("json", "JSON", "application/json"),
+    SMILE("smile", "Smile", "application/x-jackson-smile"),
+    CBOR("cbor", "CBOR", "application/cbor");
+
+    private final String key;
+    private final String displayName;
+    private final String mediaType;
+
+    PayloadFormat(String key, String displayName, String mediaType) {
+        this.key = key;
+        this.displayName = displayName;
+        this.mediaType = mediaType;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String displayName() {
+        return displayName;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    // null для неизвестного типа; параметры (charset, q) не учитываются
+    public static PayloadFormat fromMediaType(String type, String subtype) {
+        for (PayloadFormat format : values()) {
+            if (format.mediaType.equalsIgnoreCase(type + "/" + subtype)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
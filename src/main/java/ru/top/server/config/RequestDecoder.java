@@ -0,0 +1,76 @@
+package ru.top.server.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.camel.Exchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import ru.top.server.dto.ValidatedRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Общий шаг разбора тел POST-запросов: тело читается прямо из входного потока сервлета
+// (без копии в String) в неизменяемую запись через закешированный ObjectReader. Формат - по Content-Type
+// (JSON, Smile или CBOR, см. PayloadCodec). При ошибке сразу формируется ответ 400 и маршрут останавливается без исключения
+@Component
+public class RequestDecoder {
+    private static final Logger log = LoggerFactory.getLogger(RequestDecoder.class);
+
+    private final PayloadCodec payloadCodec;
+    private final RouteErrorHandler errorHandler;
+    private final Map<PayloadFormat, Map<Class<?>, ObjectReader>> readers = new EnumMap<>(PayloadFormat.class);
+
+    public RequestDecoder(PayloadCodec payloadCodec, RouteErrorHandler errorHandler) {
+        this.payloadCodec = payloadCodec;
+        this.errorHandler = errorHandler;
+        for (PayloadFormat format : PayloadFormat.values()) {
+            readers.put(format, new ConcurrentHashMap<>());
+        }
+    }
+
+    // Разобранный запрос становится телом обмена; при ошибке возвращается null и ответ уже готов
+    public <T extends ValidatedRequest> T decode(Exchange exchange, Class<T> type) {
+        InputStream body = exchange.getIn().getBody(InputStream.class);
+        if (body == null) {
+            return reject(exchange, type, "Request body is empty");
+        }
+        PayloadFormat format = payloadCodec.requestFormat(exchange);
+        ObjectReader reader = reader(format, type);
+        T request;
+        try (body; JsonParser parser = reader.createParser(body)) {
+            if (parser.nextToken() == null) {
+                return reject(exchange, type, "Request body is empty");
+            }
+            request = reader.readValue(parser);
+        } catch (JsonProcessingException e) {
+            return reject(exchange, type, "Invalid " + format.displayName() + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            return reject(exchange, type, "Failed to read request body: " + e.getMessage());
+        }
+        if (request == null) {
+            return reject(exchange, type, "Request body is empty");
+        }
+        String error = request.validate();
+        if (error != null) {
+            return reject(exchange, type, error);
+        }
+        exchange.getIn().setBody(request);
+        return request;
+    }
+
+    private ObjectReader reader(PayloadFormat format, Class<?> type) {
+        return readers.get(format).computeIfAbsent(type, payloadCodec.mapper(format)::readerFor);
+    }
+
+    private <T> T reject(Exchange exchange, Class<?> type, String message) {
+        log.debug("Rejected {}: {}", type.getSimpleName(), message);
+        errorHandler.reject(exchange, 400, message);
+        return null;
+    }
+}
@@ -1,30 +1,75 @@
 package ru.top.server.config;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.camel.Exchange;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+
 // Утилитный класс для обработки ошибок в маршрутах
 @Component
 public class RouteErrorHandler {
+    private final ObjectMapper objectMapper;
 
     public RouteErrorHandler(ObjectMapper objectMapper) {
         // Внедрение ObjectMapper для сериализации ошибок в JSON
+        this.objectMapper = objectMapper;
+    }
+
+    // Ответ с ошибкой без исключения (проверка запроса): оставшиеся шаги маршрута не выполняются
+    public void reject(Exchange exchange, int statusCode, String message) {
+        writeError(exchange, statusCode, message);
+        exchange.setRouteStop(true);
     }
 
     // Метод для обработки исключений
     public void handleError(Exchange exchange, Logger log, int defaultStatusCode) {
         Exception exception = exchange.getProperty("CamelExceptionCaught", Exception.class);
+        // Ожидаемые отказы (лимиты, перегрузка) логируются без стека
+        HttpStatusException statusException = findStatusException(exception);
+        if (statusException != null) {
+            log.warn("Operation rejected with {}: {}", statusException.getStatusCode(), statusException.getMessage());
+            writeError(exchange, statusException.getStatusCode(), statusException.getMessage());
+            statusException.getHeaders().forEach(exchange.getMessage()::setHeader);
+            return;
+        }
+        // Конфликт блокировок SQLite вне WriteRetry (или чтение под блокировкой) - временная перегрузка, а не ошибка запроса
+        if (WriteRetry.isBusy(exception)) {
+            log.warn("Operation failed on busy database: {}", exception.getMessage());
+            writeError(exchange, 503, "Database is busy, retry later");
+            exchange.getMessage().setHeader("Retry-After", "1");
+            return;
+        }
         log.error("Operation failed: {}", exception.getMessage(), exception);
         // Формирование сообщения об ошибке
         String errorMessage = exception.getCause() != null
                 ? exception.getCause().getMessage()
                 : exception.getMessage();
-        exchange.getMessage().setBody("{\"error\":\"" + errorMessage + "\"}");
-        exchange.getMessage().setHeader("Content-Type", "application/json");
         // Установка кода ответа в зависимости от типа ошибки
         int statusCode = exception.getMessage().contains("SQLITE_ERROR") ? 500 : defaultStatusCode;
+        writeError(exchange, statusCode, errorMessage);
+    }
+
+    private void writeError(Exchange exchange, int statusCode, String message) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(Map.of("error", String.valueOf(message)));
+        } catch (JsonProcessingException e) {
+            body = "{\"error\":\"Internal error\"}";
+        }
+        exchange.getMessage().setBody(body);
+        exchange.getMessage().setHeader("Content-Type", "application/json");
         exchange.getMessage().setHeader("CamelHttpResponseCode", statusCode);
     }
-}
\ No newline at end of file
+
+    private static HttpStatusException findStatusException(Throwable exception) {
+        for (Throwable current = exception; current != null; current = current.getCause()) {
+            if (current instanceof HttpStatusException statusException) {
+                return statusException;
+            }
+        }
+        return null;
+    }
+}
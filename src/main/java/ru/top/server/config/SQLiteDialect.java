@@ -2,8 +2,18 @@ package ru.top.server.config;
 
 import org.hibernate.dialect.Dialect;
 import org.hibernate.dialect.identity.IdentityColumnSupport;
+import org.hibernate.dialect.pagination.LimitHandler;
+import org.hibernate.dialect.pagination.LimitOffsetLimitHandler;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.id.PostInsertIdentityPersister;
 import org.hibernate.id.insert.GetGeneratedKeysDelegate;
+import org.hibernate.sql.ast.SqlAstTranslator;
+import org.hibernate.sql.ast.SqlAstTranslatorFactory;
+import org.hibernate.sql.ast.spi.AbstractSqlAstTranslator;
+import org.hibernate.sql.ast.spi.StandardSqlAstTranslatorFactory;
+import org.hibernate.sql.ast.tree.Statement;
+import org.hibernate.sql.ast.tree.select.QueryPart;
+import org.hibernate.sql.exec.spi.JdbcOperation;
 
 public class SQLiteDialect extends Dialect {
 
@@ -11,6 +21,23 @@ public class SQLiteDialect extends Dialect {
         super();
     }
 
+    // SQLite понимает только LIMIT/OFFSET, а не ANSI "fetch first"
+    @Override
+    public LimitHandler getLimitHandler() {
+        return LimitOffsetLimitHandler.INSTANCE;
+    }
+
+    @Override
+    public SqlAstTranslatorFactory getSqlAstTranslatorFactory() {
+        return new StandardSqlAstTranslatorFactory() {
+            @Override
+            protected <T extends JdbcOperation> SqlAstTranslator<T> buildTranslator(
+                    SessionFactoryImplementor sessionFactory, Statement statement) {
+                return new SQLiteSqlAstTranslator<>(sessionFactory, statement);
+            }
+        };
+    }
+
     @Override
     public IdentityColumnSupport getIdentityColumnSupport() {
         return new SQLiteIdentityColumnSupport();
@@ -39,12 +66,13 @@ public class SQLiteDialect extends Dialect {
 
         @Override
         public String getIdentityInsertString() {
-            return "";
+            return "null";
         }
 
         @Override
         public GetGeneratedKeysDelegate buildGetGeneratedKeysDelegate(PostInsertIdentityPersister postInsertIdentityPersister, Dialect dialect) {
-            return null;
+            // Ключ AUTOINCREMENT-колонки (chat_user_groups.id) читается через JDBC getGeneratedKeys
+            return new GetGeneratedKeysDelegate(postInsertIdentityPersister, dialect, false);
         }
 
         @Override
@@ -57,4 +85,18 @@ public class SQLiteDialect extends Dialect {
             return "";
         }
     }
-}
\ No newline at end of file
+
+    // Генерация LIMIT/OFFSET для HQL-запросов с setMaxResults/setFirstResult
+    private static class SQLiteSqlAstTranslator<T extends JdbcOperation> extends AbstractSqlAstTranslator<T> {
+        SQLiteSqlAstTranslator(SessionFactoryImplementor sessionFactory, Statement statement) {
+            super(sessionFactory, statement);
+        }
+
+        @Override
+        public void visitOffsetFetchClause(QueryPart queryPart) {
+            if (!isRowNumberingCurrentQueryPart()) {
+                renderLimitOffsetClause(queryPart);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.top.server.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Столбцы, добавленные в существующие таблицы после первого выпуска. schema.sql выполняется при каждом
+// запуске, но в SQLite нет ADD COLUMN IF NOT EXISTS, поэтому недостающие столбцы добавляются здесь
+// по PRAGMA table_info - до того, как маршруты начнут обращаться к базе
+@Component
+@DependsOnDatabaseInitialization
+public class SchemaUpgrade {
+    private static final Logger log = LoggerFactory.getLogger(SchemaUpgrade.class);
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("chat_message", "attachment_id", "TEXT"),
+            new Column("chat_message", "edited_at", "DATETIME"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaUpgrade(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void upgrade() {
+        for (Column column : COLUMNS) {
+            List<String> existing = jdbcTemplate.queryForList("SELECT name FROM pragma_table_info(?)", String.class, column.table());
+            if (!existing.contains(column.name())) {
+                jdbcTemplate.execute("ALTER TABLE " + column.table() + " ADD COLUMN " + column.name() + " " + column.definition());
+                log.info("Added column {}.{}", column.table(), column.name());
+            }
+        }
+    }
+
+    private record Column(String table, String name, String definition) {
+    }
+}
@@ -0,0 +1,152 @@
+package ru.top.server.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.sqlite.SQLiteException;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Повтор записи в SQLite при конфликте блокировок (SQLITE_BUSY / SQLITE_LOCKED, в том числе расширенные коды).
+// Транзакция, получившая такой отказ, откатывается целиком, поэтому повтор безопасен: вызов выполняется заново
+// с экспоненциальной задержкой и полным джиттером (случайная пауза от 0 до min(max-delay, base * 2^n)),
+// пока не истечёт общий для запроса срок deadline-ms (отсчитывается от первой записи обмена).
+// Если срок истёк, клиент получает 503 с Retry-After вместо 400/500
+@Component
+public class WriteRetry {
+    private static final Logger log = LoggerFactory.getLogger(WriteRetry.class);
+    private static final String DEADLINE_PROPERTY = "ChatWriteDeadline";
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private final ProducerTemplate producerTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long deadlineNanos;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final String retryAfterSeconds;
+
+    public WriteRetry(ProducerTemplate producerTemplate, MeterRegistry meterRegistry,
+                      @Value("${chat.write-retry.deadline-ms:2000}") long deadlineMs,
+                      @Value("${chat.write-retry.base-delay-ms:5}") long baseDelayMs,
+                      @Value("${chat.write-retry.max-delay-ms:200}") long maxDelayMs,
+                      @Value("${chat.write-retry.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.producerTemplate = producerTemplate;
+        this.meterRegistry = meterRegistry;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        this.baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(baseDelayMs);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+    }
+
+    @FunctionalInterface
+    public interface Write<T> {
+        T call() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface VoidWrite {
+        void run() throws Exception;
+    }
+
+    public void run(Exchange exchange, String operation, VoidWrite write) throws Exception {
+        call(exchange, operation, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    // Отправка обмена в эндпоинт записи (jpa:...) с повтором; тело обмена - результат эндпоинта
+    public Processor to(String operation, String endpointUri) {
+        return exchange -> run(exchange, operation, () -> {
+            producerTemplate.send(endpointUri, exchange);
+            Exception failure = exchange.getException();
+            if (failure != null) {
+                exchange.setException(null);
+                throw failure;
+            }
+        });
+    }
+
+    public <T> T call(Exchange exchange, String operation, Write<T> write) throws Exception {
+        long deadline = deadline(exchange);
+        long waitStarted = 0;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                T result = write.call();
+                if (attempt > 0) {
+                    lockWait(operation, "success").record(System.nanoTime() - waitStarted, TimeUnit.NANOSECONDS);
+                }
+                return result;
+            } catch (Exception e) {
+                if (!isBusy(e)) {
+                    throw e;
+                }
+                long now = System.nanoTime();
+                if (attempt == 0) {
+                    waitStarted = now;
+                }
+                long delay = ThreadLocalRandom.current().nextLong(Math.min(maxDelayNanos, baseDelayNanos << Math.min(attempt, 20)) + 1);
+                if (now + delay - deadline > 0) {
+                    lockWait(operation, "exhausted").record(now - waitStarted, TimeUnit.NANOSECONDS);
+                    log.warn("Giving up on {} after {} attempts: {}", operation, attempt + 1, e.getMessage());
+                    throw new HttpStatusException(503, "Database is busy, retry later", Map.of("Retry-After", retryAfterSeconds));
+                }
+                meterRegistry.counter("chat.write.retries", "operation", operation).increment();
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        }
+    }
+
+    // SQLITE_BUSY / SQLITE_LOCKED в любом месте цепочки причин (Hibernate, Spring и Hikari оборачивают SQLException)
+    public static boolean isBusy(Throwable exception) {
+        for (Throwable current = exception; current != null; current = current.getCause()) {
+            if (current instanceof SQLiteException sqlite) {
+                int primary = sqlite.getResultCode().code & 0xFF;
+                if (primary == SQLITE_BUSY || primary == SQLITE_LOCKED) {
+                    return true;
+                }
+            } else if (current instanceof SQLException sql) {
+                int primary = sql.getErrorCode() & 0xFF;
+                if (primary == SQLITE_BUSY || primary == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+            String message = current.getMessage();
+            if (message != null && (message.contains("SQLITE_BUSY") || message.contains("SQLITE_LOCKED"))) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private long deadline(Exchange exchange) {
+        Long deadline = exchange.getProperty(DEADLINE_PROPERTY, Long.class);
+        if (deadline == null) {
+            deadline = System.nanoTime() + deadlineNanos;
+            exchange.setProperty(DEADLINE_PROPERTY, deadline);
+        }
+        return deadline;
+    }
+
+    // Время от первого отказа до успешной записи или до отказа клиенту
+    private Timer lockWait(String operation, String outcome) {
+        return Timer.builder("chat.write.lock-wait")
+                .description("Time spent waiting out SQLite lock conflicts")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
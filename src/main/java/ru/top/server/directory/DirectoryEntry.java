@@ -0,0 +1,5 @@
+package ru.top.server.directory;
+
+// Найденный пользователь (id, username) или группа (id, name)
+public record DirectoryEntry(String id, String name) {
+}
@@ -0,0 +1,123 @@
+package ru.top.server.directory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.top.server.event.ChatEvent;
+import ru.top.server.event.ChatEventListener;
+import ru.top.server.event.ChatEventType;
+import ru.top.server.model.ChatGroup;
+import ru.top.server.model.ChatUser;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Справочник для поиска по префиксу (GET /api/users/search, GET /api/groups/search): имена и email пользователей
+// и названия групп в нормализованном виде (NFKC, нижний регистр) в отсортированных массивах.
+// Загружается из БД при старте и пополняется маршрутами регистрации и создания группы. Регистрации и группы
+// других узлов приходят событиями шины USER_CREATED/GROUP_CREATED: строка дочитывается из БД по id, данные
+// события не используются; RESET (потеря событий) перезагружает справочник целиком
+@Component
+@DependsOnDatabaseInitialization
+public class DirectoryIndex implements ChatEventListener {
+    private static final Logger log = LoggerFactory.getLogger(DirectoryIndex.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final PrefixIndex users = new PrefixIndex();
+    private final PrefixIndex groups = new PrefixIndex();
+
+    public DirectoryIndex(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                          @Value("${chat.directory.default-limit:20}") int defaultLimit,
+                          @Value("${chat.directory.max-limit:100}") int maxLimit) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        Gauge.builder("chat.directory.keys", users, PrefixIndex::size).tag("kind", "user")
+                .description("Search keys in the directory index").register(meterRegistry);
+        Gauge.builder("chat.directory.keys", groups, PrefixIndex::size).tag("kind", "group")
+                .description("Search keys in the directory index").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void load() {
+        long started = System.nanoTime();
+        List<PrefixIndex.Key> userKeys = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, username, email FROM chat_user", resultSet -> {
+            userKeys.addAll(userKeys(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3)));
+        });
+        users.load(userKeys);
+        List<PrefixIndex.Key> groupKeys = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, name FROM chat_group", resultSet -> {
+            groupKeys.addAll(groupKeys(resultSet.getString(1), resultSet.getString(2)));
+        });
+        groups.load(groupKeys);
+        log.info("Directory index loaded: {} user keys, {} group keys in {} ms",
+                users.size(), groups.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public void onEvent(ChatEvent event, boolean local) {
+        if (local) {
+            return;
+        }
+        if (event.type() == ChatEventType.USER_CREATED && event.userId() != null) {
+            jdbcTemplate.query("SELECT id, username, email FROM chat_user WHERE id = ?", resultSet -> {
+                users.add(userKeys(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3)));
+            }, event.userId());
+        } else if (event.type() == ChatEventType.GROUP_CREATED && event.groupId() != null) {
+            jdbcTemplate.query("SELECT id, name FROM chat_group WHERE id = ?", resultSet -> {
+                groups.add(groupKeys(resultSet.getString(1), resultSet.getString(2)));
+            }, event.groupId());
+        } else if (event.type() == ChatEventType.RESET) {
+            load();
+        }
+    }
+
+    public void userAdded(ChatUser user) {
+        users.add(userKeys(user.getId(), user.getUsername(), user.getEmail()));
+    }
+
+    public void groupAdded(ChatGroup group) {
+        groups.add(groupKeys(group.getId(), group.getName()));
+    }
+
+    public List<DirectoryEntry> searchUsers(String prefix, Integer limit) {
+        return users.search(normalize(prefix), limit(limit));
+    }
+
+    public List<DirectoryEntry> searchGroups(String prefix, Integer limit) {
+        return groups.search(normalize(prefix), limit(limit));
+    }
+
+    public static String normalize(String value) {
+        return Normalizer.normalize(value.strip(), Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private int limit(Integer limit) {
+        return limit == null || limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+    }
+
+    private static List<PrefixIndex.Key> userKeys(String id, String username, String email) {
+        DirectoryEntry entry = new DirectoryEntry(id, username);
+        List<PrefixIndex.Key> keys = new ArrayList<>(2);
+        keys.add(new PrefixIndex.Key(normalize(username), entry));
+        if (email != null && !email.isBlank()) {
+            keys.add(new PrefixIndex.Key(normalize(email), entry));
+        }
+        return keys;
+    }
+
+    private static List<PrefixIndex.Key> groupKeys(String id, String name) {
+        return List.of(new PrefixIndex.Key(normalize(name), new DirectoryEntry(id, name)));
+    }
+}
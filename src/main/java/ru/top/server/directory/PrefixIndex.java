@@ -0,0 +1,112 @@
+package ru.top.server.directory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Отсортированный массив нормализованных ключей и параллельный массив записей. У одной записи может быть
+// несколько ключей (имя и email), они ссылаются на общий объект. Чтение идёт без блокировок по неизменяемому
+// снимку; добавление копирует массивы под блокировкой и публикует новый снимок (регистрации редки,
+// копирование 100 тысяч ссылок - доли миллисекунды)
+final class PrefixIndex {
+    private static final Snapshot EMPTY = new Snapshot(new String[0], new DirectoryEntry[0]);
+
+    private volatile Snapshot snapshot = EMPTY;
+
+    private record Snapshot(String[] keys, DirectoryEntry[] entries) {
+    }
+
+    record Key(String key, DirectoryEntry entry) {
+    }
+
+    // Полная замена содержимого (загрузка при старте)
+    synchronized void load(List<Key> source) {
+        Key[] sorted = source.toArray(new Key[0]);
+        Arrays.sort(sorted, Comparator.comparing(Key::key));
+        String[] keys = new String[sorted.length];
+        DirectoryEntry[] entries = new DirectoryEntry[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            keys[i] = sorted[i].key();
+            entries[i] = sorted[i].entry();
+        }
+        snapshot = new Snapshot(keys, entries);
+    }
+
+    synchronized void add(List<Key> added) {
+        Snapshot current = snapshot;
+        String[] keys = current.keys();
+        DirectoryEntry[] entries = current.entries();
+        for (Key key : added) {
+            int position = upperBound(keys, key.key());
+            String[] nextKeys = new String[keys.length + 1];
+            DirectoryEntry[] nextEntries = new DirectoryEntry[entries.length + 1];
+            System.arraycopy(keys, 0, nextKeys, 0, position);
+            System.arraycopy(entries, 0, nextEntries, 0, position);
+            nextKeys[position] = key.key();
+            nextEntries[position] = key.entry();
+            System.arraycopy(keys, position, nextKeys, position + 1, keys.length - position);
+            System.arraycopy(entries, position, nextEntries, position + 1, entries.length - position);
+            keys = nextKeys;
+            entries = nextEntries;
+        }
+        snapshot = new Snapshot(keys, entries);
+    }
+
+    // До limit разных записей с ключом, начинающимся с prefix, в порядке ключей (точное совпадение первым)
+    List<DirectoryEntry> search(String prefix, int limit) {
+        Snapshot current = snapshot;
+        String[] keys = current.keys();
+        DirectoryEntry[] entries = current.entries();
+        List<DirectoryEntry> result = new ArrayList<>(Math.min(limit, 16));
+        for (int i = lowerBound(keys, prefix); i < keys.length && result.size() < limit && keys[i].startsWith(prefix); i++) {
+            if (!containsSame(result, entries[i])) {
+                result.add(entries[i]);
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return snapshot.keys().length;
+    }
+
+    private static boolean containsSame(List<DirectoryEntry> result, DirectoryEntry entry) {
+        for (DirectoryEntry existing : result) {
+            if (existing == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Первый ключ >= value
+    private static int lowerBound(String[] keys, String value) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Первый ключ > value: равные ключи сохраняют порядок добавления
+    private static int upperBound(String[] keys, String value) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
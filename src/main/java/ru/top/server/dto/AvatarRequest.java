@@ -0,0 +1,13 @@
+package ru.top.server.dto;
+
+// Тело POST /api/users/avatar: загруженное изображение (id из POST /api/attachments)
+public record AvatarRequest(String attachmentId) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(attachmentId)) {
+            return "Invalid avatar JSON: missing attachmentId";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.top.server.dto;
+
+// Тело POST /api/messages/scheduled/cancel
+public record CancelScheduledMessageRequest(String id) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(id)) {
+            return "Invalid cancel JSON: missing id";
+        }
+        return null;
+    }
+}
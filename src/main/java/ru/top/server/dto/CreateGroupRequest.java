@@ -0,0 +1,10 @@
+package ru.top.server.dto;
+
+// Тело POST /api/groups/create
+public record CreateGroupRequest(String name) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        return ValidatedRequest.isBlank(name) ? "Missing group name" : null;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.top.server.dto;
+
+// Тело POST /api/messages/delete: переписка задаётся ровно одним из otherUserId и groupId
+public record DeleteMessageRequest(String messageId, String otherUserId, String groupId) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(messageId)) {
+            return "Invalid delete JSON: missing messageId";
+        }
+        if (ValidatedRequest.isBlank(otherUserId) == ValidatedRequest.isBlank(groupId)) {
+            return "Invalid delete JSON: exactly one of otherUserId or groupId is required";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.top.server.dto;
+
+// Тело POST /api/messages/edit: переписка задаётся ровно одним из otherUserId и groupId
+public record EditMessageRequest(String messageId, String otherUserId, String groupId, String content) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(messageId) || content == null) {
+            return "Invalid edit JSON: missing messageId or content";
+        }
+        if (ValidatedRequest.isBlank(otherUserId) == ValidatedRequest.isBlank(groupId)) {
+            return "Invalid edit JSON: exactly one of otherUserId or groupId is required";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.top.server.dto;
+
+// Тело POST /api/messages/group; content может отсутствовать, если есть вложение (attachmentId)
+public record GroupMessageRequest(String content, String senderId, String groupId,
+                                  String attachmentId) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if ((content == null && attachmentId == null) || senderId == null || groupId == null) {
+            return "Invalid message JSON: missing content, senderId, or groupId";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.top.server.dto;
+
+import ru.top.server.receipt.ReceiptStatus;
+
+import java.time.LocalDateTime;
+
+// Тело POST /api/messages/group/receipts: всё до messageId доставлено или прочитано.
+// timestamp не обязателен и не используется: граница берётся из сохранённого сообщения
+public record GroupReceiptRequest(String groupId, String messageId, LocalDateTime timestamp, String status) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(groupId) || ValidatedRequest.isBlank(messageId)) {
+            return "Invalid receipt JSON: missing groupId or messageId";
+        }
+        if (ReceiptStatus.fromKey(status) == null) {
+            return "Invalid receipt status: expected delivered or read";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.top.server.dto;
+
+import ru.top.server.presence.PresenceStatus;
+
+// Тело POST /api/presence/heartbeat; status не указан - online, offline - явный выход
+public record HeartbeatRequest(String status) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (status != null && PresenceStatus.fromKey(status) == null) {
+            return "Invalid presence status: expected online, away, or offline";
+        }
+        return null;
+    }
+
+    public PresenceStatus presenceStatus() {
+        return status != null ? PresenceStatus.fromKey(status) : PresenceStatus.ONLINE;
+    }
+}
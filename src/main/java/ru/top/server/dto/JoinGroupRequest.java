@@ -0,0 +1,10 @@
+package ru.top.server.dto;
+
+// Тело POST /api/groups/join
+public record JoinGroupRequest(String groupId) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        return ValidatedRequest.isBlank(groupId) ? "Missing groupId" : null;
+    }
+}
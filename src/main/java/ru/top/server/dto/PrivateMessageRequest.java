@@ -0,0 +1,14 @@
+package ru.top.server.dto;
+
+// Тело POST /api/messages/private; content может отсутствовать, если есть вложение (attachmentId)
+public record PrivateMessageRequest(String content, String senderId, String recipientId,
+                                    String attachmentId) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if ((content == null && attachmentId == null) || senderId == null || recipientId == null) {
+            return "Invalid message JSON: missing content, senderId, or recipientId";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.top.server.dto;
+
+// Тело POST /api/messages/reactions: переключение реакции emoji на сообщении; переписка задаётся
+// ровно одним из otherUserId и groupId
+public record ReactionRequest(String messageId, String otherUserId, String groupId, String emoji) implements ValidatedRequest {
+    private static final int MAX_EMOJI_CODE_POINTS = 16;
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(messageId) || ValidatedRequest.isBlank(emoji)) {
+            return "Invalid reaction JSON: missing messageId or emoji";
+        }
+        if (ValidatedRequest.isBlank(otherUserId) == ValidatedRequest.isBlank(groupId)) {
+            return "Invalid reaction JSON: exactly one of otherUserId or groupId is required";
+        }
+        // Эмодзи с модификаторами и ZWJ-последовательности - несколько кодовых точек, но без пробелов и управляющих символов
+        if (emoji.codePointCount(0, emoji.length()) > MAX_EMOJI_CODE_POINTS
+                || emoji.codePoints().anyMatch(c -> Character.isWhitespace(c) || Character.isISOControl(c))) {
+            return "Invalid reaction emoji";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.top.server.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+// Тело POST /api/users/register
+public record RegisterUserRequest(
+        String username,
+        String password,
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy") LocalDate birthdate,
+        String email,
+        String phone,
+        String avatarUrl) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(username)) {
+            return "Missing username";
+        }
+        if (ValidatedRequest.isBlank(password)) {
+            return "Missing password";
+        }
+        if (email != null && email.isBlank()) {
+            return "Email cannot be empty if provided";
+        }
+        return null;
+    }
+}
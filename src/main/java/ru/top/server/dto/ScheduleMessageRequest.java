@@ -0,0 +1,19 @@
+package ru.top.server.dto;
+
+import java.time.LocalDateTime;
+
+// Тело POST /api/messages/scheduled: адресат - ровно один из recipientId и groupId, deliverAt - время сервера
+public record ScheduleMessageRequest(String content, String senderId, String recipientId, String groupId,
+                                     String attachmentId, LocalDateTime deliverAt) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if ((content == null && attachmentId == null) || senderId == null || deliverAt == null) {
+            return "Invalid scheduled message JSON: missing content, senderId, or deliverAt";
+        }
+        if (ValidatedRequest.isBlank(recipientId) == ValidatedRequest.isBlank(groupId)) {
+            return "Invalid scheduled message JSON: exactly one of recipientId or groupId is required";
+        }
+        return null;
+    }
+}
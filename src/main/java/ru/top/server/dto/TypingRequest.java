@@ -0,0 +1,18 @@
+package ru.top.server.dto;
+
+// Тело POST /api/presence/typing: беседа задаётся ровно одним из otherUserId и groupId;
+// typing не указан - пользователь печатает, false - перестал
+public record TypingRequest(String otherUserId, String groupId, Boolean typing) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        if (ValidatedRequest.isBlank(otherUserId) == ValidatedRequest.isBlank(groupId)) {
+            return "Invalid typing JSON: exactly one of otherUserId or groupId is required";
+        }
+        return null;
+    }
+
+    public boolean isTyping() {
+        return typing == null || typing;
+    }
+}
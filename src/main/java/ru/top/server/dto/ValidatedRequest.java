@@ -0,0 +1,12 @@
+package ru.top.server.dto;
+
+// Тело запроса, которое проверяет себя без исключений
+public interface ValidatedRequest {
+
+    // Описание ошибки для ответа 400 или null, если запрос корректен
+    String validate();
+
+    static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,46 @@
+package ru.top.server.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+
+// Общая часть реализаций шины: идентификатор узла и доставка локальным подписчикам
+abstract class AbstractChatEventBus implements ChatEventBus {
+    private static final Logger log = LoggerFactory.getLogger(AbstractChatEventBus.class);
+
+    private final String nodeId;
+    private final ObjectProvider<ChatEventListener> listenerProvider;
+    private volatile List<ChatEventListener> listeners;
+
+    AbstractChatEventBus(String nodeId, ObjectProvider<ChatEventListener> listenerProvider) {
+        this.nodeId = nodeId;
+        this.listenerProvider = listenerProvider;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    // Подписчики разрешаются лениво, чтобы они сами могли зависеть от шины
+    void dispatch(ChatEvent event) {
+        List<ChatEventListener> current = listeners;
+        if (current == null) {
+            current = listenerProvider.orderedStream().toList();
+            listeners = current;
+        }
+        boolean local = nodeId.equals(event.nodeId());
+        log.debug("Dispatching {} event for {} from node {} to {} listener(s)",
+                event.type(), event.conversationKey(), event.nodeId(), current.size());
+        for (ChatEventListener listener : current) {
+            try {
+                listener.onEvent(event, local);
+            } catch (Exception e) {
+                log.error("Event listener {} failed for {} event: {}",
+                        listener.getClass().getSimpleName(), event.type(), e.getMessage(), e);
+            }
+        }
+    }
+}
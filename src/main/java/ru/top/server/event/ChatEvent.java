@@ -0,0 +1,81 @@
+package ru.top.server.event;
+
+import ru.top.server.model.Message;
+
+import java.time.LocalDateTime;
+
+// Событие шины между узлами. conversationKey задаёт порядок доставки: события одной переписки доставляются в порядке публикации
+public record ChatEvent(
+        ChatEventType type,
+        String nodeId,
+        String conversationKey,
+        String messageId,
+        String content,
+        String senderId,
+        String recipientId,
+        String groupId,
+        String chatType,
+        LocalDateTime timestamp,
+        String userId,
+        String attachmentId) {
+
+    public static ChatEvent messageCreated(Message message) {
+        return message(ChatEventType.MESSAGE_CREATED, message);
+    }
+
+    public static ChatEvent messageEdited(Message message) {
+        return message(ChatEventType.MESSAGE_EDITED, message);
+    }
+
+    public static ChatEvent messageDeleted(Message message) {
+        return message(ChatEventType.MESSAGE_DELETED, message);
+    }
+
+    private static ChatEvent message(ChatEventType type, Message message) {
+        return new ChatEvent(type, null, message.conversationKey(),
+                message.getId(), message.getContent(), message.getSenderId(), message.getRecipientId(),
+                message.getGroupId(), message.getChatType(), message.getTimestamp(), null, message.getAttachmentId());
+    }
+
+    public static ChatEvent membershipChanged(String groupId, String userId) {
+        return new ChatEvent(ChatEventType.MEMBERSHIP_CHANGED, null, Message.groupConversationKey(groupId),
+                null, null, null, null, groupId, null, LocalDateTime.now(), userId, null);
+    }
+
+    public static ChatEvent userCreated(String userId) {
+        return new ChatEvent(ChatEventType.USER_CREATED, null, null, null, null, null, null, null, null, LocalDateTime.now(), userId, null);
+    }
+
+    public static ChatEvent groupCreated(String groupId) {
+        return new ChatEvent(ChatEventType.GROUP_CREATED, null, null, null, null, null, null, groupId, null, LocalDateTime.now(), null, null);
+    }
+
+    public static ChatEvent reset() {
+        return new ChatEvent(ChatEventType.RESET, null, null, null, null, null, null, null, null, LocalDateTime.now(), null, null);
+    }
+
+    public ChatEvent withNodeId(String originNodeId) {
+        return new ChatEvent(type, originNodeId, conversationKey, messageId, content, senderId, recipientId,
+                groupId, chatType, timestamp, userId, attachmentId);
+    }
+
+    // Восстановление сообщения из события (связи заполняются только идентификаторами)
+    public Message toMessage() {
+        Message message = new Message();
+        message.setId(messageId);
+        message.setContent(content);
+        if (senderId != null) {
+            message.setSenderId(senderId);
+        }
+        if (recipientId != null) {
+            message.setRecipientId(recipientId);
+        }
+        if (groupId != null) {
+            message.setGroupId(groupId);
+        }
+        message.setChatType(chatType);
+        message.setTimestamp(timestamp);
+        message.setAttachmentId(attachmentId);
+        return message;
+    }
+}
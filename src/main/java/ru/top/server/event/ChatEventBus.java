@@ -0,0 +1,10 @@
+package ru.top.server.event;
+
+// Шина событий между узлами. Реализация выбирается свойством chat.event-bus.type (in-process | tcp)
+public interface ChatEventBus {
+
+    // Публикация события: локальные подписчики получают его сразу, удалённые узлы - асинхронно
+    void publish(ChatEvent event);
+
+    String nodeId();
+}
@@ -0,0 +1,8 @@
+package ru.top.server.event;
+
+// Подписчик шины событий. Все бины этого типа регистрируются в шине автоматически
+public interface ChatEventListener {
+
+    // local = true для событий, опубликованных этим узлом
+    void onEvent(ChatEvent event, boolean local);
+}
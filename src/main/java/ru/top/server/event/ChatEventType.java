@@ -0,0 +1,14 @@
+package ru.top.server.event;
+
+// Типы событий, которыми обмениваются узлы
+public enum ChatEventType {
+    MESSAGE_CREATED,
+    MESSAGE_EDITED,
+    MESSAGE_DELETED,
+    MEMBERSHIP_CHANGED,
+    // Зарегистрирован пользователь / создана группа: справочник поиска других узлов дочитывает строку из БД
+    USER_CREATED,
+    GROUP_CREATED,
+    // Отправитель потерял часть событий к этому узлу: подписчики сбрасывают всё, что держат по событиям шины
+    RESET
+}
@@ -0,0 +1,24 @@
+package ru.top.server.event;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+// Шина для одного процесса: события доставляются подписчикам синхронно в потоке публикации
+@Component
+@ConditionalOnProperty(name = "chat.event-bus.type", havingValue = "in-process", matchIfMissing = true)
+public class InProcessChatEventBus extends AbstractChatEventBus {
+
+    public InProcessChatEventBus(@Value("${chat.node-id:}") String nodeId,
+                                 ObjectProvider<ChatEventListener> listenerProvider) {
+        super(nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId, listenerProvider);
+    }
+
+    @Override
+    public void publish(ChatEvent event) {
+        dispatch(event.withNodeId(nodeId()));
+    }
+}
@@ -0,0 +1,325 @@
+package ru.top.server.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Шина поверх TCP. Каждый узел слушает порт и держит по одному соединению к каждому соседу.
+// События к соседу идут через одну FIFO-очередь и одно соединение, поэтому порядок внутри переписки сохраняется;
+// отправка пакетами (до batch-size событий или по истечении linger-ms). Для проверки на одной машине
+// достаточно запустить два узла на разных портах и указать друг друга в chat.event-bus.tcp.peers.
+// При переполнении очереди к соседу старые события отбрасываются (метрика chat.event-bus.dropped), а следующий
+// пакет начинается с события RESET: сосед сбрасывает кэши, которые поддерживал по событиям, и не отдаёт устаревшее.
+// Порт слушается только на chat.event-bus.tcp.bind-address; каждый кадр подписан HMAC-SHA256 общим секретом
+// chat.event-bus.tcp.secret, и соединение с неверной подписью закрывается. Подписчики не берут из событий данные:
+// событие другого узла только сбрасывает кэш, а актуальное состояние перечитывается из базы
+@Component
+@ConditionalOnProperty(name = "chat.event-bus.type", havingValue = "tcp")
+public class TcpChatEventBus extends AbstractChatEventBus {
+    private static final Logger log = LoggerFactory.getLogger(TcpChatEventBus.class);
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int HMAC_SIZE = 32;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader batchReader;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.event-bus.tcp.bind-address:127.0.0.1}")
+    private String bindAddress;
+
+    @Value("${chat.event-bus.tcp.port:38090}")
+    private int port;
+
+    @Value("${chat.event-bus.tcp.peers:}")
+    private List<String> peers;
+
+    @Value("${chat.event-bus.tcp.batch-size:256}")
+    private int batchSize;
+
+    @Value("${chat.event-bus.tcp.linger-ms:5}")
+    private long lingerMs;
+
+    @Value("${chat.event-bus.tcp.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${chat.event-bus.tcp.secret:}")
+    private String secret;
+
+    private SecretKeySpec hmacKey;
+
+    private final List<PeerSender> senders = new ArrayList<>();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public TcpChatEventBus(@Value("${chat.node-id:}") String nodeId,
+                           ObjectProvider<ChatEventListener> listenerProvider,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId, listenerProvider);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.batchReader = objectMapper.readerForListOf(ChatEvent.class);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("chat.event-bus.tcp.secret must be set for the TCP event bus");
+        }
+        hmacKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        running = true;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+        startThread("event-bus-acceptor", this::acceptLoop);
+        for (String peer : peers) {
+            if (peer.isBlank()) {
+                continue;
+            }
+            String[] hostPort = peer.trim().split(":");
+            PeerSender sender = new PeerSender(hostPort[0], Integer.parseInt(hostPort[1]));
+            senders.add(sender);
+            startThread("event-bus-sender-" + peer.trim(), sender::run);
+        }
+        log.info("TCP event bus node {} listening on {}:{}, peers: {}", nodeId(), bindAddress, port, peers);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (PeerSender sender : senders) {
+            sender.close();
+        }
+    }
+
+    @Override
+    public void publish(ChatEvent event) {
+        ChatEvent stamped = event.withNodeId(nodeId());
+        dispatch(stamped);
+        for (PeerSender sender : senders) {
+            sender.enqueue(stamped);
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                startThread("event-bus-reader-" + socket.getRemoteSocketAddress(), () -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Event bus accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Чтение кадров [int длина][JSON-массив событий][HMAC] и доставка локальным подписчикам в порядке получения
+    private void readLoop(Socket socket) {
+        Mac mac = newMac();
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (running) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid event batch frame length: " + length);
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                byte[] signature = new byte[HMAC_SIZE];
+                in.readFully(signature);
+                if (!MessageDigest.isEqual(signature, sign(mac, frame))) {
+                    throw new IOException("Invalid event batch signature");
+                }
+                List<ChatEvent> batch = batchReader.readValue(frame);
+                for (ChatEvent event : batch) {
+                    if (!nodeId().equals(event.nodeId())) {
+                        dispatch(event);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            log.info("Event bus peer {} disconnected", socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+            if (running) {
+                log.error("Event bus read from {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available", e);
+        }
+    }
+
+    // Подпись покрывает длину и содержимое кадра
+    private static byte[] sign(Mac mac, byte[] frame) {
+        mac.update((byte) (frame.length >>> 24));
+        mac.update((byte) (frame.length >>> 16));
+        mac.update((byte) (frame.length >>> 8));
+        mac.update((byte) frame.length);
+        return mac.doFinal(frame);
+    }
+
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Отправитель событий одному соседу: очередь, пакетирование и переподключение с повтором неотправленного пакета
+    private final class PeerSender {
+        private final String host;
+        private final int peerPort;
+        private final BlockingQueue<ChatEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+        // Были отброшенные события: следующий пакет начнётся с RESET
+        private final AtomicBoolean gap = new AtomicBoolean();
+        private final Counter dropped;
+        private final Mac mac = newMac();
+        private Socket socket;
+        private DataOutputStream out;
+
+        PeerSender(String host, int peerPort) {
+            this.host = host;
+            this.peerPort = peerPort;
+            this.dropped = Counter.builder("chat.event-bus.dropped").tag("peer", host + ":" + peerPort)
+                    .description("Events dropped because the queue to the peer was full").register(meterRegistry);
+        }
+
+        void enqueue(ChatEvent event) {
+            // При переполнении очереди отбрасываем самое старое событие, чтобы не блокировать поток запроса
+            while (!queue.offer(event)) {
+                ChatEvent oldest = queue.poll();
+                if (oldest != null) {
+                    gap.set(true);
+                    dropped.increment();
+                    log.warn("Event bus queue to {}:{} full, dropped {} event for {}",
+                            host, peerPort, oldest.type(), oldest.conversationKey());
+                }
+            }
+        }
+
+        void run() {
+            List<ChatEvent> batch = new ArrayList<>(batchSize);
+            long backoffMs = 100;
+            while (running) {
+                try {
+                    if (batch.isEmpty()) {
+                        fill(batch);
+                    }
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                    connect();
+                    byte[] frame = objectMapper.writeValueAsBytes(batch);
+                    out.writeInt(frame.length);
+                    out.write(frame);
+                    out.write(sign(mac, frame));
+                    out.flush();
+                    batch.clear();
+                    backoffMs = 100;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException e) {
+                    log.warn("Event bus send to {}:{} failed: {}, retrying in {} ms", host, peerPort, e.getMessage(), backoffMs);
+                    close();
+                    try {
+                        Thread.sleep(backoffMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    backoffMs = Math.min(backoffMs * 2, 5000);
+                }
+            }
+        }
+
+        private void fill(List<ChatEvent> batch) throws InterruptedException {
+            ChatEvent first = queue.poll(1, TimeUnit.SECONDS);
+            if (first == null) {
+                return;
+            }
+            if (gap.getAndSet(false)) {
+                batch.add(ChatEvent.reset().withNodeId(nodeId()));
+            }
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+            while (batch.size() < batchSize) {
+                if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                ChatEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        }
+
+        private void connect() throws IOException {
+            if (socket != null) {
+                return;
+            }
+            Socket connected = new Socket();
+            connected.connect(new InetSocketAddress(host, peerPort), 2000);
+            connected.setTcpNoDelay(true);
+            socket = connected;
+            out = new DataOutputStream(new BufferedOutputStream(connected.getOutputStream()));
+            log.info("Event bus connected to peer {}:{}", host, peerPort);
+        }
+
+        void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // соединение уже закрыто
+                }
+                socket = null;
+                out = null;
+            }
+        }
+    }
+}
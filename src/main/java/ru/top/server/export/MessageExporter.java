@@ -0,0 +1,70 @@
+package ru.top.server.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.camel.Exchange;
+import org.apache.camel.http.common.HttpMessage;
+import org.springframework.stereotype.Component;
+import ru.top.server.model.Message;
+import ru.top.server.store.MessageStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+// Выгрузка всех сообщений пользователя в NDJSON (одно сообщение - одна строка JSON), сжатая gzip на лету.
+// Сообщения идут из курсора хранилища прямо в поток ответа сервлета, минуя тело обмена Camel:
+// память не зависит от размера истории, ответ передаётся частями (chunked)
+@Component
+public class MessageExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MessageStore messageStore;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    public MessageExporter(MessageStore messageStore, ObjectMapper objectMapper) {
+        this.messageStore = messageStore;
+        this.objectMapper = objectMapper;
+        // Без flush после каждого сообщения: в сеть уходят полные блоки gzip, а не строка за строкой
+        this.writer = objectMapper.writerFor(Message.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    // Возвращает число выгруженных сообщений
+    public long export(Exchange exchange, String userId) throws IOException {
+        HttpServletResponse response = exchange.getIn(HttpMessage.class).getResponse();
+        // Ответ целиком пишется здесь; код дублируется в заголовок обмена, иначе Camel заменит его на 204
+        exchange.getMessage().removeHeaders("*");
+        exchange.getMessage().setBody(null);
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, HttpServletResponse.SC_OK);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Encoding", "gzip");
+        response.setHeader("Content-Disposition", "attachment; filename=\"messages.ndjson.gz\"");
+        response.setHeader("Cache-Control", "no-store");
+
+        long[] count = new long[1];
+        try (OutputStream out = new GZIPOutputStream(response.getOutputStream(), BUFFER_SIZE);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // Строки разделяются только переводом строки (по умолчанию Jackson ставит пробел между корневыми значениями)
+            generator.setRootValueSeparator(null);
+            messageStore.exportMessages(userId, message -> {
+                try {
+                    writer.writeValue(generator, message);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+}
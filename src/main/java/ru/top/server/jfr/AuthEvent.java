@@ -0,0 +1,25 @@
+package ru.top.server.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Разбор и проверка JWT в JwtAuthenticationFilter вместе с загрузкой пользователя
+@Name("ru.top.chat.Auth")
+@Label("JWT Authentication")
+@Description("JWT parsing, user lookup and token validation")
+public class AuthEvent extends ChatJfrEvent {
+    @Label("Authenticated")
+    public boolean authenticated;
+
+    // Завершение события после фильтра: маршрута Camel ещё нет, вместо него - путь запроса
+    public void finish(String path, boolean authenticated) {
+        end();
+        if (shouldCommit()) {
+            this.routeId = path;
+            this.userHash = ChatJfr.userHash();
+            this.authenticated = authenticated;
+            commit();
+        }
+    }
+}
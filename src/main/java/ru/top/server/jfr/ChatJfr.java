@@ -0,0 +1,41 @@
+package ru.top.server.jfr;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+// Контекст событий JFR текущего потока: маршрут задаёт обёртка шагов Camel (RouteStageInterceptor),
+// а события вложенных вызовов (БД, сериализация) берут его отсюда
+final class ChatJfr {
+    private static final ThreadLocal<String> ROUTE = new ThreadLocal<>();
+
+    private ChatJfr() {
+    }
+
+    static String currentRoute() {
+        return ROUTE.get();
+    }
+
+    // Возвращает предыдущее значение для восстановления после шага
+    static String enterRoute(String routeId) {
+        String previous = ROUTE.get();
+        ROUTE.set(routeId);
+        return previous;
+    }
+
+    static void restoreRoute(String previous) {
+        if (previous == null) {
+            ROUTE.remove();
+        } else {
+            ROUTE.set(previous);
+        }
+    }
+
+    static int userHash() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null) {
+            return 0;
+        }
+        // В записи остаётся только хеш: запросы одного пользователя можно связать, но имя не попадает в файл
+        return authentication.getName().hashCode();
+    }
+}
@@ -0,0 +1,24 @@
+package ru.top.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+// Общие поля событий чата: маршрут, в котором выполнялся этап, и хеш имени пользователя (не само имя)
+@Category({"Chat Server"})
+public abstract class ChatJfrEvent extends Event {
+    @Label("Route")
+    @Description("Camel route id, or the request path before routing")
+    public String routeId;
+
+    @Label("User Hash")
+    @Description("Hash of the authenticated username, 0 when anonymous")
+    public int userHash;
+
+    // Заполняет общие поля из текущего контекста; вызывается только перед commit
+    void describeContext() {
+        routeId = ChatJfr.currentRoute();
+        userHash = ChatJfr.userHash();
+    }
+}
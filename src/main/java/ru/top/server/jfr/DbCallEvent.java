@@ -0,0 +1,22 @@
+package ru.top.server.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Вызов репозитория Spring Data или хранилища сообщений
+@Name("ru.top.chat.DbCall")
+@Label("Database Call")
+@Description("Repository or message store method call")
+public class DbCallEvent extends ChatJfrEvent {
+    @Label("Operation")
+    @Description("Interface and method, e.g. ChatUserRepository.findByUsername")
+    public String operation;
+
+    @Label("Rows")
+    @Description("Rows returned: collection size, 1/0 for a single result")
+    public int rows;
+
+    @Label("Failed")
+    public boolean failed;
+}
@@ -0,0 +1,82 @@
+package ru.top.server.jfr;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import ru.top.server.store.MessageStore;
+
+import java.util.Collection;
+import java.util.Optional;
+
+// Репозитории Spring Data и хранилище сообщений оборачиваются прокси, который пишет DbCallEvent на каждый вызов.
+// Прокси создаётся только при chat.jfr.enabled=true; без записи JFR событие отбрасывается на shouldCommit
+@Component
+@ConditionalOnProperty(name = "chat.jfr.enabled", havingValue = "true")
+public class DbCallInstrumentation implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Class<?> api;
+        if (bean instanceof MessageStore) {
+            api = MessageStore.class;
+        } else if (bean instanceof Repository<?, ?>) {
+            api = repositoryInterface(bean);
+        } else {
+            return bean;
+        }
+        if (api == null) {
+            return bean;
+        }
+        String prefix = api.getSimpleName() + ".";
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setInterfaces(ClassUtils.getAllInterfaces(bean));
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            DbCallEvent event = new DbCallEvent();
+            event.begin();
+            Object result = null;
+            boolean failed = true;
+            try {
+                result = invocation.proceed();
+                failed = false;
+                return result;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.describeContext();
+                    event.operation = prefix + invocation.getMethod().getName();
+                    event.rows = rows(result);
+                    event.failed = failed;
+                    event.commit();
+                }
+            }
+        });
+        return proxyFactory.getProxy(ClassUtils.getDefaultClassLoader());
+    }
+
+    // Интерфейс приложения, который реализует прокси репозитория (ChatUserRepository и т.п.)
+    private static Class<?> repositoryInterface(Object bean) {
+        for (Class<?> candidate : ClassUtils.getAllInterfaces(bean)) {
+            if (Repository.class.isAssignableFrom(candidate) && candidate.getName().startsWith("ru.top.server.")) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static int rows(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.top.server.jfr;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// ObjectMapper, который пишет SerializationEvent на writeValueAsString / writeValueAsBytes -
+// именно так маршруты сериализуют ответы. Используется вместо стандартного только при chat.jfr.enabled=true
+public class InstrumentedObjectMapper extends ObjectMapper {
+    private static final long serialVersionUID = 1L;
+
+    public InstrumentedObjectMapper() {
+    }
+
+    protected InstrumentedObjectMapper(InstrumentedObjectMapper source) {
+        super(source);
+    }
+
+    protected InstrumentedObjectMapper(InstrumentedObjectMapper source, JsonFactory factory) {
+        super(source, factory);
+    }
+
+    @Override
+    public ObjectMapper copy() {
+        _checkInvalidCopy(InstrumentedObjectMapper.class);
+        return new InstrumentedObjectMapper(this);
+    }
+
+    // Копия с другим форматом (Smile, CBOR в PayloadCodec) тоже пишет SerializationEvent
+    @Override
+    public ObjectMapper copyWith(JsonFactory factory) {
+        _checkInvalidCopy(InstrumentedObjectMapper.class);
+        return new InstrumentedObjectMapper(this, factory);
+    }
+
+    @Override
+    public String writeValueAsString(Object value) throws JsonProcessingException {
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        String json = super.writeValueAsString(value);
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, value, json.length());
+        }
+        return json;
+    }
+
+    @Override
+    public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        byte[] json = super.writeValueAsBytes(value);
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, value, json.length);
+        }
+        return json;
+    }
+
+    private static void commit(SerializationEvent event, Object value, long size) {
+        event.describeContext();
+        event.type = value != null ? value.getClass().getSimpleName() : "null";
+        event.bytes = size;
+        event.commit();
+    }
+}
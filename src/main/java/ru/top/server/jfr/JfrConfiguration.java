@@ -0,0 +1,54 @@
+package ru.top.server.jfr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+// Включение событий JFR (chat.jfr.enabled=true). Запись можно запустить флагом JVM
+// -XX:StartFlightRecording:settings=src/main/resources/jfr/chat.jfc,filename=chat.jfr
+// или свойством chat.jfr.recording-file: тогда приложение само начинает запись с настройками
+// из jfr/chat.jfc в classpath и сохраняет её в файл при остановке
+@Configuration
+@ConditionalOnProperty(name = "chat.jfr.enabled", havingValue = "true")
+public class JfrConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(JfrConfiguration.class);
+
+    @Bean
+    @Primary
+    public ObjectMapper jacksonObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        InstrumentedObjectMapper objectMapper = new InstrumentedObjectMapper();
+        builder.configure(objectMapper);
+        return objectMapper;
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(name = "chat.jfr.recording-file")
+    public Recording chatRecording(@Value("${chat.jfr.recording-file}") String file) throws IOException, ParseException {
+        jdk.jfr.Configuration configuration;
+        try (Reader reader = new InputStreamReader(
+                JfrConfiguration.class.getResourceAsStream("/jfr/chat.jfc"), StandardCharsets.UTF_8)) {
+            configuration = jdk.jfr.Configuration.create(reader);
+        }
+        Recording recording = new Recording(configuration);
+        recording.setName("chat-server");
+        recording.setDestination(Path.of(file));
+        recording.setToDisk(true);
+        recording.start();
+        log.info("JFR recording started, written to {} on shutdown", file);
+        return recording;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.top.server.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Один шаг маршрута Camel (process, to jpa:, setBody, ...)
+@Name("ru.top.chat.RouteStage")
+@Label("Route Stage")
+@Description("One processor of a Camel route")
+public class RouteStageEvent extends ChatJfrEvent {
+    @Label("Stage")
+    @Description("Processor kind: process, to, setBody, ...")
+    public String stage;
+
+    @Label("Node")
+    @Description("Camel node id")
+    public String node;
+
+    @Label("Endpoint")
+    @Description("Target endpoint URI for to/toD, otherwise empty")
+    public String endpoint;
+
+    @Label("Failed")
+    public boolean failed;
+}
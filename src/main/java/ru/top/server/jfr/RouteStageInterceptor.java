@@ -0,0 +1,73 @@
+package ru.top.server.jfr;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.NamedNode;
+import org.apache.camel.Processor;
+import org.apache.camel.model.OutputNode;
+import org.apache.camel.model.ProcessorDefinitionHelper;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.SendDefinition;
+import org.apache.camel.spi.InterceptStrategy;
+import org.apache.camel.support.processor.DelegateAsyncProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Каждый шаг маршрутов Camel оборачивается событием RouteStageEvent; контейнеры (doTry, doCatch, ...)
+// не оборачиваются, чтобы время их шагов не считалось дважды. Camel подхватывает бин InterceptStrategy
+// из контекста Spring сам. При chat.jfr.enabled=false бина нет и маршруты не меняются
+@Component
+@ConditionalOnProperty(name = "chat.jfr.enabled", havingValue = "true")
+public class RouteStageInterceptor implements InterceptStrategy {
+
+    @Override
+    public Processor wrapProcessorInInterceptors(CamelContext context, NamedNode definition, Processor target, Processor nextTarget) {
+        if (definition instanceof OutputNode) {
+            return target;
+        }
+        String routeId = routeName(definition);
+        String stage = definition.getShortName();
+        String node = definition.getId();
+        String endpoint = definition instanceof SendDefinition<?> send ? send.getEndpointUri() : "";
+        return new DelegateAsyncProcessor(target) {
+            @Override
+            public boolean process(Exchange exchange, AsyncCallback callback) {
+                String previous = ChatJfr.enterRoute(routeId);
+                RouteStageEvent event = new RouteStageEvent();
+                event.begin();
+                try {
+                    return super.process(exchange, doneSync -> {
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.routeId = routeId;
+                            event.userHash = ChatJfr.userHash();
+                            event.stage = stage;
+                            event.node = node;
+                            event.endpoint = endpoint;
+                            event.failed = exchange.getException() != null;
+                            event.commit();
+                        }
+                        callback.done(doneSync);
+                    });
+                } finally {
+                    ChatJfr.restoreRoute(previous);
+                }
+            }
+        };
+    }
+
+    // Маршруты приложения не имеют явных id (route12 и т.п.), поэтому в событии - входной эндпоинт маршрута
+    private static String routeName(NamedNode definition) {
+        RouteDefinition route = ProcessorDefinitionHelper.getRoute(definition);
+        if (route == null) {
+            return ProcessorDefinitionHelper.getRouteId(definition);
+        }
+        if (route.hasCustomIdAssigned() || route.getInput() == null) {
+            return route.getRouteId();
+        }
+        String uri = route.getInput().getEndpointUri();
+        int query = uri.indexOf('?');
+        return query < 0 ? uri : uri.substring(0, query);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.top.server.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Сериализация ответа Jackson (writeValueAsString / writeValueAsBytes)
+@Name("ru.top.chat.Serialization")
+@Label("JSON Serialization")
+@Description("Jackson serialization of a value into a response or event")
+public class SerializationEvent extends ChatJfrEvent {
+    @Label("Type")
+    @Description("Simple class name of the serialized value")
+    public String type;
+
+    @Label("Size")
+    @Description("Serialized length: bytes, or characters for writeValueAsString")
+    public long bytes;
+}
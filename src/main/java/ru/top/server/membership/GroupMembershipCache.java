@@ -0,0 +1,82 @@
+package ru.top.server.membership;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.top.server.event.ChatEvent;
+import ru.top.server.event.ChatEventListener;
+import ru.top.server.event.ChatEventType;
+import ru.top.server.repository.ChatUserGroupsRepository;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Группы пользователя в памяти узла: опрос /api/sync и проверки членства не читают chat_user_groups на каждый запрос.
+// Запись пользователя сбрасывается событием MEMBERSHIP_CHANGED шины - своим сразу после вступления, событием
+// другого узла - по его доставке. Загрузка, с которой пересеклось вступление, в кэш не кладётся (счётчик invalidations),
+// поэтому устаревший список не переживает событие; RESET (потеря событий шиной) сбрасывает всё.
+// Число пользователей ограничено max-users
+@Component
+public class GroupMembershipCache implements ChatEventListener {
+    private final ChatUserGroupsRepository userGroupsRepository;
+    private final int maxUsers;
+    private final ConcurrentHashMap<String, List<String>> groupsByUser = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public GroupMembershipCache(ChatUserGroupsRepository userGroupsRepository, MeterRegistry meterRegistry,
+                                @Value("${chat.membership-cache.max-users:100000}") int maxUsers) {
+        this.userGroupsRepository = userGroupsRepository;
+        this.maxUsers = maxUsers;
+        this.hits = Counter.builder("chat.membership-cache.requests").tag("result", "hit")
+                .description("Group membership lookups answered from memory").register(meterRegistry);
+        this.misses = Counter.builder("chat.membership-cache.requests").tag("result", "miss")
+                .description("Group membership lookups loaded from the database").register(meterRegistry);
+        Gauge.builder("chat.membership-cache.users", groupsByUser, Map::size)
+                .description("Users with cached group membership").register(meterRegistry);
+    }
+
+    // Неизменяемый список id групп пользователя
+    public List<String> groupIds(String userId) {
+        List<String> cached = groupsByUser.get(userId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long seen = invalidations.get();
+        List<String> loaded = List.copyOf(userGroupsRepository.findGroupIdsByUserId(userId));
+        if (invalidations.get() == seen) {
+            if (groupsByUser.size() >= maxUsers) {
+                // Вытесняется произвольный пользователь: он просто загрузится заново
+                Iterator<String> keys = groupsByUser.keySet().iterator();
+                if (keys.hasNext()) {
+                    groupsByUser.remove(keys.next());
+                }
+            }
+            groupsByUser.putIfAbsent(userId, loaded);
+        }
+        return loaded;
+    }
+
+    public boolean isMember(String userId, String groupId) {
+        return groupIds(userId).contains(groupId);
+    }
+
+    @Override
+    public void onEvent(ChatEvent event, boolean local) {
+        if (event.type() == ChatEventType.MEMBERSHIP_CHANGED && event.userId() != null) {
+            invalidations.incrementAndGet();
+            groupsByUser.remove(event.userId());
+        } else if (event.type() == ChatEventType.RESET) {
+            invalidations.incrementAndGet();
+            groupsByUser.clear();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.top.server.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+// Метаданные вложения; содержимое лежит в AttachmentStore под именем sha256, одинаковые файлы хранятся один раз
+@Entity
+@Table(name = "CHAT_ATTACHMENT")
+public class ChatAttachment {
+    @Id
+    private String id;
+
+    private String sha256;
+
+    private long sizeBytes;
+
+    private String contentType;
+
+    private String fileName;
+
+    private String uploaderId;
+
+    private LocalDateTime createdAt;
+
+    public ChatAttachment() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    public String getUploaderId() { return uploaderId; }
+    public void setUploaderId(String uploaderId) { this.uploaderId = uploaderId; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
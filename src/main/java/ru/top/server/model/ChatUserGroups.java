@@ -7,7 +7,7 @@ import jakarta.persistence.*;
 public class ChatUserGroups {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne
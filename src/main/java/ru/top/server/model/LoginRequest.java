@@ -1,6 +1,11 @@
 package ru.top.server.model;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
+import ru.top.server.dto.ValidatedRequest;
 
-public record LoginRequest(String username, String password) {
-}
\ No newline at end of file
+public record LoginRequest(String username, String password) implements ValidatedRequest {
+
+    @Override
+    public String validate() {
+        return username == null || password == null || password.isEmpty() ? "Missing username or password" : null;
+    }
+}
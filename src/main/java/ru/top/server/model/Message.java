@@ -16,10 +16,19 @@ import java.time.LocalDateTime;
                         "(:since IS NULL OR m.timestamp > :since) " +
                         "ORDER BY m.timestamp ASC"
         ),
+        @NamedQuery(
+                name = "Message.findByIds",
+                query = "SELECT m FROM Message m WHERE m.id IN :ids"
+        ),
         @NamedQuery(
                 name = "Message.findByGroupId",
                 query = "SELECT m FROM Message m WHERE m.group.id = :groupId AND m.chatType = 'GROUP'"
         ),
+        @NamedQuery(
+                name = "Message.findGroupMessagesSince",
+                query = "SELECT m FROM Message m WHERE m.group.id = :groupId AND m.chatType = 'GROUP' AND m.timestamp > :since " +
+                        "ORDER BY m.timestamp ASC"
+        ),
         @NamedQuery(
                 name = "Message.findChatHistory",
                 query = "SELECT m FROM Message m WHERE m.chatType = 'PRIVATE' AND " +
@@ -27,6 +36,28 @@ import java.time.LocalDateTime;
                         "(m.sender.id = :otherUserId AND m.recipient.id = :userId)) " +
                         "ORDER BY m.timestamp ASC"
         ),
+        @NamedQuery(
+                name = "Message.findChatHistoryBefore",
+                query = "SELECT m FROM Message m WHERE m.chatType = 'PRIVATE' AND " +
+                        "((m.sender.id = :userId AND m.recipient.id = :otherUserId) OR " +
+                        "(m.sender.id = :otherUserId AND m.recipient.id = :userId)) AND " +
+                        "(:before IS NULL OR m.timestamp < :before) " +
+                        "ORDER BY m.timestamp DESC"
+        ),
+        @NamedQuery(
+                name = "Message.updateContent",
+                query = "UPDATE Message m SET m.content = :content, m.editedAt = :editedAt WHERE m.id = :id"
+        ),
+        @NamedQuery(
+                name = "Message.deleteById",
+                query = "DELETE FROM Message m WHERE m.id = :id"
+        ),
+        @NamedQuery(
+                name = "Message.findUserMessages",
+                query = "SELECT m FROM Message m WHERE m.sender.id = :userId OR m.recipient.id = :userId OR " +
+                        "m.group.id IN (SELECT cug.group.id FROM ChatUserGroups cug WHERE cug.user.id = :userId) " +
+                        "ORDER BY m.timestamp ASC, m.id ASC"
+        ),
         @NamedQuery(
                 name = "Message.searchMessages",
                 query = "SELECT m FROM Message m WHERE (m.sender.id = :userId OR m.recipient.id = :userId OR m.group.id IN (SELECT cug.group.id FROM ChatUserGroups cug WHERE cug.user.id = :userId))" +
@@ -59,6 +90,12 @@ public class Message {
 
     private LocalDateTime timestamp;
 
+    // Вложение (ChatAttachment.id) или null
+    private String attachmentId;
+
+    // Время последнего редактирования или null
+    private LocalDateTime editedAt;
+
     public String getId() {
         return id;
     }
@@ -153,4 +190,34 @@ public class Message {
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
-}
\ No newline at end of file
+
+    public String getAttachmentId() {
+        return attachmentId;
+    }
+
+    public void setAttachmentId(String attachmentId) {
+        this.attachmentId = attachmentId;
+    }
+
+    public LocalDateTime getEditedAt() {
+        return editedAt;
+    }
+
+    public void setEditedAt(LocalDateTime editedAt) {
+        this.editedAt = editedAt;
+    }
+
+    // Ключ переписки: "g:<groupId>" для групп, "p:<меньший id>|<больший id>" для личных сообщений
+    public String conversationKey() {
+        return "GROUP".equals(chatType) ? groupConversationKey(getGroupId())
+                : privateConversationKey(getSenderId(), getRecipientId());
+    }
+
+    public static String privateConversationKey(String userId, String otherUserId) {
+        return userId.compareTo(otherUserId) < 0 ? "p:" + userId + "|" + otherUserId : "p:" + otherUserId + "|" + userId;
+    }
+
+    public static String groupConversationKey(String groupId) {
+        return "g:" + groupId;
+    }
+}
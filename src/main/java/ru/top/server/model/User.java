@@ -1,24 +0,0 @@
-package ru.top.server.model;
-
-import jakarta.persistence.Entity;
-import jakarta.persistence.Id;
-import jakarta.persistence.ManyToMany;
-import java.util.List;
-
-@Entity
-public class User {
-    @Id
-    private String id; // Уникальный ID пользователя
-    private String username;
-
-    @ManyToMany
-    private List<Group> groups;
-
-    // Геттеры и сеттеры
-    public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
-    public String getUsername() { return username; }
-    public void setUsername(String username) { this.username = username; }
-    public List<Group> getGroups() { return groups; }
-    public void setGroups(List<Group> groups) { this.groups = groups; }
-}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package ru.top.server.presence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Хешированное колесо таймеров: одна нить-тикер и wheelSize корзин по tickNanos вместо таймера на каждую запись.
+// Продление срока не переставляет запись: тикер, дойдя до корзины, сверяет текущий дедлайн записи
+// и при необходимости переносит её дальше. Поэтому горячий путь (heartbeat) - только запись поля,
+// а новые записи попадают в колесо через неблокирующую очередь
+final class HashedTimingWheel {
+
+    // Запись колеса; rounds и корзина принадлежат только нити-тикеру
+    abstract static class Timeout {
+        private long rounds;
+
+        // Текущий дедлайн (System.nanoTime), может сдвигаться вперёд
+        abstract long deadlineNanos();
+
+        // Вызывается, когда дедлайн наступил; false - срок продлён конкурентно и запись остаётся в колесе
+        abstract boolean expire(long nowNanos);
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<Timeout>[] buckets;
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread ticker;
+    private long currentTick;
+    private volatile boolean running = true;
+
+    HashedTimingWheel(String name, long tickMillis, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = wheelSize - 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Timeout>[] created = (List<Timeout>[]) new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            created[i] = new ArrayList<>();
+        }
+        this.buckets = created;
+        this.ticker = new Thread(this::run, name);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    void schedule(Timeout timeout) {
+        incoming.add(timeout);
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        ticker.interrupt();
+        ticker.join(1000);
+    }
+
+    private void run() {
+        List<Timeout> moved = new ArrayList<>();
+        while (running) {
+            long tickDeadline = startNanos + (currentTick + 1) * tickNanos;
+            long sleepNanos = tickDeadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            for (Timeout timeout; (timeout = incoming.poll()) != null; ) {
+                place(timeout);
+            }
+            expireBucket(buckets[(int) (currentTick & mask)], System.nanoTime(), moved);
+            currentTick++;
+            for (Timeout timeout : moved) {
+                place(timeout);
+            }
+            moved.clear();
+        }
+    }
+
+    // Обход корзины с уплотнением на месте; продлённые записи откладываются в moved, чтобы не попасть
+    // обратно в ту же корзину во время обхода
+    private void expireBucket(List<Timeout> bucket, long now, List<Timeout> moved) {
+        int kept = 0;
+        for (int i = 0, size = bucket.size(); i < size; i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                bucket.set(kept++, timeout);
+            } else if (timeout.deadlineNanos() - now > 0 || !timeout.expire(now)) {
+                moved.add(timeout);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void place(Timeout timeout) {
+        long ticks = Math.max((timeout.deadlineNanos() - startNanos + tickNanos - 1) / tickNanos, currentTick);
+        timeout.rounds = (ticks - currentTick) / buckets.length;
+        buckets[(int) (ticks & mask)].add(timeout);
+    }
+}
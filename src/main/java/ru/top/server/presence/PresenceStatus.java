@@ -0,0 +1,28 @@
+package ru.top.server.presence;
+
+// Статус присутствия; OFFLINE - записи нет (heartbeat не приходил дольше online-ttl)
+public enum PresenceStatus {
+    ONLINE("online"),
+    AWAY("away"),
+    OFFLINE("offline");
+
+    private final String key;
+
+    PresenceStatus(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    // null для неизвестного значения
+    public static PresenceStatus fromKey(String key) {
+        for (PresenceStatus status : values()) {
+            if (status.key.equalsIgnoreCase(key)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
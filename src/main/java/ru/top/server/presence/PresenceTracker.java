@@ -0,0 +1,157 @@
+package ru.top.server.presence;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Присутствие (online/away) и индикаторы набора текста - только в памяти, в chat.db ничего не пишется.
+// Heartbeat существующего пользователя - поиск в ConcurrentHashMap и CAS срока жизни;
+// истечение сроков обслуживает одно колесо таймеров на все записи
+@Component
+public class PresenceTracker {
+    private final long onlineTtlNanos;
+    private final long typingTtlNanos;
+    private final HashedTimingWheel wheel;
+    private final ConcurrentHashMap<String, PresenceEntry> presence = new ConcurrentHashMap<>();
+    // беседа -> пользователь -> запись; новые записи и удаление пустых бесед идут через compute внешней карты
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, TypingEntry>> typing = new ConcurrentHashMap<>();
+
+    public PresenceTracker(Environment environment, MeterRegistry meterRegistry) {
+        this.onlineTtlNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("chat.presence.online-ttl-ms", Long.class, 30000L));
+        this.typingTtlNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("chat.presence.typing-ttl-ms", Long.class, 5000L));
+        this.wheel = new HashedTimingWheel("presence-wheel",
+                environment.getProperty("chat.presence.tick-ms", Long.class, 100L),
+                environment.getProperty("chat.presence.wheel-size", Integer.class, 512));
+        Gauge.builder("chat.presence.online", presence, Map::size)
+                .description("Users with a live presence heartbeat").register(meterRegistry);
+        Gauge.builder("chat.presence.typing.conversations", typing, Map::size)
+                .description("Conversations with someone typing").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        wheel.stop();
+    }
+
+    public void heartbeat(String userId, PresenceStatus status) {
+        long now = System.nanoTime();
+        while (true) {
+            PresenceEntry entry = presence.get(userId);
+            if (entry != null && entry.extend(now + onlineTtlNanos)) {
+                entry.status = status;
+                return;
+            }
+            // записи нет или она только что истекла - заменяем
+            PresenceEntry fresh = new PresenceEntry(userId, status, now, onlineTtlNanos);
+            if (entry == null ? presence.putIfAbsent(userId, fresh) == null : presence.replace(userId, entry, fresh)) {
+                wheel.schedule(fresh);
+                return;
+            }
+        }
+    }
+
+    // Явный выход: пользователь сразу становится offline
+    public void offline(String userId) {
+        PresenceEntry entry = presence.get(userId);
+        if (entry != null) {
+            entry.kill();
+        }
+    }
+
+    // Статусы списка пользователей в порядке запроса
+    public List<PresenceView> statuses(List<String> userIds) {
+        long now = System.nanoTime();
+        List<PresenceView> result = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            PresenceEntry entry = presence.get(userId);
+            PresenceStatus status = entry != null && entry.isAlive(now) ? entry.status : PresenceStatus.OFFLINE;
+            result.add(new PresenceView(userId, status.key()));
+        }
+        return result;
+    }
+
+    public void typing(String conversationKey, String userId, boolean typing) {
+        if (!typing) {
+            ConcurrentHashMap<String, TypingEntry> users = this.typing.get(conversationKey);
+            TypingEntry entry = users != null ? users.get(userId) : null;
+            if (entry != null) {
+                entry.kill();
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        ConcurrentHashMap<String, TypingEntry> users = this.typing.get(conversationKey);
+        TypingEntry entry = users != null ? users.get(userId) : null;
+        if (entry != null && entry.extend(now + typingTtlNanos)) {
+            return;
+        }
+        this.typing.compute(conversationKey, (key, current) -> {
+            ConcurrentHashMap<String, TypingEntry> target = current != null ? current : new ConcurrentHashMap<>();
+            TypingEntry existing = target.get(userId);
+            if (existing == null || !existing.extend(now + typingTtlNanos)) {
+                TypingEntry fresh = new TypingEntry(conversationKey, userId, now, typingTtlNanos);
+                target.put(userId, fresh);
+                wheel.schedule(fresh);
+            }
+            return target;
+        });
+    }
+
+    public List<String> typingUsers(String conversationKey) {
+        ConcurrentHashMap<String, TypingEntry> users = typing.get(conversationKey);
+        if (users == null) {
+            return List.of();
+        }
+        long now = System.nanoTime();
+        List<String> result = new ArrayList<>(users.size());
+        for (TypingEntry entry : users.values()) {
+            if (entry.isAlive(now)) {
+                result.add(entry.userId);
+            }
+        }
+        return result;
+    }
+
+    private final class PresenceEntry extends TtlEntry {
+        private final String userId;
+        private volatile PresenceStatus status;
+
+        PresenceEntry(String userId, PresenceStatus status, long nowNanos, long ttlNanos) {
+            super(nowNanos, ttlNanos);
+            this.userId = userId;
+            this.status = status;
+        }
+
+        @Override
+        void onExpired() {
+            presence.remove(userId, this);
+        }
+    }
+
+    private final class TypingEntry extends TtlEntry {
+        private final String conversationKey;
+        private final String userId;
+
+        TypingEntry(String conversationKey, String userId, long nowNanos, long ttlNanos) {
+            super(nowNanos, ttlNanos);
+            this.conversationKey = conversationKey;
+            this.userId = userId;
+        }
+
+        @Override
+        void onExpired() {
+            typing.computeIfPresent(conversationKey, (key, users) -> {
+                users.remove(userId, this);
+                return users.isEmpty() ? null : users;
+            });
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package ru.top.server.presence;
+
+// Элемент ответа GET /api/presence
+public record PresenceView(String userId, String status) {
+}
@@ -0,0 +1,77 @@
+package ru.top.server.presence;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Запись с продлеваемым сроком жизни. Продление - CAS по expiresAt без блокировок;
+// истечение и продление гонятся за одно поле, поэтому продлённая в последний момент запись не теряется:
+// либо продление успело и тикер переносит запись, либо запись умерла и вызывающий создаёт новую
+abstract class TtlEntry extends HashedTimingWheel.Timeout {
+    private static final long DEAD = Long.MIN_VALUE;
+    private static final VarHandle EXPIRES_AT;
+
+    static {
+        try {
+            EXPIRES_AT = MethodHandles.lookup().findVarHandle(TtlEntry.class, "expiresAt", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long createdAt;
+    private volatile long expiresAt;
+
+    TtlEntry(long nowNanos, long ttlNanos) {
+        this.createdAt = nowNanos;
+        this.expiresAt = nowNanos + ttlNanos;
+    }
+
+    // false - запись уже истекла и удалена, нужна новая
+    final boolean extend(long deadline) {
+        while (true) {
+            long current = expiresAt;
+            if (current == DEAD) {
+                return false;
+            }
+            if (deadline - current <= 0 || EXPIRES_AT.compareAndSet(this, current, deadline)) {
+                return true;
+            }
+        }
+    }
+
+    // Досрочное удаление; true - если запись была жива
+    final boolean kill() {
+        if ((long) EXPIRES_AT.getAndSet(this, DEAD) == DEAD) {
+            return false;
+        }
+        onExpired();
+        return true;
+    }
+
+    final boolean isAlive(long nowNanos) {
+        long current = expiresAt;
+        return current != DEAD && current - nowNanos > 0;
+    }
+
+    @Override
+    final long deadlineNanos() {
+        long current = expiresAt;
+        return current == DEAD ? createdAt : current;
+    }
+
+    @Override
+    final boolean expire(long nowNanos) {
+        long current = expiresAt;
+        if (current == DEAD) {
+            return true;
+        }
+        if (current - nowNanos > 0 || !EXPIRES_AT.compareAndSet(this, current, DEAD)) {
+            return false;
+        }
+        onExpired();
+        return true;
+    }
+
+    // Удаление записи из индексов; вызывается ровно один раз
+    abstract void onExpired();
+}
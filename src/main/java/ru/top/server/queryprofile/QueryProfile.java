@@ -0,0 +1,52 @@
+package ru.top.server.queryprofile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// SQL-операторы и загрузки сущностей одного HTTP-запроса. Собирается в потоке запроса: маршруты Camel
+// (direct:) выполняются в потоке сервлета, работа фоновых потоков (сброс реакций, вебхуки) сюда не попадает
+public final class QueryProfile {
+    private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+
+    private final List<String> statements = new ArrayList<>();
+    private final Map<String, Integer> entityLoads = new TreeMap<>();
+
+    static QueryProfile start() {
+        QueryProfile profile = new QueryProfile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    static void finish() {
+        CURRENT.remove();
+    }
+
+    static void statement(String sql) {
+        QueryProfile profile = CURRENT.get();
+        if (profile != null) {
+            profile.statements.add(sql);
+        }
+    }
+
+    static void entityLoaded(String entityName) {
+        QueryProfile profile = CURRENT.get();
+        if (profile != null) {
+            profile.entityLoads.merge(entityName, 1, Integer::sum);
+        }
+    }
+
+    // Ответ /actuator/queryprofile/{id}
+    Map<String, Object> toMap() {
+        int loads = 0;
+        for (int count : entityLoads.values()) {
+            loads += count;
+        }
+        return Map.of(
+                "statements", statements.size(),
+                "entityLoads", loads,
+                "sql", statements,
+                "entities", entityLoads);
+    }
+}
@@ -0,0 +1,102 @@
+package ru.top.server.queryprofile;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.Interceptor;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.type.Type;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Профиль SQL по запросам для проверки бюджетов (тест QueryBudgetTest).
+// Запрос с заголовком X-Query-Profile: <id> профилируется целиком, вместе с фильтрами безопасности;
+// результат - GET /actuator/queryprofile/{id} на порту management.server.port (число операторов, их SQL,
+// загрузки сущностей по типам). Только для тестовых стендов: включается chat.query-profile.enabled=true
+@Configuration
+@ConditionalOnProperty(name = "chat.query-profile.enabled", havingValue = "true")
+public class QueryProfileConfiguration {
+    private static final String HEADER = "X-Query-Profile";
+    private static final int MAX_PROFILES = 1000;
+
+    // Последние профили по id запроса
+    private final Map<String, QueryProfile> profiles = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryProfile> eldest) {
+            return size() > MAX_PROFILES;
+        }
+    });
+
+    // Загрузки сущностей: перехватчик фабрики сессий вызывается на каждую гидратацию сущности
+    @Bean
+    public HibernatePropertiesCustomizer queryProfileInterceptor() {
+        Interceptor interceptor = new Interceptor() {
+            @Override
+            public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+                QueryProfile.entityLoaded(entity.getClass().getSimpleName());
+                return false;
+            }
+        };
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR, interceptor);
+    }
+
+    // Раньше всех фильтров, включая цепочку Spring Security: проверка JWT тоже ходит в БД
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> queryProfileFilter() {
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                String id = request.getHeader(HEADER);
+                if (id == null) {
+                    chain.doFilter(request, response);
+                    return;
+                }
+                QueryProfile profile = QueryProfile.start();
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    QueryProfile.finish();
+                    profiles.put(id, profile);
+                }
+            }
+        });
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public QueryProfileEndpoint queryProfileEndpoint() {
+        return new QueryProfileEndpoint(profiles);
+    }
+
+    @Endpoint(id = "queryprofile")
+    public static class QueryProfileEndpoint {
+        private final Map<String, QueryProfile> profiles;
+
+        QueryProfileEndpoint(Map<String, QueryProfile> profiles) {
+            this.profiles = profiles;
+        }
+
+        // null - 404: запрос с таким id не профилировался или уже вытеснен
+        @ReadOperation
+        public Map<String, Object> profile(@Selector String id) {
+            QueryProfile profile = profiles.get(id);
+            return profile != null ? profile.toMap() : null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.top.server.queryprofile;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+// Основной DataSource оборачивается прокси: каждое подготовленное выражение (prepareStatement / prepareCall)
+// и каждый execute* простого Statement записывается в QueryProfile текущего запроса. Так считаются и запросы
+// Hibernate, и JdbcTemplate. Прокси создаётся только при chat.query-profile.enabled=true
+@Component
+@ConditionalOnProperty(name = "chat.query-profile.enabled", havingValue = "true")
+public class QueryProfileInstrumentation implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+        return proxy(bean, invocation -> {
+            Object result = invocation.proceed();
+            return result instanceof Connection && invocation.getMethod().getName().equals("getConnection")
+                    ? connection(result) : result;
+        });
+    }
+
+    private static Object connection(Object connection) {
+        return proxy(connection, invocation -> {
+            String method = invocation.getMethod().getName();
+            Object result = invocation.proceed();
+            if (method.equals("prepareStatement") || method.equals("prepareCall")) {
+                QueryProfile.statement((String) invocation.getArguments()[0]);
+            } else if (method.equals("createStatement")) {
+                return statement(result);
+            }
+            return result;
+        });
+    }
+
+    private static Object statement(Object statement) {
+        return proxy(statement, invocation -> {
+            String method = invocation.getMethod().getName();
+            Object[] arguments = invocation.getArguments();
+            if (method.startsWith("execute") && arguments.length > 0 && arguments[0] instanceof String sql) {
+                QueryProfile.statement(sql);
+            }
+            return invocation.proceed();
+        });
+    }
+
+    private static Object proxy(Object target, MethodInterceptor interceptor) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setInterfaces(ClassUtils.getAllInterfaces(target));
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy(ClassUtils.getDefaultClassLoader());
+    }
+}
@@ -0,0 +1,18 @@
+package ru.top.server.ratelimit;
+
+// Группы маршрутов с отдельными лимитами; name используется в свойствах и тегах метрик
+public enum RateLimitedRoute {
+    SEND("send"),
+    SEARCH("search"),
+    REACT("react");
+
+    private final String key;
+
+    RateLimitedRoute(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.top.server.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import ru.top.server.config.HttpStatusException;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Ограничение частоты запросов пользователя по группам маршрутов.
+// Ключ - имя аутентифицированного пользователя (уникально и доступно без запроса к БД).
+// Настройки: chat.rate-limit.<send|search|react>.capacity и .refill-per-second
+@Component
+public class RateLimiter {
+
+    private final boolean enabled;
+    private final Map<RateLimitedRoute, StripedTokenBucketLimiter> limiters = new EnumMap<>(RateLimitedRoute.class);
+    private final Map<RateLimitedRoute, Counter> throttled = new EnumMap<>(RateLimitedRoute.class);
+
+    public RateLimiter(Environment environment, MeterRegistry meterRegistry) {
+        this.enabled = environment.getProperty("chat.rate-limit.enabled", Boolean.class, true);
+        int stripes = environment.getProperty("chat.rate-limit.stripes", Integer.class, 64);
+        int slots = environment.getProperty("chat.rate-limit.slots-per-stripe", Integer.class, 1024);
+        for (RateLimitedRoute route : RateLimitedRoute.values()) {
+            String prefix = "chat.rate-limit." + route.key();
+            long capacity = environment.getProperty(prefix + ".capacity", Long.class, 20L);
+            double refill = environment.getProperty(prefix + ".refill-per-second", Double.class, 5d);
+            limiters.put(route, new StripedTokenBucketLimiter(stripes, slots, capacity, refill));
+            throttled.put(route, Counter.builder("chat.ratelimit.throttled")
+                    .description("Requests rejected by the per-user rate limiter")
+                    .tag("route", route.key())
+                    .register(meterRegistry));
+        }
+    }
+
+    // Проверка лимита для текущего пользователя; при превышении - 429 с заголовком Retry-After (в секундах)
+    public void check(RateLimitedRoute route) {
+        if (!enabled) {
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null) {
+            return;
+        }
+        long waitNanos = limiters.get(route).tryAcquire(authentication.getName(), System.nanoTime());
+        if (waitNanos > 0) {
+            throttled.get(route).increment();
+            long retryAfter = Math.max(1L, (waitNanos + 999_999_999L) / 1_000_000_000L);
+            throw new HttpStatusException(429, "Rate limit exceeded for " + route.key(),
+                    Map.of("Retry-After", Long.toString(retryAfter)));
+        }
+    }
+}
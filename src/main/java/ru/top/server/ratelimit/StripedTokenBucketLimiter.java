@@ -0,0 +1,103 @@
+package ru.top.server.ratelimit;
+
+// Набор token bucket'ов, разбитый на полосы (stripes) с отдельной блокировкой.
+// Внутри полосы - открытая адресация по 64-битному хешу ключа; состояние хранится в примитивных массивах,
+// поэтому проверка лимита не создаёт объектов. Токены хранятся в фиксированной точке (1 токен = SCALE единиц)
+final class StripedTokenBucketLimiter {
+    private static final long SCALE = 1_000L;
+    private static final long EMPTY = 0L;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final long capacityScaled;
+    private final long nanosPerUnit;
+
+    StripedTokenBucketLimiter(int stripeCount, int slotsPerStripe, long capacity, double refillPerSecond) {
+        if (Integer.bitCount(stripeCount) != 1 || Integer.bitCount(slotsPerStripe) != 1) {
+            throw new IllegalArgumentException("Stripe and slot counts must be powers of two");
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(slotsPerStripe);
+        }
+        this.stripeMask = stripeCount - 1;
+        this.capacityScaled = capacity * SCALE;
+        // Сколько наносекунд нужно на одну единицу токена
+        this.nanosPerUnit = Math.max(1L, Math.round(1_000_000_000d / (refillPerSecond * SCALE)));
+    }
+
+    // Возвращает 0, если токен выдан, иначе время в наносекундах до появления следующего токена
+    long tryAcquire(String key, long nowNanos) {
+        long hash = hash(key);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = stripe.slotFor(hash, nowNanos, capacityScaled);
+            long elapsed = nowNanos - stripe.lastRefill[slot];
+            long tokens = stripe.tokens[slot];
+            if (elapsed > 0) {
+                long refill = elapsed / nanosPerUnit;
+                tokens = refill >= capacityScaled - tokens ? capacityScaled : tokens + refill;
+                stripe.lastRefill[slot] = nowNanos;
+            }
+            if (tokens >= SCALE) {
+                stripe.tokens[slot] = tokens - SCALE;
+                return 0L;
+            }
+            stripe.tokens[slot] = tokens;
+            return (SCALE - tokens) * nanosPerUnit;
+        }
+    }
+
+    // 64-битный хеш строки (FNV-1a с финальным перемешиванием); 0 зарезервирован под пустой слот
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1L : h;
+    }
+
+    private static final class Stripe {
+        private static final int MAX_PROBES = 8;
+
+        private final long[] keys;
+        private final long[] tokens;
+        private final long[] lastRefill;
+        private final int mask;
+
+        Stripe(int slots) {
+            keys = new long[slots];
+            tokens = new long[slots];
+            lastRefill = new long[slots];
+            mask = slots - 1;
+        }
+
+        // Поиск слота ключа. Если ключа нет и свободного места в окне проб нет,
+        // вытесняется слот с самым давним обращением (его bucket почти наверняка уже полон)
+        int slotFor(long hash, long nowNanos, long capacityScaled) {
+            int start = (int) hash & mask;
+            int victim = start;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (start + probe) & mask;
+                if (keys[slot] == hash) {
+                    return slot;
+                }
+                if (keys[slot] == EMPTY) {
+                    victim = slot;
+                    break;
+                }
+                if (lastRefill[slot] - lastRefill[victim] < 0) {
+                    victim = slot;
+                }
+            }
+            keys[victim] = hash;
+            tokens[victim] = capacityScaled;
+            lastRefill[victim] = nowNanos;
+            return victim;
+        }
+    }
+}
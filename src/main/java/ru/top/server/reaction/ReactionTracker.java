@@ -0,0 +1,302 @@
+package ru.top.server.reaction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Реакции на сообщения. Переключение не пишет в БД: меняется состояние пользователя в памяти и счётчик
+// (сообщение, emoji) - LongAdder, поэтому тысячи реакций на одно объявление не выстраиваются в очередь к писателю SQLite.
+// Раз в flush-interval-ms накопленное записывается одной транзакцией: счётчики - прибавлением разницы
+// к chat_message_reaction, состояния пользователей - строками chat_message_reactor.
+// Чтение складывает записанное и ещё не записанное; фиксация транзакции и вычитание записанного из памяти
+// идут под блокировкой записи, чтение - под блокировкой чтения, поэтому реакция не считается дважды и не теряется
+@Component
+public class ReactionTracker {
+    private static final Logger log = LoggerFactory.getLogger(ReactionTracker.class);
+    private static final int STRIPES = 64;
+
+    private static final String UPSERT_COUNT =
+            "INSERT INTO chat_message_reaction (message_id, emoji, count) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (message_id, emoji) DO UPDATE SET count = count + excluded.count";
+    private static final String DELETE_EMPTY_COUNT =
+            "DELETE FROM chat_message_reaction WHERE message_id = ? AND emoji = ? AND count <= 0";
+    private static final String INSERT_REACTOR =
+            "INSERT OR IGNORE INTO chat_message_reactor (message_id, user_id, emoji) VALUES (?, ?, ?)";
+    private static final String DELETE_REACTOR =
+            "DELETE FROM chat_message_reactor WHERE message_id = ? AND user_id = ? AND emoji = ?";
+    private static final String SELECT_REACTOR =
+            "SELECT count(*) FROM chat_message_reactor WHERE message_id = ? AND user_id = ? AND emoji = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final long flushIntervalMs;
+    private final int maxBatch;
+    private final Counter toggles;
+    private final Counter flushedRows;
+
+    // сообщение -> emoji -> ещё не записанное изменение числа реакций
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>> counters = new ConcurrentHashMap<>();
+    // ещё не записанное состояние реакции пользователя (true - стоит)
+    private final ConcurrentHashMap<ReactorKey, Boolean> reactors = new ConcurrentHashMap<>();
+    // удалённые сообщения, реакции которых удаляются следующей записью
+    private final Set<String> deletedMessages = ConcurrentHashMap.newKeySet();
+    // переключения одного пользователя сериализуются блокировкой полосы; разные пользователи одной реакции
+    // попадают в разные полосы и расходятся только на LongAdder
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    public ReactionTracker(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           @Value("${chat.reactions.flush-interval-ms:500}") long flushIntervalMs,
+                           @Value("${chat.reactions.max-batch:5000}") int maxBatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBatch = maxBatch;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.toggles = Counter.builder("chat.reactions.toggles").description("Reaction toggles received").register(meterRegistry);
+        this.flushedRows = Counter.builder("chat.reactions.flushed").description("Reaction rows written after coalescing").register(meterRegistry);
+        Gauge.builder("chat.reactions.pending", reactors, Map::size)
+                .description("User reaction changes waiting for flush").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = new Thread(this::flushLoop, "reaction-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(5000);
+        flush();
+    }
+
+    // Переключение реакции пользователя; возвращает новое состояние (true - реакция стоит)
+    public boolean toggle(String messageId, String emoji, String userId) {
+        ReactorKey key = new ReactorKey(messageId, emoji, userId);
+        ReentrantLock stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        boolean reacted;
+        stripe.lock();
+        try {
+            Boolean pending = reactors.get(key);
+            reacted = !(pending != null ? pending : persisted(key));
+            reactors.put(key, reacted);
+            counters.computeIfAbsent(messageId, id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(emoji, e -> new LongAdder())
+                    .add(reacted ? 1 : -1);
+        } finally {
+            stripe.unlock();
+        }
+        toggles.increment();
+        return reacted;
+    }
+
+    // Реакции сообщений: для каждого сообщения - emoji по убыванию числа реакций
+    public Map<String, List<ReactionView>> reactions(List<String> messageIds, String userId) {
+        Map<String, Map<String, Long>> counts = new HashMap<>();
+        Map<String, Set<String>> own = new HashMap<>();
+        flushLock.readLock().lock();
+        try {
+            String placeholders = String.join(",", Collections.nCopies(messageIds.size(), "?"));
+            jdbcTemplate.query("SELECT message_id, emoji, count FROM chat_message_reaction WHERE message_id IN (" + placeholders + ")",
+                    rs -> {
+                        counts.computeIfAbsent(rs.getString(1), id -> new HashMap<>()).put(rs.getString(2), rs.getLong(3));
+                    }, messageIds.toArray());
+            List<Object> parameters = new ArrayList<>(messageIds);
+            parameters.add(userId);
+            jdbcTemplate.query("SELECT message_id, emoji FROM chat_message_reactor WHERE message_id IN (" + placeholders + ") AND user_id = ?",
+                    rs -> {
+                        own.computeIfAbsent(rs.getString(1), id -> new HashSet<>()).add(rs.getString(2));
+                    }, parameters.toArray());
+            for (String messageId : messageIds) {
+                Map<String, LongAdder> pending = counters.get(messageId);
+                if (pending != null) {
+                    pending.forEach((emoji, delta) -> counts.computeIfAbsent(messageId, id -> new HashMap<>()).merge(emoji, delta.sum(), Long::sum));
+                }
+            }
+            // Состояние пользователя тоже читается под блокировкой: записанное и ещё не записанное не расходятся
+            Map<String, List<ReactionView>> result = new LinkedHashMap<>();
+            for (String messageId : messageIds) {
+                List<ReactionView> views = new ArrayList<>();
+                Set<String> mine = own.getOrDefault(messageId, Set.of());
+                counts.getOrDefault(messageId, Map.of()).forEach((emoji, count) -> {
+                    if (count > 0) {
+                        Boolean pending = reactors.get(new ReactorKey(messageId, emoji, userId));
+                        views.add(new ReactionView(emoji, count, pending != null ? pending : mine.contains(emoji)));
+                    }
+                });
+                views.sort(Comparator.comparingLong(ReactionView::count).reversed().thenComparing(ReactionView::emoji));
+                result.put(messageId, views);
+            }
+            return result;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Сообщение удалено: его реакции удаляются из БД следующей записью
+    public void messageDeleted(String messageId) {
+        deletedMessages.add(messageId);
+    }
+
+    private boolean persisted(ReactorKey key) {
+        Integer count = jdbcTemplate.queryForObject(SELECT_REACTOR, Integer.class, key.messageId(), key.userId(), key.emoji());
+        return count != null && count > 0;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // изменения остаются в памяти и уйдут следующей пачкой
+                log.error("Failed to flush reactions: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            List<Map.Entry<ReactorKey, Boolean>> users = new ArrayList<>();
+            for (Map.Entry<ReactorKey, Boolean> entry : reactors.entrySet()) {
+                if (users.size() >= maxBatch) {
+                    break;
+                }
+                users.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+            List<Delta> deltas = new ArrayList<>();
+            counters.forEach((messageId, emojis) -> emojis.forEach((emoji, adder) -> {
+                long delta = adder.sum();
+                if (delta != 0) {
+                    deltas.add(new Delta(messageId, emoji, adder, delta));
+                }
+            }));
+            List<String> deleted = new ArrayList<>(deletedMessages);
+            if (users.isEmpty() && deltas.isEmpty() && deleted.isEmpty()) {
+                return;
+            }
+
+            TransactionStatus status = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+            try {
+                write(users, deltas, deleted);
+            } catch (RuntimeException e) {
+                transactionManager.rollback(status);
+                throw e;
+            }
+            flushLock.writeLock().lock();
+            try {
+                transactionManager.commit(status);
+                for (Delta delta : deltas) {
+                    delta.adder().add(-delta.value());
+                }
+                // Удаляются только записанные значения: переключение во время записи останется до следующей пачки
+                for (Map.Entry<ReactorKey, Boolean> entry : users) {
+                    reactors.remove(entry.getKey(), entry.getValue());
+                }
+                if (!deleted.isEmpty()) {
+                    deleted.forEach(counters::remove);
+                    reactors.keySet().removeIf(key -> deleted.contains(key.messageId()));
+                    deleted.forEach(deletedMessages::remove);
+                }
+            } finally {
+                flushLock.writeLock().unlock();
+            }
+            flushedRows.increment(users.size() + deltas.size());
+            removeSettledCounters(deltas);
+            if (users.size() < maxBatch) {
+                return;
+            }
+        }
+    }
+
+    private void write(List<Map.Entry<ReactorKey, Boolean>> users, List<Delta> deltas, List<String> deleted) {
+        List<Map.Entry<ReactorKey, Boolean>> added = users.stream().filter(Map.Entry::getValue).toList();
+        List<Map.Entry<ReactorKey, Boolean>> removed = users.stream().filter(entry -> !entry.getValue()).toList();
+        jdbcTemplate.batchUpdate(INSERT_REACTOR, added, added.size(), (ps, entry) -> {
+            ps.setString(1, entry.getKey().messageId());
+            ps.setString(2, entry.getKey().userId());
+            ps.setString(3, entry.getKey().emoji());
+        });
+        jdbcTemplate.batchUpdate(DELETE_REACTOR, removed, removed.size(), (ps, entry) -> {
+            ps.setString(1, entry.getKey().messageId());
+            ps.setString(2, entry.getKey().userId());
+            ps.setString(3, entry.getKey().emoji());
+        });
+        jdbcTemplate.batchUpdate(UPSERT_COUNT, deltas, deltas.size(), (ps, delta) -> {
+            ps.setString(1, delta.messageId());
+            ps.setString(2, delta.emoji());
+            ps.setLong(3, delta.value());
+        });
+        List<Delta> decreased = deltas.stream().filter(delta -> delta.value() < 0).toList();
+        jdbcTemplate.batchUpdate(DELETE_EMPTY_COUNT, decreased, decreased.size(), (ps, delta) -> {
+            ps.setString(1, delta.messageId());
+            ps.setString(2, delta.emoji());
+        });
+        for (String messageId : deleted) {
+            jdbcTemplate.update("DELETE FROM chat_message_reaction WHERE message_id = ?", messageId);
+            jdbcTemplate.update("DELETE FROM chat_message_reactor WHERE message_id = ?", messageId);
+        }
+    }
+
+    // Обнулившиеся счётчики убираются под всеми блокировками полос: переключение не добавит к уже убранному счётчику
+    private void removeSettledCounters(List<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            for (Delta delta : deltas) {
+                counters.computeIfPresent(delta.messageId(), (messageId, emojis) -> {
+                    if (delta.adder().sum() == 0) {
+                        emojis.remove(delta.emoji(), delta.adder());
+                    }
+                    return emojis.isEmpty() ? null : emojis;
+                });
+            }
+        } finally {
+            for (ReentrantLock stripe : stripes) {
+                stripe.unlock();
+            }
+        }
+    }
+
+    private record Delta(String messageId, String emoji, LongAdder adder, long value) {
+    }
+}
@@ -0,0 +1,5 @@
+package ru.top.server.reaction;
+
+// Реакция на сообщение для ответа: число поставивших и стоит ли она у текущего пользователя
+public record ReactionView(String emoji, long count, boolean reacted) {
+}
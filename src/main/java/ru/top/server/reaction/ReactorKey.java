@@ -0,0 +1,5 @@
+package ru.top.server.reaction;
+
+// Реакция emoji пользователя userId на сообщение messageId
+record ReactorKey(String messageId, String emoji, String userId) {
+}
@@ -0,0 +1,26 @@
+package ru.top.server.receipt;
+
+// Отметки пользователя в беседе: до какого сообщения (время в наносекундах UTC и id) всё доставлено и прочитано.
+// 0 - отметки ещё нет. Отметки только растут, поэтому слияние - максимум по каждому статусу
+public record ReceiptMark(long deliveredAt, String deliveredMessageId, long readAt, String readMessageId) {
+
+    static ReceiptMark of(ReceiptStatus status, long at, String messageId) {
+        return status == ReceiptStatus.READ
+                ? new ReceiptMark(at, messageId, at, messageId)
+                : new ReceiptMark(at, messageId, 0, null);
+    }
+
+    ReceiptMark merge(ReceiptMark other) {
+        if (other == null) {
+            return this;
+        }
+        boolean delivered = other.deliveredAt > deliveredAt;
+        boolean read = other.readAt > readAt;
+        if (!delivered && !read) {
+            return this;
+        }
+        return new ReceiptMark(
+                delivered ? other.deliveredAt : deliveredAt, delivered ? other.deliveredMessageId : deliveredMessageId,
+                read ? other.readAt : readAt, read ? other.readMessageId : readMessageId);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.top.server.receipt;
+
+// Статус доставки: прочтение подразумевает доставку
+public enum ReceiptStatus {
+    DELIVERED("delivered"),
+    READ("read");
+
+    private final String key;
+
+    ReceiptStatus(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    // null для неизвестного значения
+    public static ReceiptStatus fromKey(String key) {
+        for (ReceiptStatus status : values()) {
+            if (status.key.equalsIgnoreCase(key)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,184 @@
+package ru.top.server.receipt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.top.server.store.EpochNanos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Отметки доставки/прочтения: одна строка chat_read_receipt на (беседа, пользователь) вместо строки на сообщение.
+// Подтверждения сливаются в памяти (максимум на пользователя и беседу) и записываются пачками
+// раз в flush-interval-ms одной транзакцией. Чтение беседы - один проход по первичному ключу плюс
+// ещё не записанные отметки из памяти
+@Component
+public class ReceiptTracker {
+    private static final Logger log = LoggerFactory.getLogger(ReceiptTracker.class);
+
+    private static final String UPSERT =
+            "INSERT INTO chat_read_receipt (conversation_key, user_id, delivered_at, delivered_message_id, read_at, read_message_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (conversation_key, user_id) DO UPDATE SET " +
+                    "delivered_message_id = CASE WHEN excluded.delivered_at > delivered_at THEN excluded.delivered_message_id ELSE delivered_message_id END, " +
+                    "delivered_at = max(delivered_at, excluded.delivered_at), " +
+                    "read_message_id = CASE WHEN excluded.read_at > read_at THEN excluded.read_message_id ELSE read_message_id END, " +
+                    "read_at = max(read_at, excluded.read_at)";
+
+    private static final String SELECT_CONVERSATION =
+            "SELECT user_id, delivered_at, delivered_message_id, read_at, read_message_id " +
+                    "FROM chat_read_receipt WHERE conversation_key = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushIntervalMs;
+    private final int maxBatch;
+    private final Counter acks;
+    private final Counter flushedRows;
+
+    // беседа -> пользователь -> ещё не записанная отметка; все изменения внутренних карт идут под блокировкой
+    // корзины внешней карты (compute), поэтому запись и очистка не теряют подтверждений
+    private final ConcurrentHashMap<String, Map<String, ReceiptMark>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    public ReceiptTracker(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                          @Value("${chat.receipts.flush-interval-ms:500}") long flushIntervalMs,
+                          @Value("${chat.receipts.max-batch:5000}") int maxBatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBatch = maxBatch;
+        this.acks = Counter.builder("chat.receipts.acks").description("Receipt acknowledgements received").register(meterRegistry);
+        this.flushedRows = Counter.builder("chat.receipts.flushed").description("Receipt rows written after coalescing").register(meterRegistry);
+        Gauge.builder("chat.receipts.pending", pendingCount, AtomicInteger::get)
+                .description("Coalesced receipts waiting for flush").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = new Thread(this::flushLoop, "receipt-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(5000);
+        flush();
+    }
+
+    public void ack(String conversationKey, String userId, ReceiptStatus status, LocalDateTime timestamp, String messageId) {
+        ReceiptMark mark = ReceiptMark.of(status, EpochNanos.of(timestamp), messageId);
+        pending.compute(conversationKey, (key, users) -> {
+            Map<String, ReceiptMark> target = users != null ? users : new HashMap<>();
+            if (target.merge(userId, mark, ReceiptMark::merge) == mark) {
+                pendingCount.incrementAndGet();
+            }
+            return target;
+        });
+        acks.increment();
+    }
+
+    // Отметки всех участников беседы: строки из БД с наложенными сверху ещё не записанными
+    public List<ReceiptView> conversationReceipts(String conversationKey) {
+        Map<String, ReceiptMark> marks = new HashMap<>();
+        jdbcTemplate.query(SELECT_CONVERSATION, rs -> {
+            marks.put(rs.getString(1), new ReceiptMark(rs.getLong(2), rs.getString(3), rs.getLong(4), rs.getString(5)));
+        }, conversationKey);
+        pending.computeIfPresent(conversationKey, (key, users) -> {
+            users.forEach((userId, mark) -> marks.merge(userId, mark, ReceiptMark::merge));
+            return users;
+        });
+        List<ReceiptView> receipts = new ArrayList<>(marks.size());
+        marks.forEach((userId, mark) -> receipts.add(ReceiptView.of(userId, mark)));
+        return receipts;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // отметки остаются в памяти и уйдут следующей пачкой
+                log.error("Failed to flush read receipts: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            List<Pending> batch = snapshot();
+            if (batch.isEmpty()) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT, batch, batch.size(), (ps, entry) -> {
+                ps.setString(1, entry.conversationKey());
+                ps.setString(2, entry.userId());
+                ps.setLong(3, entry.mark().deliveredAt());
+                ps.setString(4, entry.mark().deliveredMessageId());
+                ps.setLong(5, entry.mark().readAt());
+                ps.setString(6, entry.mark().readMessageId());
+            }));
+            // Удаляются только записанные значения: подтверждение, пришедшее во время записи, останется
+            for (Pending entry : batch) {
+                pending.computeIfPresent(entry.conversationKey(), (key, users) -> {
+                    if (users.remove(entry.userId(), entry.mark())) {
+                        pendingCount.decrementAndGet();
+                    }
+                    return users.isEmpty() ? null : users;
+                });
+            }
+            flushedRows.increment(batch.size());
+            if (batch.size() < maxBatch) {
+                return;
+            }
+        }
+    }
+
+    private List<Pending> snapshot() {
+        List<Pending> batch = new ArrayList<>();
+        for (String conversationKey : pending.keySet()) {
+            pending.computeIfPresent(conversationKey, (key, users) -> {
+                users.forEach((userId, mark) -> {
+                    if (batch.size() < maxBatch) {
+                        batch.add(new Pending(key, userId, mark));
+                    }
+                });
+                return users;
+            });
+            if (batch.size() >= maxBatch) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    static LocalDateTime fromNanos(long nanos) {
+        return nanos == 0 ? null : EpochNanos.toLocalDateTime(nanos);
+    }
+
+    private record Pending(String conversationKey, String userId, ReceiptMark mark) {
+    }
+}
@@ -0,0 +1,14 @@
+package ru.top.server.receipt;
+
+import java.time.LocalDateTime;
+
+// Отметки участника беседы в ответе GET .../receipts; null - отметки ещё нет
+public record ReceiptView(String userId, LocalDateTime deliveredAt, String deliveredMessageId,
+                          LocalDateTime readAt, String readMessageId) {
+
+    static ReceiptView of(String userId, ReceiptMark mark) {
+        return new ReceiptView(userId,
+                ReceiptTracker.fromNanos(mark.deliveredAt()), mark.deliveredMessageId(),
+                ReceiptTracker.fromNanos(mark.readAt()), mark.readMessageId());
+    }
+}
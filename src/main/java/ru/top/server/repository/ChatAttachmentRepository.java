@@ -0,0 +1,7 @@
+package ru.top.server.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.top.server.model.ChatAttachment;
+
+public interface ChatAttachmentRepository extends JpaRepository<ChatAttachment, String> {
+}
@@ -0,0 +1,15 @@
+package ru.top.server.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.top.server.model.ChatUserGroups;
+
+import java.util.List;
+
+public interface ChatUserGroupsRepository extends JpaRepository<ChatUserGroups, Long> {
+    @Query("SELECT cug.group.id FROM ChatUserGroups cug WHERE cug.user.id = :userId")
+    List<String> findGroupIdsByUserId(@Param("userId") String userId);
+
+    boolean existsByUser_IdAndGroup_Id(String userId, String groupId);
+}
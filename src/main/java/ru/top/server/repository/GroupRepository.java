@@ -1,7 +0,0 @@
-package ru.top.server.repository;
-
-import ru.top.server.model.Group;
-import org.springframework.data.jpa.repository.JpaRepository;
-
-public interface GroupRepository extends JpaRepository<Group, String> {
-}
\ No newline at end of file
@@ -1,8 +0,0 @@
-package ru.top.server.repository;
-
-
-import ru.top.server.model.User;
-import org.springframework.data.jpa.repository.JpaRepository;
-
-public interface UserRepository extends JpaRepository<User, String> {
-}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package ru.top.server.route;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.builder.RouteBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.attachment.AttachmentSender;
+import ru.top.server.attachment.AttachmentStore;
+import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.config.WriteRetry;
+import ru.top.server.model.ChatAttachment;
+import ru.top.server.model.ChatUser;
+import ru.top.server.repository.ChatAttachmentRepository;
+import ru.top.server.repository.ChatUserRepository;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Класс для маршрутов вложений: загрузка потоком и отдача файла с поддержкой Range
+@Component
+public class AttachmentRoute extends RouteBuilder {
+    private static final Logger log = LoggerFactory.getLogger(AttachmentRoute.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ChatUserRepository userRepository;
+
+    @Autowired
+    private ChatAttachmentRepository attachmentRepository;
+
+    @Autowired
+    private AttachmentStore attachmentStore;
+
+    @Autowired
+    private AttachmentSender attachmentSender;
+
+    @Autowired
+    private RouteErrorHandler errorHandler;
+
+    @Autowired
+    private WriteRetry writeRetry;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Override
+    public void configure() {
+        // Эндпоинт для загрузки вложения (POST /api/attachments?name=photo.jpg, тело - содержимое файла)
+        rest("/api/attachments")
+                .post()
+                .produces("application/json")
+                .to("direct:uploadAttachment");
+
+        // Тело не буферизуется: поток сервлета сразу пишется на диск с подсчётом SHA-256.
+        // Допуск WRITE нужен только на запись метаданных, а не на всё время передачи файла
+        from("direct:uploadAttachment")
+                .doTry()
+                .process(exchange -> {
+                    Long declaredLength = exchange.getMessage().getHeader("Content-Length", Long.class);
+                    if (declaredLength != null && declaredLength > attachmentStore.maxBytes()) {
+                        errorHandler.reject(exchange, 413, "Attachment exceeds " + attachmentStore.maxBytes() + " bytes");
+                        return;
+                    }
+                    String username = SecurityContextHolder.getContext().getAuthentication().getName();
+                    if (username == null) {
+                        throw new IllegalArgumentException("No authenticated user found");
+                    }
+                    ChatUser user = userRepository.findByUsername(username)
+                            .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+                    InputStream body = exchange.getIn().getBody(InputStream.class);
+                    if (body == null) {
+                        errorHandler.reject(exchange, 400, "Attachment is empty");
+                        return;
+                    }
+                    AttachmentStore.Blob blob;
+                    try (body) {
+                        blob = attachmentStore.write(body);
+                    }
+                    String contentType = exchange.getMessage().getHeader("Content-Type", String.class);
+                    ChatAttachment attachment = new ChatAttachment();
+                    attachment.setId(UUID.randomUUID().toString());
+                    attachment.setSha256(blob.sha256());
+                    attachment.setSizeBytes(blob.size());
+                    attachment.setContentType(contentType != null && !contentType.isBlank() ? contentType : "application/octet-stream");
+                    attachment.setFileName(exchange.getMessage().getHeader("name", String.class));
+                    attachment.setUploaderId(user.getId());
+                    attachment.setCreatedAt(LocalDateTime.now());
+                    exchange.setProperty("attachment", attachment);
+                    log.info("Stored attachment {}: {} bytes, sha256={}", attachment.getId(), blob.size(), blob.sha256());
+                })
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
+                .process(exchange -> {
+                    ChatAttachment attachment = writeRetry.call(exchange, "attachment.save",
+                            () -> attachmentRepository.save(exchange.getProperty("attachment", ChatAttachment.class)));
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("id", attachment.getId());
+                    result.put("sha256", attachment.getSha256());
+                    result.put("size", attachment.getSizeBytes());
+                    result.put("contentType", attachment.getContentType());
+                    result.put("fileName", attachment.getFileName());
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(result));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                    exchange.getMessage().setHeader("CamelHttpResponseCode", 201);
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для скачивания вложения (GET /api/attachments/{attachmentId})
+        rest("/api/attachments/{attachmentId}")
+                .get()
+                .to("direct:downloadAttachment");
+
+        from("direct:downloadAttachment")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> {
+                    String attachmentId = exchange.getMessage().getHeader("attachmentId", String.class);
+                    ChatAttachment attachment = attachmentRepository.findById(attachmentId).orElse(null);
+                    if (attachment == null) {
+                        errorHandler.reject(exchange, 404, "Attachment not found: " + attachmentId);
+                        return;
+                    }
+                    attachmentSender.send(exchange, attachment);
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 500))
+                .end();
+    }
+}
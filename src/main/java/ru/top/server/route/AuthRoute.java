@@ -1,23 +1,32 @@
 package ru.top.server.route;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
 import org.apache.camel.builder.RouteBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.RequestDecoder;
 import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.config.WriteRetry;
+import ru.top.server.directory.DirectoryIndex;
+import ru.top.server.dto.RegisterUserRequest;
+import ru.top.server.event.ChatEvent;
+import ru.top.server.event.ChatEventBus;
 import ru.top.server.model.ChatUser;
 import ru.top.server.model.LoginRequest;
 import ru.top.server.repository.ChatUserRepository;
 import ru.top.server.security.JwtUtil;
+import ru.top.server.security.RevokedTokens;
 
 import java.util.UUID;
 
@@ -27,7 +36,7 @@ public class AuthRoute extends RouteBuilder {
     private static final Logger log = LoggerFactory.getLogger(AuthRoute.class);
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private RequestDecoder requestDecoder;
 
     @Autowired
     private ChatUserRepository userRepository;
@@ -47,6 +56,21 @@ public class AuthRoute extends RouteBuilder {
     @Autowired
     private RouteErrorHandler errorHandler;
 
+    @Autowired
+    private WriteRetry writeRetry;
+
+    @Autowired
+    private DirectoryIndex directoryIndex;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private RevokedTokens revokedTokens;
+
+    @Autowired
+    private ChatEventBus eventBus;
+
     @Override
     public void configure() {
         // Эндпоинт для аутентификации пользователя (POST /api/auth/login)
@@ -59,38 +83,68 @@ public class AuthRoute extends RouteBuilder {
         // Маршрут для обработки логина
         from("direct:login")
                 .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, LoginRequest.class))
                 .process(exchange -> {
-                    String body = exchange.getIn().getBody(String.class);
-                    log.info("Received login request: {}", body);
-                    if (body == null || body.trim().isEmpty()) {
-                        throw new IllegalArgumentException("Request body is empty");
-                    }
-                    LoginRequest loginRequest = null;
+                    LoginRequest loginRequest = exchange.getIn().getBody(LoginRequest.class);
+                    log.info("Authenticating user: {}", loginRequest.username());
                     try {
-                        loginRequest = objectMapper.readValue(body, LoginRequest.class);
-                        if (loginRequest.username() == null || loginRequest.password().isEmpty()) {
-                            throw new IllegalArgumentException("Missing username or password");
-                        }
-                        log.info("Authenticating user: {}", loginRequest.username());
-                        Authentication authentication = authenticationManager.authenticate(
+                        authenticationManager.authenticate(
                                 new UsernamePasswordAuthenticationToken(
                                         loginRequest.username(), loginRequest.password()));
-                        log.info("Authentication successful for user: {}", loginRequest.username());
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(loginRequest.username());
-                        log.info("Loaded UserDetails: username={}, authorities={}",
-                                userDetails.getUsername(), userDetails.getAuthorities());
-                        String jwt = jwtUtil.generateToken(userDetails);
-                        log.info("Generated JWT for user: {}", loginRequest.username());
-                        exchange.getIn().setBody("{\"token\":\"" + jwt + "\"}");
                     } catch (AuthenticationException e) {
-                        log.error("Authentication failed for user: {}: {}",
-                                loginRequest != null ? loginRequest.username() : "unknown", e.getMessage());
-                        throw new IllegalArgumentException("Invalid credentials: " + e.getMessage(), e);
-                    } catch (Exception e) {
-                        log.error("Error processing login for user: {}: {}",
-                                loginRequest != null ? loginRequest.username() : "unknown", e.getMessage());
-                        throw new IllegalArgumentException("Invalid JSON or processing error: " + e.getMessage(), e);
+                        log.warn("Authentication failed for user: {}: {}", loginRequest.username(), e.getMessage());
+                        errorHandler.reject(exchange, 400, "Invalid credentials: " + e.getMessage());
+                        return;
                     }
+                    log.info("Authentication successful for user: {}", loginRequest.username());
+                    UserDetails userDetails = userDetailsService.loadUserByUsername(loginRequest.username());
+                    log.info("Loaded UserDetails: username={}, authorities={}",
+                            userDetails.getUsername(), userDetails.getAuthorities());
+                    String jwt = jwtUtil.generateToken(userDetails);
+                    log.info("Generated JWT for user: {}", loginRequest.username());
+                    exchange.getIn().setBody("{\"token\":\"" + jwt + "\"}");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для выхода: отзыв токена запроса (POST /api/auth/logout)
+        rest("/api/auth/logout")
+                .post()
+                .produces("application/json")
+                .to("direct:logout");
+
+        from("direct:logout")
+                .doTry()
+                .process(exchange -> {
+                    // Фильтр JWT уже проверил токен, поэтому заголовок есть и подпись верна
+                    String header = exchange.getIn().getHeader("Authorization", String.class);
+                    Claims claims = jwtUtil.extractAllClaims(header.substring(7));
+                    if (claims.getId() == null) {
+                        errorHandler.reject(exchange, 400, "Token has no id, use /api/auth/revoke-all");
+                        return;
+                    }
+                    writeRetry.run(exchange, "token.revoke",
+                            () -> revokedTokens.revoke(claims.getId(), claims.getExpiration().getTime()));
+                    exchange.getIn().setBody("{\"message\":\"Logged out\"}");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для отзыва всех токенов текущего пользователя (POST /api/auth/revoke-all)
+        rest("/api/auth/revoke-all")
+                .post()
+                .produces("application/json")
+                .to("direct:revokeAllTokens");
+
+        from("direct:revokeAllTokens")
+                .doTry()
+                .process(exchange -> {
+                    String username = SecurityContextHolder.getContext().getAuthentication().getName();
+                    writeRetry.run(exchange, "token.revoke-all",
+                            () -> revokedTokens.revokeAll(username, System.currentTimeMillis()));
+                    exchange.getIn().setBody("{\"message\":\"All tokens revoked\"}");
                 })
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
@@ -106,39 +160,30 @@ public class AuthRoute extends RouteBuilder {
         // Маршрут для обработки регистрации пользователя
         from("direct:registerUser")
                 .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, RegisterUserRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
                 .process(exchange -> {
-                    String body = exchange.getIn().getBody(String.class);
-                    String contentType = exchange.getMessage().getHeader("Content-Type", String.class);
-                    log.info("Received registration request: body={}, contentType={}", body, contentType);
-                    if (body == null || body.trim().isEmpty()) {
-                        throw new IllegalArgumentException("Request body is empty");
+                    RegisterUserRequest request = exchange.getIn().getBody(RegisterUserRequest.class);
+                    log.info("Received registration request for username: {}", request.username());
+                    if (userRepository.findByUsername(request.username()).isPresent()) {
+                        errorHandler.reject(exchange, 400, "Username already registered");
+                        return;
                     }
-                    try {
-                        ChatUser user = objectMapper.readValue(body, ChatUser.class);
-                        if (user.getUsername() == null || user.getUsername().trim().isEmpty()) {
-                            throw new IllegalArgumentException("Missing username");
-                        }
-                        if (user.getPassword() == null || user.getPassword().trim().isEmpty()) {
-                            throw new IllegalArgumentException("Missing password");
-                        }
-                        if (user.getEmail() != null && user.getEmail().trim().isEmpty()) {
-                            throw new IllegalArgumentException("Email cannot be empty if provided");
-                        }
-                        if (userRepository.findByUsername(user.getUsername()).isPresent()) {
-                            throw new IllegalArgumentException("Username already registered");
-                        }
-                        if (user.getEmail() != null && userRepository.findByEmail(user.getEmail()).isPresent()) {
-                            throw new IllegalArgumentException("Email already registered");
-                        }
-                        user.setId(UUID.randomUUID().toString());
-                        user.setPassword(passwordEncoder.encode(user.getPassword()));
-                        exchange.getIn().setBody(user);
-                    } catch (Exception e) {
-                        log.error("JSON parsing or authentication failed: {}", e.getMessage(), e);
-                        throw new IllegalArgumentException("Invalid JSON or validation failed: " + e.getMessage());
+                    if (request.email() != null && userRepository.findByEmail(request.email()).isPresent()) {
+                        errorHandler.reject(exchange, 400, "Email already registered");
+                        return;
                     }
+                    ChatUser user = new ChatUser(request.username(), passwordEncoder.encode(request.password()),
+                            request.birthdate(), request.email(), request.phone(), request.avatarUrl());
+                    user.setId(UUID.randomUUID().toString());
+                    exchange.getIn().setBody(user);
+                })
+                .process(writeRetry.to("user.register", "jpa:ru.top.server.model.ChatUser"))
+                .process(exchange -> {
+                    ChatUser user = exchange.getIn().getBody(ChatUser.class);
+                    directoryIndex.userAdded(user);
+                    eventBus.publish(ChatEvent.userCreated(user.getId()));
                 })
-                .to("jpa:ru.top.server.model.ChatUser")
                 .setBody(simple("{\"message\":\"User registered successfully\",\"id\":\"${body.id}\",\"username\":\"${body.username}\",\"email\":\"${body.email}\"}"))
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
@@ -5,12 +5,27 @@ import org.apache.camel.builder.RouteBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.RequestDecoder;
 import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.config.WriteRetry;
+import ru.top.server.directory.DirectoryIndex;
+import ru.top.server.dto.CreateGroupRequest;
+import ru.top.server.dto.JoinGroupRequest;
+import ru.top.server.event.ChatEvent;
+import ru.top.server.event.ChatEventBus;
 import ru.top.server.model.ChatGroup;
+import ru.top.server.model.ChatUser;
+import ru.top.server.model.ChatUserGroups;
 import ru.top.server.repository.ChatGroupRepository;
+import ru.top.server.repository.ChatUserGroupsRepository;
+import ru.top.server.repository.ChatUserRepository;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -24,12 +39,33 @@ public class GroupRoute extends RouteBuilder {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private RequestDecoder requestDecoder;
+
     @Autowired
     private ChatGroupRepository groupRepository;
 
+    @Autowired
+    private ChatUserRepository userRepository;
+
+    @Autowired
+    private ChatUserGroupsRepository userGroupsRepository;
+
     @Autowired
     private RouteErrorHandler errorHandler;
 
+    @Autowired
+    private WriteRetry writeRetry;
+
+    @Autowired
+    private DirectoryIndex directoryIndex;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private ChatEventBus eventBus;
+
     @Override
     public void configure() {
         // Эндпоинт для создания группы (POST /api/groups/create)
@@ -42,29 +78,25 @@ public class GroupRoute extends RouteBuilder {
         // Маршрут для обработки создания группы
         from("direct:group")
                 .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, CreateGroupRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
                 .process(exchange -> {
-                    String body = exchange.getIn().getBody(String.class);
-                    String contentType = exchange.getMessage().getHeader("Content-Type", String.class);
-                    log.info("Received group creation request: body={}, Content-Type={}", body, contentType);
-                    if (body == null || body.trim().isEmpty()) {
-                        throw new IllegalArgumentException("Request body is empty");
-                    }
-                    try {
-                        ChatGroup group = objectMapper.readValue(body, ChatGroup.class);
-                        if (group.getName() == null || group.getName().trim().isEmpty()) {
-                            throw new IllegalArgumentException("Missing group name");
-                        }
-                        if (groupRepository.findByName(group.getName()).isPresent()) {
-                            throw new Exception("Group name already exists");
-                        }
-                        group.setId(UUID.randomUUID().toString());
-                        exchange.getIn().setBody(group);
-                    } catch (Exception e) {
-                        log.error("JSON parsing or validation error: {}", e.getMessage(), e);
-                        throw new IllegalArgumentException("Invalid JSON or validation failed: " + e.getMessage());
+                    CreateGroupRequest request = exchange.getIn().getBody(CreateGroupRequest.class);
+                    log.info("Received group creation request: name={}", request.name());
+                    if (groupRepository.findByName(request.name()).isPresent()) {
+                        errorHandler.reject(exchange, 400, "Group name already exists");
+                        return;
                     }
+                    ChatGroup group = new ChatGroup(request.name());
+                    group.setId(UUID.randomUUID().toString());
+                    exchange.getIn().setBody(group);
+                })
+                .process(writeRetry.to("group.create", "jpa:ru.top.server.model.ChatGroup"))
+                .process(exchange -> {
+                    ChatGroup group = exchange.getIn().getBody(ChatGroup.class);
+                    directoryIndex.groupAdded(group);
+                    eventBus.publish(ChatEvent.groupCreated(group.getId()));
                 })
-                .to("jpa:ru.top.server.model.ChatGroup")
                 .setBody(simple("{\"message\":\"Group created successfully\",\"id\":\"${body.id}\",\"name\":\"${body.name}\"}"))
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
@@ -79,6 +111,7 @@ public class GroupRoute extends RouteBuilder {
         // Маршрут для обработки запроса списка групп
         from("direct:getGroups")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     log.info("Fetching all groups");
                     List<ChatGroup> groups = groupRepository.findAll();
@@ -98,5 +131,81 @@ public class GroupRoute extends RouteBuilder {
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 500))
                 .end();
+        // Эндпоинт для поиска групп по началу названия (GET /api/groups/search?prefix=...&limit=...)
+        rest("/api/groups/search")
+                .get()
+                .produces("application/json")
+                .to("direct:searchGroups");
+
+        // Маршрут для поиска групп в справочнике в памяти (DirectoryIndex), без запроса к БД
+        from("direct:searchGroups")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> {
+                    String prefix = exchange.getMessage().getHeader("prefix", String.class);
+                    if (prefix == null || prefix.isBlank()) {
+                        errorHandler.reject(exchange, 400, "Query parameter 'prefix' is required");
+                        return;
+                    }
+                    Integer limit = exchange.getMessage().getHeader("limit", Integer.class);
+                    List<Map<String, String>> result = directoryIndex.searchGroups(prefix, limit).stream()
+                            .map(entry -> {
+                                Map<String, String> entryMap = new HashMap<>();
+                                entryMap.put("id", entry.id());
+                                entryMap.put("name", entry.name());
+                                return entryMap;
+                            })
+                            .collect(Collectors.toList());
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(result));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+
+        // Эндпоинт для вступления в группу (POST /api/groups/join)
+        rest("/api/groups/join")
+                .post()
+                .consumes("application/json")
+                .produces("application/json")
+                .to("direct:joinGroup");
+
+        // Маршрут для обработки вступления авторизованного пользователя в группу
+        from("direct:joinGroup")
+                .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, JoinGroupRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
+                .process(exchange -> {
+                    String groupId = exchange.getIn().getBody(JoinGroupRequest.class).groupId();
+                    log.info("Received join group request: groupId={}", groupId);
+                    String username = SecurityContextHolder.getContext().getAuthentication().getName();
+                    if (username == null) {
+                        throw new IllegalArgumentException("No authenticated user found");
+                    }
+                    ChatUser user = userRepository.findByUsername(username)
+                            .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+                    ChatGroup group = groupRepository.findById(groupId).orElse(null);
+                    if (group == null) {
+                        errorHandler.reject(exchange, 400, "Group not found: " + groupId);
+                        return;
+                    }
+                    if (!userGroupsRepository.existsByUser_IdAndGroup_Id(user.getId(), groupId)) {
+                        ChatUserGroups membership = new ChatUserGroups();
+                        membership.setUser(user);
+                        membership.setGroup(group);
+                        writeRetry.run(exchange, "group.join", () -> userGroupsRepository.save(membership));
+                        eventBus.publish(ChatEvent.membershipChanged(groupId, user.getId()));
+                        log.info("User {} joined group {}", user.getId(), groupId);
+                    }
+                    Map<String, String> response = new LinkedHashMap<>();
+                    response.put("message", "Joined group successfully");
+                    response.put("groupId", groupId);
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(response));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
     }
 }
\ No newline at end of file
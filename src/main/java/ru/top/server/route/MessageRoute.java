@@ -1,23 +1,46 @@
 package ru.top.server.route;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.PayloadCodec;
+import ru.top.server.config.RequestDecoder;
 import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.config.WriteRetry;
+import ru.top.server.dto.DeleteMessageRequest;
+import ru.top.server.dto.EditMessageRequest;
+import ru.top.server.dto.GroupMessageRequest;
+import ru.top.server.dto.PrivateMessageRequest;
+import ru.top.server.event.ChatEvent;
+import ru.top.server.event.ChatEventBus;
+import ru.top.server.export.MessageExporter;
 import ru.top.server.model.ChatGroup;
 import ru.top.server.model.ChatUser;
 import ru.top.server.model.Message;
+import ru.top.server.ratelimit.RateLimitedRoute;
+import ru.top.server.ratelimit.RateLimiter;
+import ru.top.server.reaction.ReactionTracker;
+import ru.top.server.repository.ChatAttachmentRepository;
 import ru.top.server.repository.ChatGroupRepository;
 import ru.top.server.repository.ChatUserRepository;
+import ru.top.server.store.MessageStore;
+import ru.top.server.sync.SyncEventType;
+import ru.top.server.sync.SyncFeed;
+import ru.top.server.tail.ConversationTailCache;
+import ru.top.server.webhook.WebhookOutbox;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.HashMap;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -28,7 +51,10 @@ public class MessageRoute extends RouteBuilder {
     private static final Logger log = LoggerFactory.getLogger(MessageRoute.class);
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private RequestDecoder requestDecoder;
+
+    @Autowired
+    private PayloadCodec payloadCodec;
 
     @Autowired
     private ChatUserRepository userRepository;
@@ -36,28 +62,63 @@ public class MessageRoute extends RouteBuilder {
     @Autowired
     private ChatGroupRepository groupRepository;
 
+    @Autowired
+    private ChatAttachmentRepository attachmentRepository;
+
     @Autowired
     private RouteErrorHandler errorHandler;
 
+    @Autowired
+    private WriteRetry writeRetry;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private ChatEventBus eventBus;
+
+    @Autowired
+    private SyncFeed syncFeed;
+
+    @Autowired
+    private ConversationTailCache tailCache;
+
+    @Autowired
+    private ReactionTracker reactionTracker;
+
+    @Autowired
+    private WebhookOutbox webhookOutbox;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Value("${chat.history.max-page-size:500}")
+    private int maxHistoryPageSize;
+
+    @Autowired
+    private MessageExporter messageExporter;
+
     @Override
     public void configure() {
         // Эндпоинт для отправки личного сообщения (POST /api/messages/private)
         rest("/api/messages/private")
                 .post()
-                .consumes("application/json")
-                .produces("application/json")
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
                 .to("direct:sendPrivateMessage");
 
         // Маршрут для обработки отправки личного сообщения
         from("direct:sendPrivateMessage")
                 .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.SEND))
+                .process(exchange -> requestDecoder.decode(exchange, PrivateMessageRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
                 .process(exchange -> {
-                    String body = exchange.getIn().getBody(String.class);
-                    log.info("Processing private message request: {}", body);
-                    Message message = objectMapper.readValue(body, Message.class);
-                    if (message.getContent() == null || message.getSenderId() == null || message.getRecipientId() == null) {
-                        throw new IllegalArgumentException("Invalid message JSON: missing content, senderId, or recipientId");
-                    }
+                    PrivateMessageRequest request = exchange.getIn().getBody(PrivateMessageRequest.class);
+                    log.info("Processing private message request: senderId={}, recipientId={}", request.senderId(), request.recipientId());
                     String username = SecurityContextHolder.getContext().getAuthentication().getName();
                     log.info("Authenticated user: {}", username);
                     if (username == null) {
@@ -65,23 +126,39 @@ public class MessageRoute extends RouteBuilder {
                     }
                     ChatUser sender = userRepository.findByUsername(username)
                             .orElseThrow(() -> new IllegalArgumentException("Sender not found: " + username));
-                    log.info("Sender ID: {}, Message Sender ID: {}", sender.getId(), message.getSenderId());
-                    if (!message.getSenderId().equals(sender.getId())) {
-                        log.error("Sender ID mismatch: expected {}, got {}", sender.getId(), message.getSenderId());
-                        throw new IllegalArgumentException("Sender ID does not match authenticated user");
+                    if (!request.senderId().equals(sender.getId())) {
+                        log.warn("Sender ID mismatch: expected {}, got {}", sender.getId(), request.senderId());
+                        errorHandler.reject(exchange, 400, "Sender ID does not match authenticated user");
+                        return;
                     }
-                    ChatUser recipient = userRepository.findById(message.getRecipientId())
-                            .orElseThrow(() -> new IllegalArgumentException("Recipient not found: " + message.getRecipientId()));
+                    ChatUser recipient = userRepository.findById(request.recipientId()).orElse(null);
+                    if (recipient == null) {
+                        errorHandler.reject(exchange, 400, "Recipient not found: " + request.recipientId());
+                        return;
+                    }
+                    if (request.attachmentId() != null && !attachmentRepository.existsById(request.attachmentId())) {
+                        errorHandler.reject(exchange, 400, "Attachment not found: " + request.attachmentId());
+                        return;
+                    }
+                    Message message = new Message();
+                    message.setContent(request.content() != null ? request.content() : "");
+                    message.setAttachmentId(request.attachmentId());
                     message.setSender(sender);
                     message.setRecipient(recipient);
                     message.setId(UUID.randomUUID().toString());
                     message.setChatType("PRIVATE");
-                    message.setTimestamp(LocalDateTime.now());
+                    message.setTimestamp(messageTime());
                     exchange.getIn().setBody(message);
                     exchange.setProperty("message", message);
                 })
-                .to("jpa:ru.top.server.model.Message")
-                .setBody(simple("{\"message\":\"Message sent successfully\"}"))
+                .process(exchange -> {
+                    Message message = exchange.getProperty("message", Message.class);
+                    writeRetry.run(exchange, "message.save", () -> syncFeed.append(SyncEventType.CREATED, message,
+                            () -> webhookOutbox.write(SyncEventType.CREATED, message, () -> messageStore.save(message))));
+                })
+                .process(exchange -> tailCache.append(exchange.getProperty("message", Message.class)))
+                .process(exchange -> eventBus.publish(ChatEvent.messageCreated(exchange.getProperty("message", Message.class))))
+                .process(exchange -> payloadCodec.write(exchange, Map.of("message", "Message sent successfully")))
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
                 .end();
@@ -89,20 +166,19 @@ public class MessageRoute extends RouteBuilder {
         // Эндпоинт для отправки сообщения в группу (POST /api/messages/group)
         rest("/api/messages/group")
                 .post()
-                .consumes("application/json")
-                .produces("application/json")
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
                 .to("direct:sendGroupMessage");
 
         // Маршрут для обработки отправки сообщения в группу
         from("direct:sendGroupMessage")
                 .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.SEND))
+                .process(exchange -> requestDecoder.decode(exchange, GroupMessageRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
                 .process(exchange -> {
-                    String body = exchange.getIn().getBody(String.class);
-                    log.info("Processing group message request: {}", body);
-                    Message message = objectMapper.readValue(body, Message.class);
-                    if (message.getContent() == null || message.getSenderId() == null || message.getGroupId() == null) {
-                        throw new IllegalArgumentException("Invalid message JSON: missing content, senderId, or groupId");
-                    }
+                    GroupMessageRequest request = exchange.getIn().getBody(GroupMessageRequest.class);
+                    log.info("Processing group message request: senderId={}, groupId={}", request.senderId(), request.groupId());
                     String username = SecurityContextHolder.getContext().getAuthentication().getName();
                     log.info("Authenticated user: {}", username);
                     if (username == null) {
@@ -110,23 +186,99 @@ public class MessageRoute extends RouteBuilder {
                     }
                     ChatUser sender = userRepository.findByUsername(username)
                             .orElseThrow(() -> new IllegalArgumentException("Sender not found: " + username));
-                    log.info("Sender ID: {}, Message Sender ID: {}", sender.getId(), message.getSenderId());
-                    if (!message.getSenderId().equals(sender.getId())) {
-                        log.error("Sender ID mismatch: expected {}, got {}", sender.getId(), message.getSenderId());
-                        throw new IllegalArgumentException("Sender ID does not match authenticated user");
+                    if (!request.senderId().equals(sender.getId())) {
+                        log.warn("Sender ID mismatch: expected {}, got {}", sender.getId(), request.senderId());
+                        errorHandler.reject(exchange, 400, "Sender ID does not match authenticated user");
+                        return;
+                    }
+                    ChatGroup group = groupRepository.findById(request.groupId()).orElse(null);
+                    if (group == null) {
+                        errorHandler.reject(exchange, 400, "Group not found: " + request.groupId());
+                        return;
                     }
-                    ChatGroup group = groupRepository.findById(message.getGroupId())
-                            .orElseThrow(() -> new IllegalArgumentException("Group not found: " + message.getGroupId()));
+                    if (request.attachmentId() != null && !attachmentRepository.existsById(request.attachmentId())) {
+                        errorHandler.reject(exchange, 400, "Attachment not found: " + request.attachmentId());
+                        return;
+                    }
+                    Message message = new Message();
+                    message.setContent(request.content() != null ? request.content() : "");
+                    message.setAttachmentId(request.attachmentId());
                     message.setSender(sender);
                     message.setGroup(group);
                     message.setId(UUID.randomUUID().toString());
                     message.setChatType("GROUP");
-                    message.setTimestamp(LocalDateTime.now());
+                    message.setTimestamp(messageTime());
                     exchange.getIn().setBody(message);
                     exchange.setProperty("message", message);
                 })
-                .to("jpa:ru.top.server.model.Message")
-                .setBody(simple("{\"message\":\"Message sent successfully\"}"))
+                .process(exchange -> {
+                    Message message = exchange.getProperty("message", Message.class);
+                    writeRetry.run(exchange, "message.save", () -> syncFeed.append(SyncEventType.CREATED, message,
+                            () -> webhookOutbox.write(SyncEventType.CREATED, message, () -> messageStore.save(message))));
+                })
+                .process(exchange -> tailCache.append(exchange.getProperty("message", Message.class)))
+                .process(exchange -> eventBus.publish(ChatEvent.messageCreated(exchange.getProperty("message", Message.class))))
+                .process(exchange -> payloadCodec.write(exchange, Map.of("message", "Message sent successfully")))
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для редактирования сообщения (POST /api/messages/edit)
+        rest("/api/messages/edit")
+                .post()
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:editMessage");
+
+        // Править и удалять сообщение может только отправитель; изменение попадает в ленту /api/sync
+        from("direct:editMessage")
+                .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.SEND))
+                .process(exchange -> requestDecoder.decode(exchange, EditMessageRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
+                .process(exchange -> {
+                    EditMessageRequest request = exchange.getIn().getBody(EditMessageRequest.class);
+                    Message message = ownMessage(exchange, request.messageId(), request.otherUserId(), request.groupId());
+                    if (message == null) {
+                        return;
+                    }
+                    message.setContent(request.content());
+                    message.setEditedAt(messageTime());
+                    writeRetry.run(exchange, "message.update", () -> syncFeed.append(SyncEventType.EDITED, message,
+                            () -> webhookOutbox.write(SyncEventType.EDITED, message, () -> messageStore.update(message))));
+                    tailCache.edited(message);
+                    eventBus.publish(ChatEvent.messageEdited(message));
+                    payloadCodec.write(exchange, Map.of("message", "Message edited successfully"));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для удаления сообщения (POST /api/messages/delete)
+        rest("/api/messages/delete")
+                .post()
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:deleteMessage");
+
+        from("direct:deleteMessage")
+                .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.SEND))
+                .process(exchange -> requestDecoder.decode(exchange, DeleteMessageRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
+                .process(exchange -> {
+                    DeleteMessageRequest request = exchange.getIn().getBody(DeleteMessageRequest.class);
+                    Message message = ownMessage(exchange, request.messageId(), request.otherUserId(), request.groupId());
+                    if (message == null) {
+                        return;
+                    }
+                    writeRetry.run(exchange, "message.delete", () -> syncFeed.append(SyncEventType.DELETED, message,
+                            () -> webhookOutbox.write(SyncEventType.DELETED, message, () -> messageStore.delete(message))));
+                    tailCache.deleted(message);
+                    reactionTracker.messageDeleted(message.getId());
+                    eventBus.publish(ChatEvent.messageDeleted(message));
+                    payloadCodec.write(exchange, Map.of("message", "Message deleted successfully"));
+                })
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
                 .end();
@@ -134,18 +286,17 @@ public class MessageRoute extends RouteBuilder {
         // Эндпоинт для получения сообщений в личной переписке (GET /api/messages/private/conversation/{otherUserId})
         rest("/api/messages/private/conversation/{otherUserId}")
                 .get()
-                .produces("application/json")
+                .produces(PayloadCodec.MEDIA_TYPES)
                 .to("direct:privateMessages");
 
         // Маршрут для обработки запроса сообщений личной переписки
         from("direct:privateMessages")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     String otherUserId = exchange.getMessage().getHeader("otherUserId", String.class);
                     String sinceParam = exchange.getMessage().getHeader("since", String.class);
                     log.info("Fetching new private messages for conversation with otherUserId: {}, since: {}", otherUserId, sinceParam);
-                    Map<String, Object> parameters = new HashMap<>();
-                    parameters.put("otherUserId", otherUserId);
                     LocalDateTime since;
                     if (sinceParam != null && !sinceParam.isEmpty()) {
                         try {
@@ -157,7 +308,6 @@ public class MessageRoute extends RouteBuilder {
                     } else {
                         since = LocalDateTime.now().minusHours(24);
                     }
-                    parameters.put("since", since);
                     String username = SecurityContextHolder.getContext().getAuthentication().getName();
                     log.info("Authenticated user: {}", username);
                     if (username == null) {
@@ -165,33 +315,37 @@ public class MessageRoute extends RouteBuilder {
                     }
                     ChatUser user = userRepository.findByUsername(username)
                             .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+                    // Опрос внутри окна хвоста переписки отвечается из памяти (буфер есть только у переписки
+                    // с сообщениями, поэтому собеседник существует)
+                    if (sinceParam != null && !sinceParam.isEmpty()
+                            && cachedTail(exchange, Message.privateConversationKey(user.getId(), otherUserId), since)) {
+                        return;
+                    }
                     ChatUser otherUser = userRepository.findById(otherUserId)
                             .orElseThrow(() -> new IllegalArgumentException("Other user not found: " + otherUserId));
-                    parameters.put("userId", user.getId());
-                    exchange.getIn().setHeader("CamelJpaParameters", parameters);
+                    exchange.getIn().setBody(messageStore.findConversationMessages(user.getId(), otherUserId, since));
                 })
-                .to("jpa:ru.top.server.model.Message?namedQuery=Message.findConversationMessages")
                 .process(exchange -> {
                     List<Message> messages = exchange.getIn().getBody(List.class);
                     String otherUserId = exchange.getMessage().getHeader("otherUserId", String.class);
                     log.info("Retrieved {} private messages for conversation with otherUserId: {}", messages != null ? messages.size() : 0, otherUserId);
-                    String json = objectMapper.writeValueAsString(messages != null ? messages : List.of());
-                    exchange.getIn().setBody(json);
-                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                    payloadCodec.write(exchange, messages != null ? messages : List.of());
                 })
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
                 .end();
 
-        // Эндпоинт для получения истории личной переписки (GET /api/messages/private/history/{otherUserId})
+        // Эндпоинт для получения истории личной переписки (GET /api/messages/private/history/{otherUserId}).
+        // С параметрами before и/или limit - страница: не больше limit сообщений раньше before (по умолчанию с конца)
         rest("/api/messages/private/history/{otherUserId}")
                 .get()
-                .produces("application/json")
+                .produces(PayloadCodec.MEDIA_TYPES)
                 .to("direct:privateChatHistory");
 
         // Маршрут для обработки запроса истории личной переписки
         from("direct:privateChatHistory")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     String otherUserId = exchange.getMessage().getHeader("otherUserId", String.class);
                     log.info("Fetching chat history with otherUserId: {}", otherUserId);
@@ -204,19 +358,32 @@ public class MessageRoute extends RouteBuilder {
                             .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
                     ChatUser otherUser = userRepository.findById(otherUserId)
                             .orElseThrow(() -> new IllegalArgumentException("Other user not found: " + otherUserId));
-                    Map<String, Object> parameters = new HashMap<>();
-                    parameters.put("userId", user.getId());
-                    parameters.put("otherUserId", otherUserId);
-                    exchange.getIn().setHeader("CamelJpaParameters", parameters);
+                    String beforeParam = exchange.getMessage().getHeader("before", String.class);
+                    String limitParam = exchange.getMessage().getHeader("limit", String.class);
+                    if (beforeParam == null && limitParam == null) {
+                        exchange.getIn().setBody(messageStore.findChatHistory(user.getId(), otherUserId));
+                        return;
+                    }
+                    LocalDateTime before;
+                    int limit;
+                    try {
+                        before = beforeParam != null ? LocalDateTime.parse(beforeParam, DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null;
+                        limit = limitParam != null ? Integer.parseInt(limitParam) : maxHistoryPageSize;
+                    } catch (DateTimeParseException | NumberFormatException e) {
+                        errorHandler.reject(exchange, 400, "Invalid 'before' or 'limit': expected an ISO timestamp and an integer");
+                        return;
+                    }
+                    if (limit < 1 || limit > maxHistoryPageSize) {
+                        errorHandler.reject(exchange, 400, "Expected 1 <= limit <= " + maxHistoryPageSize);
+                        return;
+                    }
+                    exchange.getIn().setBody(messageStore.findChatHistoryPage(user.getId(), otherUserId, before, limit));
                 })
-                .to("jpa:ru.top.server.model.Message?namedQuery=Message.findChatHistory")
                 .process(exchange -> {
                     List<Message> messages = exchange.getIn().getBody(List.class);
                     String otherUserId = exchange.getMessage().getHeader("otherUserId", String.class);
                     log.info("Retrieved {} messages for chat history with otherUserId: {}", messages != null ? messages.size() : 0, otherUserId);
-                    String json = objectMapper.writeValueAsString(messages != null ? messages : List.of());
-                    exchange.getIn().setBody(json);
-                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                    payloadCodec.write(exchange, messages != null ? messages : List.of());
                 })
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
@@ -225,26 +392,37 @@ public class MessageRoute extends RouteBuilder {
         // Эндпоинт для получения сообщений группы (GET /api/messages/group/{groupId})
         rest("/api/messages/group/{groupId}")
                 .get()
-                .produces("application/json")
+                .produces(PayloadCodec.MEDIA_TYPES)
                 .to("direct:groupMessages");
 
         // Маршрут для обработки запроса сообщений группы
         from("direct:groupMessages")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     String groupId = exchange.getMessage().getHeader("groupId", String.class);
-                    log.info("Fetching group messages for groupId: {}", groupId);
-                    Map<String, Object> parameters = new HashMap<>();
-                    parameters.put("groupId", groupId);
-                    exchange.getIn().setHeader("CamelJpaParameters", parameters);
+                    String sinceParam = exchange.getMessage().getHeader("since", String.class);
+                    log.info("Fetching group messages for groupId: {}, since: {}", groupId, sinceParam);
+                    if (sinceParam == null || sinceParam.isEmpty()) {
+                        exchange.getIn().setBody(messageStore.findByGroupId(groupId));
+                        return;
+                    }
+                    // Необязательный since: только сообщения после него, по возрастанию времени
+                    LocalDateTime since;
+                    try {
+                        since = LocalDateTime.parse(sinceParam, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+                    } catch (DateTimeParseException e) {
+                        throw new IllegalArgumentException("Invalid 'since' timestamp format: " + sinceParam);
+                    }
+                    if (cachedTail(exchange, Message.groupConversationKey(groupId), since)) {
+                        return;
+                    }
+                    exchange.getIn().setBody(messageStore.findGroupMessagesSince(groupId, since));
                 })
-                .to("jpa:ru.top.server.model.Message?namedQuery=Message.findByGroupId")
                 .process(exchange -> {
                     List<Message> messages = exchange.getIn().getBody(List.class);
                     log.info("Retrieved {} messages for groupId: {}", messages != null ? messages.size() : 0, exchange.getMessage().getHeader("groupId"));
-                    String json = objectMapper.writeValueAsString(messages != null ? messages : List.of());
-                    exchange.getIn().setBody(json);
-                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                    payloadCodec.write(exchange, messages != null ? messages : List.of());
                 })
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 500))
@@ -253,12 +431,14 @@ public class MessageRoute extends RouteBuilder {
         // Эндпоинт для поиска сообщений (GET /api/messages/search)
         rest("/api/messages/search")
                 .get()
-                .produces("application/json")
+                .produces(PayloadCodec.MEDIA_TYPES)
                 .to("direct:searchMessages");
 
         // Маршрут для обработки поиска сообщений
         from("direct:searchMessages")
                 .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.SEARCH))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.SEARCH))
                 .process(exchange -> {
                     String keyword = exchange.getMessage().getHeader("keyword", String.class);
                     String startParam = exchange.getMessage().getHeader("start", String.class);
@@ -271,48 +451,99 @@ public class MessageRoute extends RouteBuilder {
                     }
                     ChatUser user = userRepository.findByUsername(username)
                             .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
-                    Map<String, Object> parameters = new HashMap<>();
-                    parameters.put("userId", user.getId());
-                    if (keyword != null && !keyword.trim().isEmpty()) {
-                        parameters.put("keyword", "%" + keyword.trim() + "%");
-                    } else {
-                        parameters.put("keyword", null);
-                    }
+                    String trimmedKeyword = keyword != null && !keyword.trim().isEmpty() ? keyword.trim() : null;
+                    LocalDateTime start = null;
                     if (startParam != null && !startParam.isEmpty()) {
                         try {
-                            LocalDateTime start = LocalDateTime.parse(startParam, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                            parameters.put("start", start);
+                            start = LocalDateTime.parse(startParam, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
                         } catch (DateTimeParseException e) {
                             log.error("Invalid 'start' timestamp format: {}", startParam);
                             throw new IllegalArgumentException("Invalid 'start' timestamp format: " + startParam);
                         }
-                    } else {
-                        parameters.put("start", null);
                     }
+                    LocalDateTime end = null;
                     if (endParam != null && !endParam.isEmpty()) {
                         try {
-                            LocalDateTime end = LocalDateTime.parse(endParam, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                            parameters.put("end", end);
+                            end = LocalDateTime.parse(endParam, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
                         } catch (DateTimeParseException e) {
                             log.error("Invalid 'end' timestamp format: {}", endParam);
                             throw new IllegalArgumentException("Invalid 'end' timestamp format: " + endParam);
                         }
-                    } else {
-                        parameters.put("end", null);
                     }
-                    exchange.getIn().setHeader("CamelJpaParameters", parameters);
-                    exchange.getIn().setBody(null);
+                    exchange.getIn().setBody(messageStore.searchMessages(user.getId(), trimmedKeyword, start, end));
                 })
-                .to("jpa:ru.top.server.model.Message?namedQuery=Message.searchMessages&resultClass=java.util.List")
                 .process(exchange -> {
                     List<Message> messages = exchange.getIn().getBody(List.class);
                     log.info("Retrieved {} messages for search", messages != null ? messages.size() : 0);
-                    String json = objectMapper.writeValueAsString(messages != null ? messages : List.of());
-                    exchange.getIn().setBody(json);
-                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                    payloadCodec.write(exchange, messages != null ? messages : List.of());
                 })
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
                 .end();
+
+        // Эндпоинт для выгрузки всех сообщений пользователя (GET /api/messages/export), gzip NDJSON
+        rest("/api/messages/export")
+                .get()
+                .produces("application/x-ndjson")
+                .to("direct:exportMessages");
+
+        // Маршрут выгрузки: ответ пишется потоком, по одной строке JSON на сообщение
+        from("direct:exportMessages")
+                .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.SEARCH))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.SEARCH))
+                .process(exchange -> {
+                    String username = SecurityContextHolder.getContext().getAuthentication().getName();
+                    if (username == null) {
+                        throw new IllegalArgumentException("No authenticated user found");
+                    }
+                    ChatUser user = userRepository.findByUsername(username)
+                            .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+                    long exported = messageExporter.export(exchange, user.getId());
+                    log.info("Exported {} messages for user {}", exported, user.getId());
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 500))
+                .end();
+    }
+
+    // Время сообщения с точностью до миллисекунд, как его возвращает хранилище jpa (SQLite хранит миллисекунды):
+    // ответ из хвоста в памяти совпадает с ответом из БД, и since клиента сравнивается с тем же значением
+    private static LocalDateTime messageTime() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    // Ответ готовым JSON из ConversationTailCache (для Smile/CBOR - перекодированным); оставшиеся шаги маршрута не выполняются
+    private boolean cachedTail(Exchange exchange, String conversationKey, LocalDateTime since) throws IOException {
+        byte[] json = tailCache.since(conversationKey, since);
+        if (json == null) {
+            return false;
+        }
+        payloadCodec.writeJson(exchange, json);
+        exchange.setRouteStop(true);
+        return true;
+    }
+
+    // Сообщение текущего пользователя в указанной переписке; иначе ответ 404/403 уже сформирован и возвращается null
+    private Message ownMessage(Exchange exchange, String messageId, String otherUserId, String groupId) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (username == null) {
+            throw new IllegalArgumentException("No authenticated user found");
+        }
+        ChatUser user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+        String conversationKey = groupId != null
+                ? Message.groupConversationKey(groupId)
+                : Message.privateConversationKey(user.getId(), otherUserId);
+        Message message = messageStore.findById(conversationKey, messageId);
+        if (message == null || !conversationKey.equals(message.conversationKey())) {
+            errorHandler.reject(exchange, 404, "Message not found: " + messageId);
+            return null;
+        }
+        if (!user.getId().equals(message.getSenderId())) {
+            errorHandler.reject(exchange, 403, "Only the sender can change a message");
+            return null;
+        }
+        return message;
     }
 }
\ No newline at end of file
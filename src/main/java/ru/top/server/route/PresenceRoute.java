@@ -0,0 +1,207 @@
+package ru.top.server.route;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.builder.RouteBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import ru.top.server.config.RequestDecoder;
+import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.dto.HeartbeatRequest;
+import ru.top.server.dto.TypingRequest;
+import ru.top.server.membership.GroupMembershipCache;
+import ru.top.server.model.ChatUser;
+import ru.top.server.model.Message;
+import ru.top.server.presence.PresenceStatus;
+import ru.top.server.presence.PresenceTracker;
+import ru.top.server.repository.ChatUserRepository;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Класс для маршрутов присутствия и индикаторов набора текста. Маршруты не обращаются к БД:
+// id пользователя по имени из токена берётся из кеша (имя пользователя не меняется, размер ограничен max-cached-users), членство в группе - из GroupMembershipCache
+@Component
+public class PresenceRoute extends RouteBuilder {
+    private static final Logger log = LoggerFactory.getLogger(PresenceRoute.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RequestDecoder requestDecoder;
+
+    @Autowired
+    private ChatUserRepository userRepository;
+
+    @Autowired
+    private RouteErrorHandler errorHandler;
+
+    @Autowired
+    private PresenceTracker presenceTracker;
+
+    @Autowired
+    private GroupMembershipCache membershipCache;
+
+    @Value("${chat.presence.max-bulk:1000}")
+    private int maxBulk;
+
+    @Value("${chat.presence.max-cached-users:100000}")
+    private int maxCachedUsers;
+
+    private final Map<String, String> userIds = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure() {
+        // Эндпоинт для heartbeat (POST /api/presence/heartbeat)
+        rest("/api/presence/heartbeat")
+                .post()
+                .consumes("application/json")
+                .produces("application/json")
+                .to("direct:presenceHeartbeat");
+
+        from("direct:presenceHeartbeat")
+                .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, HeartbeatRequest.class))
+                .process(exchange -> {
+                    HeartbeatRequest request = exchange.getIn().getBody(HeartbeatRequest.class);
+                    String userId = currentUserId();
+                    PresenceStatus status = request.presenceStatus();
+                    if (status == PresenceStatus.OFFLINE) {
+                        presenceTracker.offline(userId);
+                    } else {
+                        presenceTracker.heartbeat(userId, status);
+                    }
+                    exchange.getIn().setBody("{\"status\":\"" + status.key() + "\"}");
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для индикатора набора текста (POST /api/presence/typing)
+        rest("/api/presence/typing")
+                .post()
+                .consumes("application/json")
+                .produces("application/json")
+                .to("direct:presenceTyping");
+
+        from("direct:presenceTyping")
+                .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, TypingRequest.class))
+                .process(exchange -> {
+                    TypingRequest request = exchange.getIn().getBody(TypingRequest.class);
+                    String userId = currentUserId();
+                    if (request.groupId() != null && !membershipCache.isMember(userId, request.groupId())) {
+                        errorHandler.reject(exchange, 400, "User is not a member of group: " + request.groupId());
+                        return;
+                    }
+                    String conversationKey = request.groupId() != null
+                            ? Message.groupConversationKey(request.groupId())
+                            : Message.privateConversationKey(userId, request.otherUserId());
+                    presenceTracker.typing(conversationKey, userId, request.isTyping());
+                    exchange.getIn().setBody("{\"typing\":" + request.isTyping() + "}");
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для статусов списка пользователей (GET /api/presence?userIds=a,b,c)
+        rest("/api/presence")
+                .get()
+                .produces("application/json")
+                .to("direct:presenceQuery");
+
+        from("direct:presenceQuery")
+                .doTry()
+                .process(exchange -> {
+                    String param = exchange.getMessage().getHeader("userIds", String.class);
+                    List<String> ids = param == null ? List.of() : Stream.of(param.split(","))
+                            .map(String::trim)
+                            .filter(id -> !id.isEmpty())
+                            .toList();
+                    if (ids.isEmpty()) {
+                        errorHandler.reject(exchange, 400, "Query parameter userIds is required");
+                        return;
+                    }
+                    if (ids.size() > maxBulk) {
+                        errorHandler.reject(exchange, 400, "Too many userIds: at most " + maxBulk + " per request");
+                        return;
+                    }
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(presenceTracker.statuses(ids)));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для набирающих в личной переписке (GET /api/presence/typing/private/{otherUserId})
+        rest("/api/presence/typing/private/{otherUserId}")
+                .get()
+                .produces("application/json")
+                .to("direct:privateTyping");
+
+        from("direct:privateTyping")
+                .doTry()
+                .process(exchange -> {
+                    String otherUserId = exchange.getMessage().getHeader("otherUserId", String.class);
+                    String conversationKey = Message.privateConversationKey(currentUserId(), otherUserId);
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(presenceTracker.typingUsers(conversationKey)));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для набирающих в группе (GET /api/presence/typing/group/{groupId})
+        rest("/api/presence/typing/group/{groupId}")
+                .get()
+                .produces("application/json")
+                .to("direct:groupTyping");
+
+        from("direct:groupTyping")
+                .doTry()
+                .process(exchange -> {
+                    String groupId = exchange.getMessage().getHeader("groupId", String.class);
+                    if (!membershipCache.isMember(currentUserId(), groupId)) {
+                        errorHandler.reject(exchange, 403, "User is not a member of group: " + groupId);
+                        return;
+                    }
+                    String conversationKey = Message.groupConversationKey(groupId);
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(presenceTracker.typingUsers(conversationKey)));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+    }
+
+    private String currentUserId() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (username == null) {
+            throw new IllegalArgumentException("No authenticated user found");
+        }
+        String userId = userIds.get(username);
+        if (userId == null) {
+            ChatUser user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+            userId = user.getId();
+            if (userIds.size() >= maxCachedUsers) {
+                // Вытесняется произвольный пользователь: он просто загрузится заново
+                Iterator<String> keys = userIds.keySet().iterator();
+                if (keys.hasNext()) {
+                    userIds.remove(keys.next());
+                }
+            }
+            userIds.put(username, userId);
+        }
+        return userId;
+    }
+}
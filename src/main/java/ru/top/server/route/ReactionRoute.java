@@ -0,0 +1,160 @@
+package ru.top.server.route;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.PayloadCodec;
+import ru.top.server.config.RequestDecoder;
+import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.dto.ReactionRequest;
+import ru.top.server.membership.GroupMembershipCache;
+import ru.top.server.model.ChatUser;
+import ru.top.server.model.Message;
+import ru.top.server.ratelimit.RateLimitedRoute;
+import ru.top.server.ratelimit.RateLimiter;
+import ru.top.server.reaction.ReactionTracker;
+import ru.top.server.repository.ChatUserRepository;
+import ru.top.server.store.MessageStore;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Класс для маршрутов реакций на сообщения
+@Component
+public class ReactionRoute extends RouteBuilder {
+    private static final Logger log = LoggerFactory.getLogger(ReactionRoute.class);
+    private static final int MAX_MESSAGE_IDS = 100;
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Autowired
+    private RequestDecoder requestDecoder;
+
+    @Autowired
+    private ChatUserRepository userRepository;
+
+    @Autowired
+    private GroupMembershipCache membershipCache;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private RouteErrorHandler errorHandler;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private ReactionTracker reactionTracker;
+
+    @Override
+    public void configure() {
+        // Эндпоинт для переключения реакции на сообщение (POST /api/messages/reactions)
+        rest("/api/messages/reactions")
+                .post()
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:toggleReaction");
+
+        // Реакция меняется только в памяти, запись в БД - фоновой пачкой, поэтому без admission
+        from("direct:toggleReaction")
+                .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.REACT))
+                .process(exchange -> requestDecoder.decode(exchange, ReactionRequest.class))
+                .process(exchange -> {
+                    ReactionRequest request = exchange.getIn().getBody(ReactionRequest.class);
+                    ChatUser user = currentUser();
+                    if (request.groupId() != null && !membershipCache.isMember(user.getId(), request.groupId())) {
+                        errorHandler.reject(exchange, 403, "User is not a member of group: " + request.groupId());
+                        return;
+                    }
+                    String conversationKey = request.groupId() != null
+                            ? Message.groupConversationKey(request.groupId())
+                            : Message.privateConversationKey(user.getId(), request.otherUserId());
+                    Message message = messageStore.findById(conversationKey, request.messageId());
+                    if (message == null || !conversationKey.equals(message.conversationKey())) {
+                        errorHandler.reject(exchange, 404, "Message not found: " + request.messageId());
+                        return;
+                    }
+                    boolean reacted = reactionTracker.toggle(message.getId(), request.emoji(), user.getId());
+                    log.debug("Reaction toggled: user={}, messageId={}, emoji={}, reacted={}",
+                            user.getId(), message.getId(), request.emoji(), reacted);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("messageId", message.getId());
+                    result.put("emoji", request.emoji());
+                    result.put("reacted", reacted);
+                    payloadCodec.write(exchange, result);
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для реакций на сообщения переписки (GET /api/messages/reactions?messageIds=id1,id2&otherUserId=... | &groupId=...)
+        rest("/api/messages/reactions")
+                .get()
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:reactions");
+
+        from("direct:reactions")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> {
+                    String messageIdsParam = exchange.getMessage().getHeader("messageIds", String.class);
+                    List<String> messageIds = messageIdsParam == null ? List.of() : Arrays.stream(messageIdsParam.split(","))
+                            .map(String::strip)
+                            .filter(id -> !id.isEmpty())
+                            .distinct()
+                            .toList();
+                    if (messageIds.isEmpty() || messageIds.size() > MAX_MESSAGE_IDS) {
+                        errorHandler.reject(exchange, 400, "Query parameter 'messageIds' must list 1 to " + MAX_MESSAGE_IDS + " message ids");
+                        return;
+                    }
+                    String otherUserId = exchange.getMessage().getHeader("otherUserId", String.class);
+                    String groupId = exchange.getMessage().getHeader("groupId", String.class);
+                    if ((otherUserId == null) == (groupId == null)) {
+                        errorHandler.reject(exchange, 400, "Exactly one of query parameters 'otherUserId' or 'groupId' is required");
+                        return;
+                    }
+                    ChatUser user = currentUser();
+                    if (groupId != null && !membershipCache.isMember(user.getId(), groupId)) {
+                        errorHandler.reject(exchange, 403, "User is not a member of group: " + groupId);
+                        return;
+                    }
+                    // Реакции отдаются только для сообщений этой переписки: чужие и несуществующие id пропускаются
+                    String conversationKey = groupId != null
+                            ? Message.groupConversationKey(groupId)
+                            : Message.privateConversationKey(user.getId(), otherUserId);
+                    Set<String> found = messageStore.findByIds(conversationKey, messageIds).stream()
+                            .map(Message::getId)
+                            .collect(Collectors.toSet());
+                    List<String> visible = messageIds.stream().filter(found::contains).toList();
+                    payloadCodec.write(exchange, visible.isEmpty() ? Map.of() : reactionTracker.reactions(visible, user.getId()));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+    }
+
+    private ChatUser currentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (username == null) {
+            throw new IllegalArgumentException("No authenticated user found");
+        }
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+    }
+}
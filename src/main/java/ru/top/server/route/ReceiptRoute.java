@@ -0,0 +1,170 @@
+package ru.top.server.route;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.PayloadCodec;
+import ru.top.server.config.RequestDecoder;
+import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.dto.GroupReceiptRequest;
+import ru.top.server.dto.PrivateReceiptRequest;
+import ru.top.server.membership.GroupMembershipCache;
+import ru.top.server.model.ChatUser;
+import ru.top.server.model.Message;
+import ru.top.server.receipt.ReceiptStatus;
+import ru.top.server.receipt.ReceiptTracker;
+import ru.top.server.repository.ChatUserRepository;
+import ru.top.server.store.MessageStore;
+
+import java.util.Map;
+
+// Класс для маршрутов отметок доставки и прочтения сообщений
+@Component
+public class ReceiptRoute extends RouteBuilder {
+    private static final Logger log = LoggerFactory.getLogger(ReceiptRoute.class);
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Autowired
+    private RequestDecoder requestDecoder;
+
+    @Autowired
+    private ChatUserRepository userRepository;
+
+    @Autowired
+    private GroupMembershipCache membershipCache;
+
+    @Autowired
+    private RouteErrorHandler errorHandler;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private ReceiptTracker receiptTracker;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Override
+    public void configure() {
+        // Эндпоинт для отметки личных сообщений (POST /api/messages/private/receipts)
+        rest("/api/messages/private/receipts")
+                .post()
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:privateReceipt");
+
+        // Подтверждение только сливается в памяти, запись в БД - фоновой пачкой, поэтому без admission
+        from("direct:privateReceipt")
+                .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, PrivateReceiptRequest.class))
+                .process(exchange -> {
+                    PrivateReceiptRequest request = exchange.getIn().getBody(PrivateReceiptRequest.class);
+                    ChatUser user = currentUser();
+                    log.debug("Private receipt: user={}, otherUserId={}, messageId={}, status={}",
+                            user.getId(), request.otherUserId(), request.messageId(), request.status());
+                    // Сообщение ищется в переписке пользователя: чужое или несуществующее - 404
+                    String conversationKey = Message.privateConversationKey(user.getId(), request.otherUserId());
+                    Message message = messageStore.findById(conversationKey, request.messageId());
+                    if (message == null || !conversationKey.equals(message.conversationKey())) {
+                        errorHandler.reject(exchange, 404, "Message not found: " + request.messageId());
+                        return;
+                    }
+                    receiptTracker.ack(conversationKey, user.getId(),
+                            ReceiptStatus.fromKey(request.status()), message.getTimestamp(), message.getId());
+                    payloadCodec.write(exchange, Map.of("message", "Receipt accepted"));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для отметки сообщений группы (POST /api/messages/group/receipts)
+        rest("/api/messages/group/receipts")
+                .post()
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:groupReceipt");
+
+        from("direct:groupReceipt")
+                .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, GroupReceiptRequest.class))
+                .process(exchange -> {
+                    GroupReceiptRequest request = exchange.getIn().getBody(GroupReceiptRequest.class);
+                    ChatUser user = currentUser();
+                    log.debug("Group receipt: user={}, groupId={}, messageId={}, status={}",
+                            user.getId(), request.groupId(), request.messageId(), request.status());
+                    if (!membershipCache.isMember(user.getId(), request.groupId())) {
+                        errorHandler.reject(exchange, 403, "User is not a member of group: " + request.groupId());
+                        return;
+                    }
+                    String conversationKey = Message.groupConversationKey(request.groupId());
+                    Message message = messageStore.findById(conversationKey, request.messageId());
+                    if (message == null || !conversationKey.equals(message.conversationKey())) {
+                        errorHandler.reject(exchange, 404, "Message not found: " + request.messageId());
+                        return;
+                    }
+                    receiptTracker.ack(conversationKey, user.getId(),
+                            ReceiptStatus.fromKey(request.status()), message.getTimestamp(), message.getId());
+                    payloadCodec.write(exchange, Map.of("message", "Receipt accepted"));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для статуса личной переписки (GET /api/messages/private/receipts/{otherUserId})
+        rest("/api/messages/private/receipts/{otherUserId}")
+                .get()
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:privateReceipts");
+
+        from("direct:privateReceipts")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> {
+                    String otherUserId = exchange.getMessage().getHeader("otherUserId", String.class);
+                    ChatUser user = currentUser();
+                    payloadCodec.write(exchange,
+                            receiptTracker.conversationReceipts(Message.privateConversationKey(user.getId(), otherUserId)));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        // Эндпоинт для статуса сообщений группы (GET /api/messages/group/{groupId}/receipts)
+        rest("/api/messages/group/{groupId}/receipts")
+                .get()
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:groupReceipts");
+
+        from("direct:groupReceipts")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> {
+                    String groupId = exchange.getMessage().getHeader("groupId", String.class);
+                    if (!membershipCache.isMember(currentUser().getId(), groupId)) {
+                        errorHandler.reject(exchange, 403, "User is not a member of group: " + groupId);
+                        return;
+                    }
+                    payloadCodec.write(exchange, receiptTracker.conversationReceipts(Message.groupConversationKey(groupId)));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 500))
+                .end();
+    }
+
+    private ChatUser currentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (username == null) {
+            throw new IllegalArgumentException("No authenticated user found");
+        }
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+    }
+}
@@ -0,0 +1,180 @@
+package ru.top.server.route;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.PayloadCodec;
+import ru.top.server.config.RequestDecoder;
+import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.config.WriteRetry;
+import ru.top.server.dto.CancelScheduledMessageRequest;
+import ru.top.server.dto.ScheduleMessageRequest;
+import ru.top.server.model.ChatUser;
+import ru.top.server.ratelimit.RateLimitedRoute;
+import ru.top.server.ratelimit.RateLimiter;
+import ru.top.server.repository.ChatAttachmentRepository;
+import ru.top.server.repository.ChatGroupRepository;
+import ru.top.server.repository.ChatUserRepository;
+import ru.top.server.schedule.ScheduledMessage;
+import ru.top.server.schedule.ScheduledMessages;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+// Класс для маршрутов отложенных сообщений: отправка в срок - ScheduledMessages тем же путём, что POST /api/messages/*
+@Component
+public class ScheduledMessageRoute extends RouteBuilder {
+    private static final Logger log = LoggerFactory.getLogger(ScheduledMessageRoute.class);
+
+    @Autowired
+    private RequestDecoder requestDecoder;
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Autowired
+    private ChatUserRepository userRepository;
+
+    @Autowired
+    private ChatGroupRepository groupRepository;
+
+    @Autowired
+    private ChatAttachmentRepository attachmentRepository;
+
+    @Autowired
+    private RouteErrorHandler errorHandler;
+
+    @Autowired
+    private WriteRetry writeRetry;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private ScheduledMessages scheduledMessages;
+
+    @Value("${chat.scheduled.max-delay-days:365}")
+    private long maxDelayDays;
+
+    @Value("${chat.scheduled.max-pending-per-user:100}")
+    private int maxPendingPerUser;
+
+    @Override
+    public void configure() {
+        // Эндпоинты отложенных сообщений: запись (POST) и список своих ожидающих (GET /api/messages/scheduled)
+        rest("/api/messages/scheduled")
+                .post()
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:scheduleMessage")
+                .get()
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:scheduledMessages");
+
+        from("direct:scheduleMessage")
+                .doTry()
+                .process(exchange -> rateLimiter.check(RateLimitedRoute.SEND))
+                .process(exchange -> requestDecoder.decode(exchange, ScheduleMessageRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
+                .process(exchange -> {
+                    ScheduleMessageRequest request = exchange.getIn().getBody(ScheduleMessageRequest.class);
+                    log.info("Processing scheduled message request: senderId={}, recipientId={}, groupId={}, deliverAt={}",
+                            request.senderId(), request.recipientId(), request.groupId(), request.deliverAt());
+                    ChatUser sender = currentUser();
+                    if (!request.senderId().equals(sender.getId())) {
+                        log.warn("Sender ID mismatch: expected {}, got {}", sender.getId(), request.senderId());
+                        errorHandler.reject(exchange, 400, "Sender ID does not match authenticated user");
+                        return;
+                    }
+                    if (request.recipientId() != null && !userRepository.existsById(request.recipientId())) {
+                        errorHandler.reject(exchange, 400, "Recipient not found: " + request.recipientId());
+                        return;
+                    }
+                    if (request.groupId() != null && !groupRepository.existsById(request.groupId())) {
+                        errorHandler.reject(exchange, 400, "Group not found: " + request.groupId());
+                        return;
+                    }
+                    if (request.attachmentId() != null && !attachmentRepository.existsById(request.attachmentId())) {
+                        errorHandler.reject(exchange, 400, "Attachment not found: " + request.attachmentId());
+                        return;
+                    }
+                    LocalDateTime now = LocalDateTime.now();
+                    LocalDateTime deliverAt = request.deliverAt().truncatedTo(ChronoUnit.MILLIS);
+                    if (!deliverAt.isAfter(now)) {
+                        errorHandler.reject(exchange, 400, "deliverAt must be in the future");
+                        return;
+                    }
+                    if (deliverAt.isAfter(now.plusDays(maxDelayDays))) {
+                        errorHandler.reject(exchange, 400, "deliverAt is more than " + maxDelayDays + " days ahead");
+                        return;
+                    }
+                    ScheduledMessage message = new ScheduledMessage(UUID.randomUUID().toString(), sender.getId(),
+                            request.recipientId(), request.groupId(), request.content() != null ? request.content() : "",
+                            request.attachmentId(), deliverAt);
+                    if (!writeRetry.call(exchange, "scheduled.save", () -> scheduledMessages.schedule(message, maxPendingPerUser))) {
+                        errorHandler.reject(exchange, 400, "Too many scheduled messages: limit is " + maxPendingPerUser);
+                        return;
+                    }
+                    payloadCodec.write(exchange, Map.of("id", message.id(), "deliverAt", message.deliverAt()));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
+        from("direct:scheduledMessages")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> payloadCodec.write(exchange, scheduledMessages.pending(currentUser().getId())))
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 500))
+                .end();
+
+        // Эндпоинт для отмены отложенного сообщения (POST /api/messages/scheduled/cancel)
+        rest("/api/messages/scheduled/cancel")
+                .post()
+                .consumes(PayloadCodec.MEDIA_TYPES)
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:cancelScheduledMessage");
+
+        // Отмена удаляет строку; если сообщение уже забрано на отправку, ответ 404
+        from("direct:cancelScheduledMessage")
+                .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, CancelScheduledMessageRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
+                .process(exchange -> {
+                    CancelScheduledMessageRequest request = exchange.getIn().getBody(CancelScheduledMessageRequest.class);
+                    ChatUser user = currentUser();
+                    boolean canceled = writeRetry.call(exchange, "scheduled.cancel",
+                            () -> scheduledMessages.cancel(request.id(), user.getId()));
+                    if (!canceled) {
+                        errorHandler.reject(exchange, 404, "Scheduled message not found: " + request.id());
+                        return;
+                    }
+                    log.info("Scheduled message canceled: id={}, senderId={}", request.id(), user.getId());
+                    payloadCodec.write(exchange, Map.of("message", "Scheduled message canceled"));
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+    }
+
+    private ChatUser currentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (username == null) {
+            throw new IllegalArgumentException("No authenticated user found");
+        }
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+    }
+}
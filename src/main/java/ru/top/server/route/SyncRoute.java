@@ -0,0 +1,101 @@
+package ru.top.server.route;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.PayloadCodec;
+import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.membership.GroupMembershipCache;
+import ru.top.server.model.ChatUser;
+import ru.top.server.repository.ChatUserRepository;
+import ru.top.server.sync.SyncEvent;
+import ru.top.server.sync.SyncFeed;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Класс для маршрута синхронизации: все изменения, видимые пользователю, одним запросом по номеру seq
+@Component
+public class SyncRoute extends RouteBuilder {
+    private static final Logger log = LoggerFactory.getLogger(SyncRoute.class);
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Autowired
+    private ChatUserRepository userRepository;
+
+    @Autowired
+    private GroupMembershipCache membershipCache;
+
+    @Autowired
+    private RouteErrorHandler errorHandler;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private SyncFeed syncFeed;
+
+    @Value("${chat.sync.default-limit:100}")
+    private int defaultLimit;
+
+    @Value("${chat.sync.max-limit:1000}")
+    private int maxLimit;
+
+    @Override
+    public void configure() {
+        // Эндпоинт для синхронизации (GET /api/sync?after=<seq>&limit=<n>)
+        rest("/api/sync")
+                .get()
+                .produces(PayloadCodec.MEDIA_TYPES)
+                .to("direct:sync");
+
+        // Ответ: события по возрастанию seq, next - значение after для следующего запроса
+        from("direct:sync")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> {
+                    long after;
+                    int limit;
+                    try {
+                        after = parse(exchange.getMessage().getHeader("after", String.class), 0);
+                        limit = (int) parse(exchange.getMessage().getHeader("limit", String.class), defaultLimit);
+                    } catch (NumberFormatException e) {
+                        errorHandler.reject(exchange, 400, "Invalid 'after' or 'limit': expected an integer");
+                        return;
+                    }
+                    if (after < 0 || limit < 1 || limit > maxLimit) {
+                        errorHandler.reject(exchange, 400, "Expected after >= 0 and 1 <= limit <= " + maxLimit);
+                        return;
+                    }
+                    String username = SecurityContextHolder.getContext().getAuthentication().getName();
+                    if (username == null) {
+                        throw new IllegalArgumentException("No authenticated user found");
+                    }
+                    ChatUser user = userRepository.findByUsername(username)
+                            .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+                    List<SyncEvent> events = syncFeed.read(user.getId(), membershipCache.groupIds(user.getId()), after, limit);
+                    log.debug("Sync for {} after {}: {} events", user.getId(), after, events.size());
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("events", events);
+                    result.put("next", events.isEmpty() ? after : events.get(events.size() - 1).seq());
+                    result.put("hasMore", events.size() == limit);
+                    payloadCodec.write(exchange, result);
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+    }
+
+    private static long parse(String value, long defaultValue) {
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+}
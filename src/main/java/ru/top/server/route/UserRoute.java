@@ -7,8 +7,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import ru.top.server.admission.AdmissionController;
+import ru.top.server.admission.RouteClass;
+import ru.top.server.config.RequestDecoder;
 import ru.top.server.config.RouteErrorHandler;
+import ru.top.server.config.WriteRetry;
+import ru.top.server.directory.DirectoryIndex;
+import ru.top.server.dto.AvatarRequest;
+import ru.top.server.model.ChatAttachment;
 import ru.top.server.model.ChatUser;
+import ru.top.server.repository.ChatAttachmentRepository;
 import ru.top.server.repository.ChatUserRepository;
 
 import java.util.HashMap;
@@ -27,9 +35,24 @@ public class UserRoute extends RouteBuilder {
     @Autowired
     private ChatUserRepository userRepository;
 
+    @Autowired
+    private ChatAttachmentRepository attachmentRepository;
+
+    @Autowired
+    private RequestDecoder requestDecoder;
+
     @Autowired
     private RouteErrorHandler errorHandler;
 
+    @Autowired
+    private WriteRetry writeRetry;
+
+    @Autowired
+    private DirectoryIndex directoryIndex;
+
+    @Autowired
+    private AdmissionController admissionController;
+
     @Override
     public void configure() {
         // Эндпоинт для получения информации о пользователе по ID (GET /api/users/{userId})
@@ -41,6 +64,7 @@ public class UserRoute extends RouteBuilder {
         // Маршрут для обработки запроса информации о пользователе
         from("direct:getUser")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     String userId = exchange.getMessage().getHeader("userId", String.class);
                     log.info("Fetching user with ID: {}", userId);
@@ -70,6 +94,7 @@ public class UserRoute extends RouteBuilder {
         // Маршрут для обработки запроса списка пользователей
         from("direct:getUsers")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     log.info("Fetching all users");
                     List<ChatUser> users = userRepository.findAll();
@@ -90,6 +115,38 @@ public class UserRoute extends RouteBuilder {
                 .process(exchange -> errorHandler.handleError(exchange, log, 500))
                 .end();
 
+        // Эндпоинт для поиска пользователей по началу имени или email (GET /api/users/search?prefix=...&limit=...)
+        rest("/api/users/search")
+                .get()
+                .produces("application/json")
+                .to("direct:searchUsers");
+
+        // Маршрут для поиска пользователей в справочнике в памяти (DirectoryIndex), без запроса к БД
+        from("direct:searchUsers")
+                .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
+                .process(exchange -> {
+                    String prefix = exchange.getMessage().getHeader("prefix", String.class);
+                    if (prefix == null || prefix.isBlank()) {
+                        errorHandler.reject(exchange, 400, "Query parameter 'prefix' is required");
+                        return;
+                    }
+                    Integer limit = exchange.getMessage().getHeader("limit", Integer.class);
+                    List<Map<String, String>> result = directoryIndex.searchUsers(prefix, limit).stream()
+                            .map(entry -> {
+                                Map<String, String> entryMap = new HashMap<>();
+                                entryMap.put("id", entry.id());
+                                entryMap.put("username", entry.name());
+                                return entryMap;
+                            })
+                            .collect(Collectors.toList());
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(result));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
+
         // Эндпоинт для получения количества пользователей (GET /api/users/count)
         rest("/api/users/count")
                 .get()
@@ -99,6 +156,7 @@ public class UserRoute extends RouteBuilder {
         // Маршрут для обработки запроса количества пользователей
         from("direct:userCount")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     log.info("Fetching total user count");
                     long count = userRepository.count();
@@ -119,6 +177,7 @@ public class UserRoute extends RouteBuilder {
         // Маршрут для обработки запроса ID текущего пользователя
         from("direct:getCurrentUserId")
                 .doTry()
+                .process(exchange -> admissionController.admit(exchange, RouteClass.READ))
                 .process(exchange -> {
                     String username = SecurityContextHolder.getContext().getAuthentication().getName();
                     log.info("Fetching ID for authenticated user: {}", username);
@@ -134,5 +193,43 @@ public class UserRoute extends RouteBuilder {
                 .doCatch(Exception.class)
                 .process(exchange -> errorHandler.handleError(exchange, log, 400))
                 .end();
+
+        // Эндпоинт для установки аватара (POST /api/users/avatar)
+        rest("/api/users/avatar")
+                .post()
+                .consumes("application/json")
+                .produces("application/json")
+                .to("direct:setAvatar");
+
+        // avatarUrl указывает на вложение-изображение, отдаваемое GET /api/attachments/{id}
+        from("direct:setAvatar")
+                .doTry()
+                .process(exchange -> requestDecoder.decode(exchange, AvatarRequest.class))
+                .process(exchange -> admissionController.admit(exchange, RouteClass.WRITE))
+                .process(exchange -> {
+                    AvatarRequest request = exchange.getIn().getBody(AvatarRequest.class);
+                    String username = SecurityContextHolder.getContext().getAuthentication().getName();
+                    if (username == null) {
+                        throw new IllegalArgumentException("No authenticated user found");
+                    }
+                    ChatUser user = userRepository.findByUsername(username)
+                            .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+                    ChatAttachment attachment = attachmentRepository.findById(request.attachmentId()).orElse(null);
+                    if (attachment == null) {
+                        errorHandler.reject(exchange, 400, "Attachment not found: " + request.attachmentId());
+                        return;
+                    }
+                    if (!attachment.getContentType().startsWith("image/")) {
+                        errorHandler.reject(exchange, 400, "Avatar must be an image, got " + attachment.getContentType());
+                        return;
+                    }
+                    user.setAvatarUrl("/api/attachments/" + attachment.getId());
+                    writeRetry.run(exchange, "user.update", () -> userRepository.save(user));
+                    exchange.getIn().setBody(objectMapper.writeValueAsString(Map.of("avatarUrl", user.getAvatarUrl())));
+                    exchange.getMessage().setHeader("Content-Type", "application/json");
+                })
+                .doCatch(Exception.class)
+                .process(exchange -> errorHandler.handleError(exchange, log, 400))
+                .end();
     }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package ru.top.server.schedule;
+
+import java.time.LocalDateTime;
+
+// Отложенное сообщение (строка chat_scheduled_message); id становится id сообщения после отправки
+public record ScheduledMessage(String id, String senderId, String recipientId, String groupId, String content,
+                               String attachmentId, LocalDateTime deliverAt) {
+}
@@ -0,0 +1,326 @@
+package ru.top.server.schedule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.camel.CamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import ru.top.server.config.WriteRetry;
+import ru.top.server.event.ChatEvent;
+import ru.top.server.event.ChatEventBus;
+import ru.top.server.model.ChatGroup;
+import ru.top.server.model.ChatUser;
+import ru.top.server.model.Message;
+import ru.top.server.repository.ChatGroupRepository;
+import ru.top.server.repository.ChatUserRepository;
+import ru.top.server.store.EpochNanos;
+import ru.top.server.store.MessageStore;
+import ru.top.server.sync.SyncEventType;
+import ru.top.server.sync.SyncFeed;
+import ru.top.server.tail.ConversationTailCache;
+import ru.top.server.webhook.WebhookOutbox;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Отложенные сообщения. Строка chat_scheduled_message - источник истины; в памяти только id и срок сообщений,
+// срок которых наступит в ближайшие horizon-ms: они лежат в иерархическом колесе таймеров (TimingWheel),
+// поэтому тик не сканирует ни таблицу, ни список ожидающих. Окно продлевается диапазонным чтением по индексу
+// (deliver_at, id), когда до его конца остаётся половина; при старте так же загружаются просроченные и ближайшие.
+// Вышедшие из колеса сообщения отправляются пачками до max-batch: одна транзакция забирает строки удалением
+// и сохраняет сообщения тем же путём, что POST /api/messages/* (хранилище, очередь вебхуков и лента /api/sync),
+// после фиксации - хвост переписки и событие клиентам. Отмена - удаление строки: если она уже забрана,
+// сообщение отправлено, а устаревший id в колесе при выходе ничего не найдёт
+@Component
+@DependsOnDatabaseInitialization
+public class ScheduledMessages {
+    private static final Logger log = LoggerFactory.getLogger(ScheduledMessages.class);
+    // 64 слота на уровень, 4 уровня: при тике 100 мс охват колеса - 19 дней
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_LEVELS = 4;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private static final String COLUMNS = "id, sender_id, recipient_id, group_id, content, attachment_id, deliver_at";
+    // Лимит ожидающих проверяется тем же запросом, что вставляет строку: параллельные запросы не превысят его
+    private static final String INSERT = "INSERT INTO chat_scheduled_message (" + COLUMNS + ", created_at) " +
+            "SELECT ?, ?, ?, ?, ?, ?, ?, ? WHERE (SELECT count(*) FROM chat_scheduled_message WHERE sender_id = ?) < ?";
+    private static final String SELECT_WINDOW =
+            "SELECT id, deliver_at FROM chat_scheduled_message WHERE deliver_at >= ? AND deliver_at < ?";
+    private static final String SELECT_BY_SENDER =
+            "SELECT " + COLUMNS + " FROM chat_scheduled_message WHERE sender_id = ? ORDER BY deliver_at, id";
+    private static final String DELETE = "DELETE FROM chat_scheduled_message WHERE id = ?";
+    private static final String DELETE_OWN = "DELETE FROM chat_scheduled_message WHERE id = ? AND sender_id = ?";
+    private static final RowMapper<ScheduledMessage> ROW_MAPPER = (resultSet, rowNum) -> new ScheduledMessage(
+            resultSet.getString(1), resultSet.getString(2), resultSet.getString(3), resultSet.getString(4),
+            resultSet.getString(5), resultSet.getString(6), EpochNanos.toLocalDateTime(resultSet.getLong(7)));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CamelContext camelContext;
+    private final WriteRetry writeRetry;
+    private final MessageStore messageStore;
+    private final WebhookOutbox webhookOutbox;
+    private final ConversationTailCache tailCache;
+    private final SyncFeed syncFeed;
+    private final ChatEventBus eventBus;
+    private final ChatUserRepository userRepository;
+    private final ChatGroupRepository groupRepository;
+    private final long tickMs;
+    private final long horizonMs;
+    private final int maxBatch;
+    private final Counter scheduled;
+    private final Counter canceled;
+    private final Counter released;
+    private final Timer lag;
+
+    // Колесо, набор id в нём и граница загруженного окна меняются под lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel<String> wheel;
+    private final Set<String> inWheel = new HashSet<>();
+    // Все строки со сроком раньше границы есть в колесе (или уже отправлены)
+    private long loadedUntil = Long.MIN_VALUE;
+    private volatile boolean running = true;
+    private Thread sender;
+
+    public ScheduledMessages(JdbcTemplate jdbcTemplate, CamelContext camelContext,
+                             WriteRetry writeRetry, MessageStore messageStore, WebhookOutbox webhookOutbox,
+                             ConversationTailCache tailCache, SyncFeed syncFeed, ChatEventBus eventBus,
+                             ChatUserRepository userRepository, ChatGroupRepository groupRepository, MeterRegistry meterRegistry,
+                             @Value("${chat.scheduled.tick-ms:100}") long tickMs,
+                             @Value("${chat.scheduled.horizon-ms:3600000}") long horizonMs,
+                             @Value("${chat.scheduled.max-batch:200}") int maxBatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.camelContext = camelContext;
+        this.writeRetry = writeRetry;
+        this.messageStore = messageStore;
+        this.webhookOutbox = webhookOutbox;
+        this.tailCache = tailCache;
+        this.syncFeed = syncFeed;
+        this.eventBus = eventBus;
+        this.userRepository = userRepository;
+        this.groupRepository = groupRepository;
+        this.tickMs = tickMs;
+        this.maxBatch = maxBatch;
+        this.wheel = new TimingWheel<>(now(), tickMs, WHEEL_BITS, WHEEL_LEVELS);
+        // Окно не длиннее охвата колеса (минус тик на округление срока)
+        this.horizonMs = Math.min(horizonMs, wheel.spanMillis() - tickMs);
+        this.scheduled = Counter.builder("chat.scheduled.scheduled").description("Messages scheduled for later").register(meterRegistry);
+        this.canceled = Counter.builder("chat.scheduled.canceled").description("Scheduled messages canceled").register(meterRegistry);
+        this.released = Counter.builder("chat.scheduled.released").description("Scheduled messages sent").register(meterRegistry);
+        this.lag = Timer.builder("chat.scheduled.lag").description("Delay between deliverAt and the actual send")
+                .register(meterRegistry);
+        Gauge.builder("chat.scheduled.in-memory", wheel, TimingWheel::size)
+                .description("Scheduled messages held in the timing wheel").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        extendWindow(now());
+        sender = new Thread(this::sendLoop, "scheduled-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        sender.interrupt();
+        sender.join(5000);
+    }
+
+    // Запись отложенного сообщения; срок внутри окна - сразу в колесо.
+    // false - у отправителя уже maxPending ожидающих сообщений, строка не записана
+    public boolean schedule(ScheduledMessage message, int maxPending) {
+        long deliverAt = EpochNanos.of(message.deliverAt());
+        int inserted = jdbcTemplate.update(INSERT, message.id(), message.senderId(), message.recipientId(), message.groupId(),
+                message.content(), message.attachmentId(), deliverAt, EpochNanos.of(LocalDateTime.now()),
+                message.senderId(), maxPending);
+        if (inserted == 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (deliverAt / 1_000_000 < loadedUntil) {
+                enqueue(message.id(), deliverAt / 1_000_000);
+            }
+        } finally {
+            lock.unlock();
+        }
+        scheduled.increment();
+        return true;
+    }
+
+    // false - сообщения нет среди ожидающих отправителя (чужое, уже отправлено или отменено)
+    public boolean cancel(String id, String senderId) {
+        boolean removed = jdbcTemplate.update(DELETE_OWN, id, senderId) > 0;
+        if (removed) {
+            canceled.increment();
+        }
+        return removed;
+    }
+
+    // Ожидающие сообщения отправителя по возрастанию срока
+    public List<ScheduledMessage> pending(String senderId) {
+        return jdbcTemplate.query(SELECT_BY_SENDER, ROW_MAPPER, senderId);
+    }
+
+    private void sendLoop() {
+        while (running) {
+            try {
+                Thread.sleep(tickMs);
+                tick();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // строки остаются в таблице; окно будет продлено на следующем тике
+                log.error("Failed to process scheduled messages: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void tick() {
+        long now = now();
+        List<String> due = new ArrayList<>();
+        lock.lock();
+        try {
+            wheel.advance(now, due::add);
+            due.forEach(inWheel::remove);
+        } finally {
+            lock.unlock();
+        }
+        for (int from = 0; from < due.size(); from += maxBatch) {
+            List<String> batch = due.subList(from, Math.min(due.size(), from + maxBatch));
+            // Срок забранных строк по id: задержка учитывается только после фиксации, повтор её не дублирует
+            Map<String, LocalDateTime> deliverAt = new HashMap<>();
+            List<Message> messages;
+            try {
+                messages = writeRetry.call(new DefaultExchange(camelContext), "scheduled.release",
+                        () -> syncFeed.appendAll(SyncEventType.CREATED, () -> claim(batch, deliverAt)));
+            } catch (Exception e) {
+                // транзакция откатилась, строки не забраны: пачка выйдет из колеса ещё раз
+                log.error("Failed to send {} scheduled messages, retrying in {} ms: {}", batch.size(), RETRY_DELAY_MS, e.getMessage(), e);
+                lock.lock();
+                try {
+                    batch.forEach(id -> enqueue(id, now + RETRY_DELAY_MS));
+                } finally {
+                    lock.unlock();
+                }
+                continue;
+            }
+            for (Message message : messages) {
+                lag.record(Math.max(0, now - EpochNanos.of(deliverAt.get(message.getId())) / 1_000_000), TimeUnit.MILLISECONDS);
+                published(message);
+            }
+            released.increment(messages.size());
+        }
+        if (loadedUntil - now <= horizonMs / 2) {
+            extendWindow(now);
+        }
+    }
+
+    // Забирает строки пачки и сохраняет сообщения в транзакции SyncFeed.appendAll; строк без пары уже нет (отменены).
+    // Хранилища mmap и sharded пишут вне транзакции: после отката пачка повторяется, а уже записанные id
+    // они пропускают, поэтому повтор не дублирует сообщения и не застревает на первичном ключе
+    // deliverAt получает срок каждой забранной строки
+    private List<Message> claim(List<String> ids, Map<String, LocalDateTime> deliverAt) {
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        List<ScheduledMessage> rows = jdbcTemplate.query("SELECT " + COLUMNS + " FROM chat_scheduled_message WHERE id IN ("
+                + placeholders + ") ORDER BY deliver_at, id", ROW_MAPPER, ids.toArray());
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        jdbcTemplate.batchUpdate(DELETE, rows, rows.size(), (ps, row) -> ps.setString(1, row.id()));
+        Set<String> userIds = new HashSet<>();
+        Set<String> groupIds = new HashSet<>();
+        for (ScheduledMessage row : rows) {
+            userIds.add(row.senderId());
+            if (row.groupId() != null) {
+                groupIds.add(row.groupId());
+            } else {
+                userIds.add(row.recipientId());
+            }
+        }
+        Map<String, ChatUser> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(ChatUser::getId, Function.identity()));
+        Map<String, ChatGroup> groups = groupRepository.findAllById(groupIds).stream()
+                .collect(Collectors.toMap(ChatGroup::getId, Function.identity()));
+        List<Message> messages = new ArrayList<>(rows.size());
+        for (ScheduledMessage row : rows) {
+            deliverAt.put(row.id(), row.deliverAt());
+            Message message = new Message();
+            message.setId(row.id());
+            message.setContent(row.content());
+            message.setAttachmentId(row.attachmentId());
+            message.setSender(users.get(row.senderId()));
+            if (row.groupId() != null) {
+                message.setGroup(groups.get(row.groupId()));
+                message.setChatType("GROUP");
+            } else {
+                message.setRecipient(users.get(row.recipientId()));
+                message.setChatType("PRIVATE");
+            }
+            message.setTimestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+            webhookOutbox.write(SyncEventType.CREATED, message, () -> messageStore.save(message));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    // Шаги отправки после фиксации: сообщение уже сохранено, сбой здесь не повторяет отправку
+    private void published(Message message) {
+        try {
+            tailCache.append(message);
+            eventBus.publish(ChatEvent.messageCreated(message));
+        } catch (Exception e) {
+            log.error("Scheduled message {} was sent but its events failed: {}", message.getId(), e.getMessage(), e);
+        }
+    }
+
+    // Загрузка в колесо строк со сроком от прежней границы до now + horizon диапазоном по индексу deliver_at
+    private void extendWindow(long now) {
+        long until = now + horizonMs;
+        lock.lock();
+        try {
+            long from = loadedUntil == Long.MIN_VALUE ? Long.MIN_VALUE : loadedUntil * 1_000_000;
+            jdbcTemplate.query(SELECT_WINDOW, resultSet -> {
+                enqueue(resultSet.getString(1), resultSet.getLong(2) / 1_000_000);
+            }, from, until * 1_000_000);
+            loadedUntil = until;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Под lock; повтор id (окно и schedule увидели одну строку) не кладётся второй раз
+    private void enqueue(String id, long deliverAtMillis) {
+        if (inWheel.add(id) && !wheel.add(id, deliverAtMillis)) {
+            inWheel.remove(id);
+        }
+    }
+
+    // Часы в том же масштабе, что deliver_at: локальное время сервера, как у времени сообщений
+    private static long now() {
+        return EpochNanos.of(LocalDateTime.now()) / 1_000_000;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.top.server.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Иерархическое колесо таймеров: levels уровней по 2^bits слотов, слот уровня L покрывает 2^(bits*L) тиков.
+// Элемент кладётся на нижний уровень, в охват которого попадает его срок; когда нижний уровень делает оборот,
+// очередной слот следующего уровня раскладывается ниже (cascade). Добавление и тик - O(1) независимо от числа
+// элементов, память - только под элементы. Срок округляется вверх до тика: элемент не выходит раньше срока.
+// Не потокобезопасно: вызывается под блокировкой владельца
+final class TimingWheel<T> {
+    private final long startMillis;
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    // slots.get(level).get(index) - элементы слота или null для пустого слота
+    private final List<List<List<Entry<T>>>> slots;
+    // Следующий необработанный тик от startMillis
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long startMillis, long tickMillis, int bits, int levels) {
+        this.startMillis = startMillis;
+        this.tickMillis = tickMillis;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.levels = levels;
+        this.slots = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            slots.add(new ArrayList<>(Collections.<List<Entry<T>>>nCopies(1 << bits, null)));
+        }
+    }
+
+    // Охват колеса от текущего тика
+    long spanMillis() {
+        return (1L << (bits * levels)) * tickMillis;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // false - срок дальше охвата колеса; просроченный элемент выходит на ближайшем тике
+    boolean add(T item, long deadlineMillis) {
+        long expiry = Math.max(Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis), currentTick);
+        return place(new Entry<>(item, expiry));
+    }
+
+    // Обработка всех тиков до момента nowMillis включительно; вышедшие элементы - в due в порядке тиков
+    void advance(long nowMillis, Consumer<T> due) {
+        long target = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        while (currentTick <= target) {
+            int index = (int) (currentTick & mask);
+            // Оборот уровня: слот следующего уровня раскладывается ниже, при его обороте - и слот уровня выше
+            for (int level = 1; level < levels && (currentTick & ((1L << (bits * level)) - 1)) == 0; level++) {
+                cascade(level, (int) (currentTick >>> (bits * level)) & mask);
+            }
+            List<Entry<T>> expired = slots.get(0).set(index, null);
+            currentTick++;
+            if (expired != null) {
+                size -= expired.size();
+                for (Entry<T> entry : expired) {
+                    due.accept(entry.item());
+                }
+            }
+        }
+    }
+
+    private void cascade(int level, int index) {
+        List<Entry<T>> entries = slots.get(level).set(index, null);
+        if (entries == null) {
+            return;
+        }
+        size -= entries.size();
+        for (Entry<T> entry : entries) {
+            place(entry);
+        }
+    }
+
+    private boolean place(Entry<T> entry) {
+        long delta = entry.expiry() - currentTick;
+        for (int level = 0; level < levels; level++) {
+            if (delta < 1L << (bits * (level + 1))) {
+                int index = (int) (entry.expiry() >>> (bits * level)) & mask;
+                List<Entry<T>> slot = slots.get(level).get(index);
+                if (slot == null) {
+                    slot = new ArrayList<>(4);
+                    slots.get(level).set(index, slot);
+                }
+                slot.add(entry);
+                size++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Entry<T>(T item, long expiry) {
+    }
+}
@@ -0,0 +1,69 @@
+package ru.top.server.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Фильтр Блума по строкам: "точно нет" или "возможно есть". Хеш считается прямо по символам строки
+// (FNV-1a и перемешивание murmur3), k позиций - двойным хешированием, поэтому проверка не создаёт объектов.
+// Биты в AtomicLongArray: добавление из одного потока видно проверкам в других без блокировок
+final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long mask;
+    private final int hashes;
+
+    // Размер под expected элементов с долей ложных срабатываний falsePositiveRate (округляется до степени двойки)
+    BloomFilter(int expected, double falsePositiveRate) {
+        double bits = -Math.max(expected, 1) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long size = Long.highestOneBit(Math.max(64L, (long) Math.ceil(bits)) - 1) << 1;
+        this.words = new AtomicLongArray((int) (size >>> 6));
+        this.mask = size - 1;
+        this.hashes = Math.max(1, (int) Math.round(size / (double) Math.max(expected, 1) * Math.log(2)));
+    }
+
+    void add(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            int word = (int) (bit >>> 6);
+            long flag = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & flag) == 0 && !words.compareAndSet(word, current, current | flag)) {
+                // другой бит этого слова изменился одновременно - повтор
+            }
+        }
+    }
+
+    boolean mightContain(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long bitSize() {
+        return mask + 1;
+    }
+
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB93FE1A85EC3L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,6 +15,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import ru.top.server.jfr.AuthEvent;
 
 import java.io.IOException;
 
@@ -28,9 +30,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    // События JFR ru.top.chat.Auth; при false - только проверка флага
+    @Value("${chat.jfr.enabled:false}")
+    private boolean jfrEnabled;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
+        if (jfrEnabled) {
+            AuthEvent event = new AuthEvent();
+            event.begin();
+            authenticate(request);
+            event.finish(request.getRequestURI(), SecurityContextHolder.getContext().getAuthentication() != null);
+        } else {
+            authenticate(request);
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void authenticate(HttpServletRequest request) {
         String header = request.getHeader("Authorization");
         String username = null;
         String jwt = null;
@@ -62,7 +80,5 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         } else if (username == null) {
             log.debug("No username extracted for URI: {}", request.getRequestURI());
         }
-
-        chain.doFilter(request, response);
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package ru.top.server.security;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
@@ -11,6 +12,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
@@ -18,7 +20,10 @@ public class JwtUtil {
 
     private final SecretKey SECRET_KEY = Keys.hmacShaKeyFor(
             "your-256-bit-secret-key-here-change-this-longer".getBytes(StandardCharsets.UTF_8));
-    private final long JWT_TOKEN_VALIDITY = 5 * 60 * 60 * 1000; // 5 hours
+    static final long JWT_TOKEN_VALIDITY = 5 * 60 * 60 * 1000; // 5 hours
+
+    @Autowired
+    private RevokedTokens revokedTokens;
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -37,7 +42,7 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
+    public Claims extractAllClaims(String token) {
         try {
             return Jwts.parserBuilder()
                     .setSigningKey(SECRET_KEY)
@@ -49,29 +54,33 @@ public class JwtUtil {
         }
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, userDetails.getUsername());
     }
 
+    // jti - идентификатор для отзыва отдельного токена (POST /api/auth/logout)
     private String createToken(Map<String, Object> claims, String subject) {
+        long issuedAt = revokedTokens.issuedAt(subject, System.currentTimeMillis());
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY))
+                .setIssuedAt(new Date(issuedAt))
+                .setExpiration(new Date(issuedAt + JWT_TOKEN_VALIDITY))
                 .signWith(SECRET_KEY)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+            // Токен разбирается один раз; отзыв проверяется в памяти (RevokedTokens)
+            final Claims claims = extractAllClaims(token);
+            final String username = claims.getSubject();
+            final Date issuedAt = claims.getIssuedAt();
+            return username.equals(userDetails.getUsername())
+                    && !claims.getExpiration().before(new Date())
+                    && !revokedTokens.isRevoked(claims.getId(), username, issuedAt != null ? issuedAt.getTime() : 0);
         } catch (Exception e) {
             return false;
         }
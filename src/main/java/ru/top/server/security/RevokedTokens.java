@@ -0,0 +1,184 @@
+package ru.top.server.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Отозванные JWT (POST /api/auth/logout, POST /api/auth/revoke-all). Проверка идёт в фильтре на каждом запросе,
+// поэтому без БД: идентификаторы токенов (jti) - за фильтром Блума, и только при "возможно есть" проверяется точное
+// множество; отзыв всех токенов пользователя - момент отзыва, токены выпущенные не позже него отклоняются.
+// Отзывы пишутся в chat_revoked_token / chat_token_cutoff и раз в refresh-interval-ms перечитываются целиком:
+// истёкшие вместе с токенами записи удаляются, фильтр строится заново под текущий объём, подтягиваются отзывы
+// других узлов
+@Component
+@DependsOnDatabaseInitialization
+public class RevokedTokens {
+    private static final Logger log = LoggerFactory.getLogger(RevokedTokens.class);
+
+    private static final String INSERT_TOKEN =
+            "INSERT OR IGNORE INTO chat_revoked_token (jti, expires_at) VALUES (?, ?)";
+    private static final String UPSERT_CUTOFF =
+            "INSERT INTO chat_token_cutoff (username, revoked_before, expires_at) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (username) DO UPDATE SET revoked_before = max(revoked_before, excluded.revoked_before), " +
+                    "expires_at = max(expires_at, excluded.expires_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int expectedTokens;
+    private final double falsePositiveRate;
+    private final long refreshIntervalMs;
+    private final Counter rejected;
+    private final Counter falsePositives;
+    // отзывы и перестроение снимка сериализуются, чтобы отзыв не потерялся между чтением БД и заменой снимка
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    private volatile boolean running = true;
+    private Thread refresher;
+
+    // jti -> срок действия токена, username -> момент отзыва всех токенов (мс)
+    private record Snapshot(BloomFilter filter, ConcurrentHashMap<String, Long> tokens, ConcurrentHashMap<String, Long> cutoffs) {
+    }
+
+    public RevokedTokens(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                         @Value("${chat.revocation.expected-tokens:100000}") int expectedTokens,
+                         @Value("${chat.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                         @Value("${chat.revocation.refresh-interval-ms:30000}") long refreshIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.snapshot = new Snapshot(new BloomFilter(expectedTokens, falsePositiveRate), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        this.rejected = Counter.builder("chat.auth.revocation.rejected")
+                .description("Requests rejected because their token was revoked").register(meterRegistry);
+        this.falsePositives = Counter.builder("chat.auth.revocation.false-positives")
+                .description("Bloom filter hits resolved as not revoked by the exact set").register(meterRegistry);
+        Gauge.builder("chat.auth.revoked", this, tokens -> tokens.snapshot.tokens().size()).tag("kind", "token")
+                .description("Revoked tokens that have not expired yet").register(meterRegistry);
+        Gauge.builder("chat.auth.revoked", this, tokens -> tokens.snapshot.cutoffs().size()).tag("kind", "user")
+                .description("Users with all tokens revoked").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        refresh();
+        refresher = new Thread(this::refreshLoop, "revoked-tokens-refresher");
+        refresher.setDaemon(true);
+        refresher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        refresher.interrupt();
+        refresher.join(5000);
+    }
+
+    // Проверка на каждом запросе: без обращений к БД и без создания объектов
+    public boolean isRevoked(String jti, String username, long issuedAtMillis) {
+        Snapshot current = snapshot;
+        if (!current.cutoffs().isEmpty()) {
+            Long cutoff = current.cutoffs().get(username);
+            if (cutoff != null && issuedAtMillis <= cutoff) {
+                rejected.increment();
+                return true;
+            }
+        }
+        if (jti != null && current.filter().mightContain(jti)) {
+            if (current.tokens().containsKey(jti)) {
+                rejected.increment();
+                return true;
+            }
+            falsePositives.increment();
+        }
+        return false;
+    }
+
+    // Отзыв одного токена до истечения его срока
+    public void revoke(String jti, long expiresAtMillis) {
+        lock.lock();
+        try {
+            jdbcTemplate.update(INSERT_TOKEN, jti, expiresAtMillis);
+            Snapshot current = snapshot;
+            current.tokens().put(jti, expiresAtMillis);
+            current.filter().add(jti);
+        } finally {
+            lock.unlock();
+        }
+        log.info("Token revoked: jti={}", jti);
+    }
+
+    // Отзыв всех токенов пользователя, выпущенных не позже now; запись живёт, пока не истечёт последний из них
+    public void revokeAll(String username, long now) {
+        lock.lock();
+        try {
+            jdbcTemplate.update(UPSERT_CUTOFF, username, now, now + JwtUtil.JWT_TOKEN_VALIDITY);
+            snapshot.cutoffs().merge(username, now, Math::max);
+        } finally {
+            lock.unlock();
+        }
+        log.info("All tokens revoked for user: {}", username);
+    }
+
+    // Время выпуска нового токена: iat в JWT хранится в секундах, поэтому токен, выпущенный в ту же секунду
+    // после отзыва всех токенов, получает начало следующей секунды, чтобы не попасть под отзыв
+    public long issuedAt(String username, long now) {
+        Long cutoff = snapshot.cutoffs().get(username);
+        if (cutoff != null && now / 1000 * 1000 <= cutoff) {
+            return (cutoff / 1000 + 1) * 1000;
+        }
+        return now;
+    }
+
+    void refresh() {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            jdbcTemplate.update("DELETE FROM chat_revoked_token WHERE expires_at < ?", now);
+            jdbcTemplate.update("DELETE FROM chat_token_cutoff WHERE expires_at < ?", now);
+            ConcurrentHashMap<String, Long> tokens = new ConcurrentHashMap<>();
+            jdbcTemplate.query("SELECT jti, expires_at FROM chat_revoked_token",
+                    resultSet -> {
+                        tokens.put(resultSet.getString(1), resultSet.getLong(2));
+                    });
+            ConcurrentHashMap<String, Long> cutoffs = new ConcurrentHashMap<>();
+            jdbcTemplate.query("SELECT username, revoked_before FROM chat_token_cutoff",
+                    resultSet -> {
+                        cutoffs.put(resultSet.getString(1), resultSet.getLong(2));
+                    });
+            // запас вдвое, чтобы отзывы до следующего перестроения не поднимали долю ложных срабатываний
+            BloomFilter filter = new BloomFilter(Math.max(expectedTokens, tokens.size() * 2), falsePositiveRate);
+            for (String jti : tokens.keySet()) {
+                filter.add(jti);
+            }
+            snapshot = new Snapshot(filter, tokens, cutoffs);
+            log.debug("Revoked tokens reloaded: {} tokens, {} users, filter {} bits", tokens.size(), cutoffs.size(), filter.bitSize());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refreshLoop() {
+        while (running) {
+            try {
+                Thread.sleep(refreshIntervalMs);
+                refresh();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // остаётся прежний снимок, следующая попытка - через интервал
+                log.error("Failed to reload revoked tokens: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
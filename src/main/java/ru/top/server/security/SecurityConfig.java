@@ -13,6 +13,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
@@ -32,8 +34,12 @@ public class SecurityConfig {
 //                .authorizeHttpRequests(auth -> auth.anyRequest().permitAll()
 //                )
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/login", "/api/users/register").permitAll()
-                        .requestMatchers("/api/messages/**", "/api/users/**", "/api/groups/**").hasRole("USER")
+                        // Явные ant-матчеры: в приложении несколько сервлетов (Camel и actuator на отдельном порту)
+                        .requestMatchers(antMatcher("/api/auth/login"), antMatcher("/api/users/register")).permitAll()
+                        .requestMatchers(antMatcher("/api/messages/**"), antMatcher("/api/users/**"), antMatcher("/api/groups/**")).hasRole("USER")
+                        // actuator: без входа только статус health (подробности - ADMIN), остальное - только ADMIN
+                        .requestMatchers(antMatcher("/actuator/health"), antMatcher("/actuator/health/**")).permitAll()
+                        .requestMatchers(antMatcher("/actuator/**")).hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -1,6 +1,8 @@
 package ru.top.server.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -8,7 +10,9 @@ import org.springframework.stereotype.Service;
 import ru.top.server.model.ChatUser;
 import ru.top.server.repository.ChatUserRepository;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
@@ -16,12 +20,19 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     private ChatUserRepository userRepository;
 
+    // Пользователи с ролью ADMIN (эндпоинты actuator, кроме health)
+    @Value("${chat.admin.usernames:}")
+    private Set<String> adminUsernames;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         ChatUser user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(), user.getPassword(),
-                Arrays.asList(new org.springframework.security.core.authority.SimpleGrantedAuthority("ROLE_USER")));
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>(2);
+        authorities.add(new SimpleGrantedAuthority("ROLE_USER"));
+        if (adminUsernames.contains(username)) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
+        }
+        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), authorities);
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package ru.top.server.store;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Время как целое число наносекунд от эпохи (UTC): так время хранится в журнале, шардах и служебных таблицах
+public final class EpochNanos {
+
+    private EpochNanos() {
+    }
+
+    public static long of(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    public static LocalDateTime toLocalDateTime(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,144 @@
+package ru.top.server.store;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.top.server.model.Message;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Хранилище сообщений в SQLite через JPA (используется по умолчанию)
+@Component
+@ConditionalOnProperty(name = "chat.message-store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaMessageStore implements MessageStore {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void save(Message message) {
+        entityManager.persist(message);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Message findById(String conversationKey, String messageId) {
+        return entityManager.find(Message.class, messageId);
+    }
+
+    // Один запрос по первичному ключу, переписка проверяется по загруженным сообщениям
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findByIds(String conversationKey, List<String> messageIds) {
+        return entityManager.createNamedQuery("Message.findByIds", Message.class)
+                .setParameter("ids", messageIds)
+                .getResultStream()
+                .filter(message -> conversationKey.equals(message.conversationKey()))
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public void update(Message message) {
+        entityManager.createNamedQuery("Message.updateContent")
+                .setParameter("content", message.getContent())
+                .setParameter("editedAt", message.getEditedAt())
+                .setParameter("id", message.getId())
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public void delete(Message message) {
+        entityManager.createNamedQuery("Message.deleteById")
+                .setParameter("id", message.getId())
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findConversationMessages(String userId, String otherUserId, LocalDateTime since) {
+        return entityManager.createNamedQuery("Message.findConversationMessages", Message.class)
+                .setParameter("userId", userId)
+                .setParameter("otherUserId", otherUserId)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findChatHistory(String userId, String otherUserId) {
+        return entityManager.createNamedQuery("Message.findChatHistory", Message.class)
+                .setParameter("userId", userId)
+                .setParameter("otherUserId", otherUserId)
+                .getResultList();
+    }
+
+    // Последние limit сообщений запросом по убыванию времени, ответ - по возрастанию
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findChatHistoryPage(String userId, String otherUserId, LocalDateTime before, int limit) {
+        List<Message> page = new ArrayList<>(entityManager.createNamedQuery("Message.findChatHistoryBefore", Message.class)
+                .setParameter("userId", userId)
+                .setParameter("otherUserId", otherUserId)
+                .setParameter("before", before)
+                .setMaxResults(limit)
+                .getResultList());
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findByGroupId(String groupId) {
+        return entityManager.createNamedQuery("Message.findByGroupId", Message.class)
+                .setParameter("groupId", groupId)
+                .getResultList();
+    }
+
+    // Проход по индексу idx_chat_message_group (group_id, timestamp) от since
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findGroupMessagesSince(String groupId, LocalDateTime since) {
+        return entityManager.createNamedQuery("Message.findGroupMessagesSince", Message.class)
+                .setParameter("groupId", groupId)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> searchMessages(String userId, String keyword, LocalDateTime start, LocalDateTime end) {
+        return entityManager.createNamedQuery("Message.searchMessages", Message.class)
+                .setParameter("userId", userId)
+                .setParameter("keyword", keyword != null ? "%" + keyword + "%" : null)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .getResultList();
+    }
+
+    // Курсор Hibernate (ScrollableResults) вместо списка; выданное сообщение сразу отсоединяется,
+    // чтобы контекст персистентности не рос вместе с историей
+    @Override
+    @Transactional(readOnly = true)
+    public void exportMessages(String userId, Consumer<Message> sink) {
+        try (Stream<Message> messages = entityManager.createNamedQuery("Message.findUserMessages", Message.class)
+                .setParameter("userId", userId)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 500)
+                .getResultStream()) {
+            messages.forEach(message -> {
+                sink.accept(message);
+                entityManager.detach(message);
+            });
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.top.server.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Один файл журнала сообщений, целиком отображённый в память.
+// Формат записи: [int длина][int CRC32C][полезная нагрузка]; длина 0 означает конец данных
+final class LogSegment implements Closeable {
+    static final int HEADER_SIZE = 8;
+
+    // Обработчик записи, найденной при восстановлении
+    interface RecordVisitor {
+        void visit(int offset, ByteBuffer payload);
+    }
+
+    private final int index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private LogSegment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment open(Path path, int index, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return new LogSegment(index, path, channel, buffer);
+    }
+
+    int index() {
+        return index;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    // Последовательный проход по записям с проверкой CRC. Возвращает true, если хвост сегмента пришлось обрезать
+    boolean recover(RecordVisitor visitor) {
+        int position = 0;
+        int capacity = buffer.capacity();
+        boolean truncated = false;
+        while (position + HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || position + HEADER_SIZE + length > capacity) {
+                truncated = true;
+                break;
+            }
+            int expectedCrc = buffer.getInt(position + 4);
+            ByteBuffer payload = buffer.slice(position + HEADER_SIZE, length);
+            if (crc(payload) != expectedCrc) {
+                truncated = true;
+                break;
+            }
+            visitor.visit(position, payload.asReadOnlyBuffer());
+            position += HEADER_SIZE + length;
+        }
+        writePosition = position;
+        if (truncated) {
+            // Обнуляем недописанный хвост, чтобы его остатки не приняли за запись при следующем восстановлении
+            for (int i = position; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        return truncated;
+    }
+
+    boolean hasRoomFor(int payloadLength) {
+        return writePosition + HEADER_SIZE + payloadLength <= buffer.capacity();
+    }
+
+    // Дозапись в конец сегмента; вызывается только из MessageLog под его блокировкой
+    int append(byte[] payload) {
+        int offset = writePosition;
+        buffer.put(offset + HEADER_SIZE, payload, 0, payload.length);
+        buffer.putInt(offset + 4, crc(ByteBuffer.wrap(payload)));
+        buffer.putInt(offset, payload.length);
+        writePosition = offset + HEADER_SIZE + payload.length;
+        return offset;
+    }
+
+    // Представление полезной нагрузки записи без копирования байтов
+    ByteBuffer read(int offset) {
+        int length = buffer.getInt(offset);
+        return buffer.slice(offset + HEADER_SIZE, length).asReadOnlyBuffer();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private static int crc(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+}
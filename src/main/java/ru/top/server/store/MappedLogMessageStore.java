@@ -0,0 +1,360 @@
+package ru.top.server.store;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.top.server.model.Message;
+import ru.top.server.repository.ChatUserGroupsRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Хранилище сообщений в сегментированном журнале на отображённых в память файлах.
+// Индексы переписок строятся в памяти при старте повторным чтением журнала.
+// Правка и удаление дописывают новую запись; индексы продолжают указывать на исходную позицию,
+// а карта revisions переадресует её на последнюю версию (или помечает удалённой)
+@Component
+@ConditionalOnProperty(name = "chat.message-store.type", havingValue = "mmap")
+public class MappedLogMessageStore implements MessageStore {
+    private static final Logger log = LoggerFactory.getLogger(MappedLogMessageStore.class);
+
+    @Autowired
+    private ChatUserGroupsRepository userGroupsRepository;
+
+    @Value("${chat.message-store.mmap.directory:message-log}")
+    private String directory;
+
+    @Value("${chat.message-store.mmap.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${chat.message-store.mmap.sync-on-write:false}")
+    private boolean syncOnWrite;
+
+    private MessageLog messageLog;
+
+    // Индексы: личная переписка (ключ пары пользователей), группа, все сообщения пользователя
+    private final ConcurrentHashMap<String, OffsetIndex> conversations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, OffsetIndex> groups = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, OffsetIndex> users = new ConcurrentHashMap<>();
+
+    private static final long DELETED = -1;
+
+    // исходная позиция -> позиция последней версии или DELETED; только для изменённых сообщений
+    private final ConcurrentHashMap<Long, Long> revisions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void open() throws IOException {
+        messageLog = new MessageLog(Path.of(directory), segmentSize, syncOnWrite);
+        long[] recovered = {0};
+        messageLog.open((position, payload) -> {
+            MessageRecordCodec.Decoded decoded = MessageRecordCodec.decodeRecord(payload);
+            if (decoded.supersedes() >= 0) {
+                revisions.put(decoded.supersedes(), decoded.deleted() ? DELETED : position);
+            } else {
+                index(position, decoded.message());
+                recovered[0]++;
+            }
+        });
+        log.info("Recovered {} messages from message log", recovered[0]);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        messageLog.close();
+    }
+
+    // Дозапись и индексация под одной блокировкой, чтобы порядок в индексах совпадал с порядком в журнале.
+    // Журнал пишется вне транзакции SQLite: повтор записи после её отката (WriteRetry) находит id в индексе
+    // переписки и не дописывает сообщение второй раз
+    @Override
+    public synchronized void save(Message message) {
+        OffsetIndex index = conversationIndex(message.conversationKey());
+        if (index != null && index.positionOf(message.getId()) >= 0) {
+            return;
+        }
+        try {
+            long position = messageLog.append(MessageRecordCodec.encode(message));
+            index(position, message);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append message to log", e);
+        }
+    }
+
+    @Override
+    public Message findById(String conversationKey, String messageId) {
+        long position = locate(conversationKey, messageId);
+        return position >= 0 ? read(position) : null;
+    }
+
+    @Override
+    public List<Message> findByIds(String conversationKey, List<String> messageIds) {
+        List<Message> result = new ArrayList<>(messageIds.size());
+        for (String messageId : messageIds) {
+            Message message = findById(conversationKey, messageId);
+            if (message != null) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void update(Message message) {
+        appendRevision(message, false);
+    }
+
+    @Override
+    public synchronized void delete(Message message) {
+        appendRevision(message, true);
+    }
+
+    private void appendRevision(Message message, boolean deleted) {
+        long original = locate(message.conversationKey(), message.getId());
+        if (original < 0) {
+            return;
+        }
+        try {
+            long position = messageLog.append(MessageRecordCodec.encode(message, original, deleted));
+            revisions.put(original, deleted ? DELETED : position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append message revision to log", e);
+        }
+    }
+
+    // Исходная позиция сообщения по карте id индекса переписки, без чтения журнала
+    private long locate(String conversationKey, String messageId) {
+        OffsetIndex index = conversationIndex(conversationKey);
+        if (index == null) {
+            return -1;
+        }
+        long position = index.positionOf(messageId);
+        if (position < 0) {
+            return -1;
+        }
+        Long latest = revisions.get(position);
+        return latest != null && latest == DELETED ? -1 : position;
+    }
+
+    private OffsetIndex conversationIndex(String conversationKey) {
+        return conversationKey.startsWith("g:")
+                ? groups.get(conversationKey.substring(2))
+                : conversations.get(conversationKey);
+    }
+
+    @Override
+    public List<Message> findConversationMessages(String userId, String otherUserId, LocalDateTime since) {
+        OffsetIndex index = conversations.get(Message.privateConversationKey(userId, otherUserId));
+        if (index == null) {
+            return List.of();
+        }
+        OffsetIndex.View view = index.view();
+        int from = since != null ? view.firstAfter(MessageRecordCodec.sortKey(since)) : 0;
+        List<Message> result = new ArrayList<>(view.size() - from);
+        for (int i = from; i < view.size(); i++) {
+            Message message = read(view.positions()[i]);
+            if (message != null && (since == null || message.getTimestamp().isAfter(since))) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Message> findChatHistory(String userId, String otherUserId) {
+        return findConversationMessages(userId, otherUserId, null);
+    }
+
+    // Граница страницы - бинарный поиск по ключам индекса, затем обратный проход по позициям: читаются
+    // только записи страницы, срезами отображённого сегмента без копирования, а не вся переписка
+    @Override
+    public List<Message> findChatHistoryPage(String userId, String otherUserId, LocalDateTime before, int limit) {
+        OffsetIndex index = conversations.get(Message.privateConversationKey(userId, otherUserId));
+        if (index == null) {
+            return List.of();
+        }
+        OffsetIndex.View view = index.view();
+        int end = before != null ? view.firstAtOrAfter(MessageRecordCodec.sortKey(before)) : view.size();
+        List<Message> page = new ArrayList<>(Math.min(limit, end));
+        for (int i = end - 1; i >= 0 && page.size() < limit; i--) {
+            Message message = read(view.positions()[i]);
+            if (message != null && (before == null || message.getTimestamp().isBefore(before))) {
+                page.add(message);
+            }
+        }
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    public List<Message> findByGroupId(String groupId) {
+        OffsetIndex index = groups.get(groupId);
+        if (index == null) {
+            return List.of();
+        }
+        OffsetIndex.View view = index.view();
+        List<Message> result = new ArrayList<>(view.size());
+        for (int i = 0; i < view.size(); i++) {
+            Message message = read(view.positions()[i]);
+            if (message != null) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    // Начало - бинарный поиск по ключам индекса группы, читаются только сообщения после since
+    @Override
+    public List<Message> findGroupMessagesSince(String groupId, LocalDateTime since) {
+        OffsetIndex index = groups.get(groupId);
+        if (index == null) {
+            return List.of();
+        }
+        OffsetIndex.View view = index.view();
+        List<Message> result = new ArrayList<>();
+        for (int i = view.firstAfter(MessageRecordCodec.sortKey(since)); i < view.size(); i++) {
+            Message message = read(view.positions()[i]);
+            if (message != null && message.getTimestamp().isAfter(since)) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Message> searchMessages(String userId, String keyword, LocalDateTime start, LocalDateTime end) {
+        // Слияние по времени индексов пользователя и всех его групп
+        List<OffsetIndex.View> views = new ArrayList<>();
+        OffsetIndex own = users.get(userId);
+        if (own != null) {
+            views.add(own.view());
+        }
+        for (String groupId : userGroupsRepository.findGroupIdsByUserId(userId)) {
+            OffsetIndex index = groups.get(groupId);
+            if (index != null) {
+                views.add(index.view());
+            }
+        }
+        long startKey = start != null ? MessageRecordCodec.sortKey(start) : Long.MIN_VALUE;
+        long endKey = end != null ? MessageRecordCodec.sortKey(end) : Long.MAX_VALUE;
+        String needle = keyword != null ? keyword.toLowerCase(Locale.ROOT) : null;
+
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(
+                (a, b) -> Long.compare(views.get(a[0]).keys()[a[1]], views.get(b[0]).keys()[b[1]]));
+        for (int v = 0; v < views.size(); v++) {
+            int from = views.get(v).firstAtOrAfter(startKey);
+            if (from < views.get(v).size()) {
+                cursors.add(new int[]{v, from});
+            }
+        }
+        List<Message> result = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        while (!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            OffsetIndex.View view = views.get(cursor[0]);
+            if (view.keys()[cursor[1]] > endKey) {
+                continue;
+            }
+            long position = view.positions()[cursor[1]];
+            if (seen.add(position)) {
+                Message message = read(position);
+                if (message != null && matches(message, needle, start, end)) {
+                    result.add(message);
+                }
+            }
+            if (++cursor[1] < view.size()) {
+                cursors.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    // Слияние по времени индексов пользователя и его групп без множества уже выданных позиций:
+    // сообщение в группу, где пользователь состоит, есть и в его индексе (как у отправителя) - оно выдаётся
+    // только из индекса группы. Память не зависит от длины истории
+    @Override
+    public void exportMessages(String userId, Consumer<Message> sink) {
+        List<OffsetIndex.View> views = new ArrayList<>();
+        OffsetIndex own = users.get(userId);
+        if (own != null) {
+            views.add(own.view());
+        }
+        int ownViews = views.size();
+        Set<String> memberGroups = new HashSet<>(userGroupsRepository.findGroupIdsByUserId(userId));
+        for (String groupId : memberGroups) {
+            OffsetIndex index = groups.get(groupId);
+            if (index != null) {
+                views.add(index.view());
+            }
+        }
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(
+                (a, b) -> Long.compare(views.get(a[0]).keys()[a[1]], views.get(b[0]).keys()[b[1]]));
+        for (int v = 0; v < views.size(); v++) {
+            if (views.get(v).size() > 0) {
+                cursors.add(new int[]{v, 0});
+            }
+        }
+        while (!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            OffsetIndex.View view = views.get(cursor[0]);
+            Message message = read(view.positions()[cursor[1]]);
+            boolean duplicate = cursor[0] < ownViews && message != null
+                    && "GROUP".equals(message.getChatType()) && memberGroups.contains(message.getGroupId());
+            if (message != null && !duplicate) {
+                sink.accept(message);
+            }
+            if (++cursor[1] < view.size()) {
+                cursors.add(cursor);
+            }
+        }
+    }
+
+    private static boolean matches(Message message, String needle, LocalDateTime start, LocalDateTime end) {
+        if (needle != null && !message.getContent().toLowerCase(Locale.ROOT).contains(needle)) {
+            return false;
+        }
+        if (start != null && message.getTimestamp().isBefore(start)) {
+            return false;
+        }
+        return end == null || !message.getTimestamp().isAfter(end);
+    }
+
+    // Последняя версия сообщения по исходной позиции или null, если сообщение удалено
+    private Message read(long position) {
+        Long latest = revisions.get(position);
+        if (latest != null && latest == DELETED) {
+            return null;
+        }
+        ByteBuffer payload = messageLog.read(latest != null ? latest : position);
+        return MessageRecordCodec.decode(payload);
+    }
+
+    private void index(long position, Message message) {
+        long key = MessageRecordCodec.sortKey(message.getTimestamp());
+        if ("GROUP".equals(message.getChatType())) {
+            groups.computeIfAbsent(message.getGroupId(), id -> new OffsetIndex()).add(position, key, message.getId());
+        } else {
+            conversations.computeIfAbsent(message.conversationKey(), id -> new OffsetIndex()).add(position, key, message.getId());
+            if (message.getRecipientId() != null && !message.getRecipientId().equals(message.getSenderId())) {
+                users.computeIfAbsent(message.getRecipientId(), id -> new OffsetIndex()).add(position, key, null);
+            }
+        }
+        users.computeIfAbsent(message.getSenderId(), id -> new OffsetIndex()).add(position, key, null);
+    }
+}
@@ -0,0 +1,103 @@
+package ru.top.server.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Сегментированный журнал только на дозапись. Позиция записи кодируется как (номер сегмента << 32) | смещение
+final class MessageLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MessageLog.class);
+    private static final String SUFFIX = ".log";
+
+    // Обработчик записи при восстановлении журнала
+    interface RecoveryVisitor {
+        void visit(long position, ByteBuffer payload);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncOnWrite;
+    private volatile List<LogSegment> segments = List.of();
+
+    MessageLog(Path directory, int segmentSize, boolean syncOnWrite) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    // Открытие существующих сегментов и восстановление после сбоя: записи с неверной CRC и всё после них отбрасываются
+    synchronized void open(RecoveryVisitor visitor) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        List<LogSegment> opened = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int index = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+            LogSegment segment = LogSegment.open(file, index, segmentSize);
+            boolean truncated = segment.recover((offset, payload) -> visitor.visit(position(index, offset), payload));
+            if (truncated) {
+                log.warn("Message log segment {} truncated at offset {} during recovery", file, segment.writePosition());
+            }
+            opened.add(segment);
+        }
+        if (opened.isEmpty()) {
+            opened.add(LogSegment.open(segmentPath(0), 0, segmentSize));
+        }
+        segments = List.copyOf(opened);
+        log.info("Message log opened at {}: {} segment(s)", directory, opened.size());
+    }
+
+    synchronized long append(byte[] payload) throws IOException {
+        if (LogSegment.HEADER_SIZE + payload.length > segmentSize) {
+            throw new IllegalArgumentException("Message too large for log segment: " + payload.length + " bytes");
+        }
+        LogSegment active = segments.get(segments.size() - 1);
+        if (!active.hasRoomFor(payload.length)) {
+            active.force();
+            LogSegment next = LogSegment.open(segmentPath(active.index() + 1), active.index() + 1, segmentSize);
+            List<LogSegment> rolled = new ArrayList<>(segments);
+            rolled.add(next);
+            segments = List.copyOf(rolled);
+            active = next;
+        }
+        int offset = active.append(payload);
+        if (syncOnWrite) {
+            active.force();
+        }
+        return position(active.index(), offset);
+    }
+
+    // Чтение записи напрямую из отображённой памяти
+    ByteBuffer read(long position) {
+        int index = (int) (position >>> 32);
+        List<LogSegment> current = segments;
+        LogSegment segment = current.get(index - current.get(0).index());
+        return segment.read((int) position);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (LogSegment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%020d%s", index, SUFFIX));
+    }
+
+    private static long position(int segmentIndex, int offset) {
+        return ((long) segmentIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+}
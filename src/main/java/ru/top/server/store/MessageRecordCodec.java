@@ -0,0 +1,121 @@
+package ru.top.server.store;
+
+import ru.top.server.model.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Двоичный формат сообщения в журнале: строки с префиксом длины (-1 для null) и время в секундах/наносекундах UTC.
+// Необязательные поля дописываются в конец записи: старые записи без них читаются как null.
+// Правка или удаление - новая запись с позицией исходной записи (supersedes) и признаком удаления
+final class MessageRecordCodec {
+
+    // Запись журнала: сообщение и, для правки/удаления, позиция исходной записи (-1 - новое сообщение)
+    record Decoded(Message message, long supersedes, boolean deleted) {
+    }
+
+    private MessageRecordCodec() {
+    }
+
+    static byte[] encode(Message message) {
+        return encode(message, -1, false);
+    }
+
+    static byte[] encode(Message message, long supersedes, boolean deleted) {
+        byte[][] fields = {
+                bytes(message.getId()),
+                bytes(message.getContent()),
+                bytes(message.getSenderId()),
+                bytes(message.getRecipientId()),
+                bytes(message.getGroupId()),
+                bytes(message.getChatType())
+        };
+        byte[] attachmentId = bytes(message.getAttachmentId());
+        int size = 12 + 4 + (attachmentId != null ? attachmentId.length : 0) + 17;
+        for (byte[] field : fields) {
+            size += 4 + (field != null ? field.length : 0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] field : fields) {
+            if (field == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(field.length).put(field);
+            }
+        }
+        LocalDateTime timestamp = message.getTimestamp();
+        buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(timestamp.getNano());
+        if (attachmentId == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(attachmentId.length).put(attachmentId);
+        }
+        buffer.putLong(message.getEditedAt() != null ? sortKey(message.getEditedAt()) : Long.MIN_VALUE);
+        buffer.putLong(supersedes);
+        buffer.put((byte) (deleted ? 1 : 0));
+        return buffer.array();
+    }
+
+    static Message decode(ByteBuffer payload) {
+        return decodeRecord(payload).message();
+    }
+
+    static Decoded decodeRecord(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        Message message = new Message();
+        message.setId(string(buffer));
+        message.setContent(string(buffer));
+        String senderId = string(buffer);
+        String recipientId = string(buffer);
+        String groupId = string(buffer);
+        if (senderId != null) {
+            message.setSenderId(senderId);
+        }
+        if (recipientId != null) {
+            message.setRecipientId(recipientId);
+        }
+        if (groupId != null) {
+            message.setGroupId(groupId);
+        }
+        message.setChatType(string(buffer));
+        message.setTimestamp(LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC));
+        if (buffer.hasRemaining()) {
+            message.setAttachmentId(string(buffer));
+        }
+        long supersedes = -1;
+        boolean deleted = false;
+        if (buffer.hasRemaining()) {
+            long editedAt = buffer.getLong();
+            message.setEditedAt(editedAt != Long.MIN_VALUE ? fromSortKey(editedAt) : null);
+            supersedes = buffer.getLong();
+            deleted = buffer.get() != 0;
+        }
+        return new Decoded(message, supersedes, deleted);
+    }
+
+    // Ключ сортировки: время сообщения в наносекундах от эпохи
+    static long sortKey(LocalDateTime timestamp) {
+        return EpochNanos.of(timestamp);
+    }
+
+    static LocalDateTime fromSortKey(long key) {
+        return EpochNanos.toLocalDateTime(key);
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.top.server.store;
+
+import ru.top.server.model.Message;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Абстракция хранилища сообщений, которую использует MessageRoute.
+// Реализация выбирается свойством chat.message-store.type (jpa | mmap | sharded)
+public interface MessageStore {
+
+    // Сохранение нового сообщения (id, тип чата и время уже заполнены маршрутом). Хранилище вне транзакции SQLite
+    // пропускает уже сохранённый id: WriteRetry после отката повторяет запись целиком
+    void save(Message message);
+
+    // Сообщение переписки conversationKey (Message.conversationKey()) по id или null
+    Message findById(String conversationKey, String messageId);
+
+    // Сообщения переписки conversationKey из списка id; id других переписок и отсутствующие пропускаются
+    List<Message> findByIds(String conversationKey, List<String> messageIds);
+
+    // Новый текст сообщения (content и editedAt уже заполнены маршрутом)
+    void update(Message message);
+
+    // Удаление сообщения
+    void delete(Message message);
+
+    // Сообщения личной переписки, отправленные после since (по возрастанию времени)
+    List<Message> findConversationMessages(String userId, String otherUserId, LocalDateTime since);
+
+    // Полная история личной переписки (по возрастанию времени)
+    List<Message> findChatHistory(String userId, String otherUserId);
+
+    // Страница истории личной переписки: не больше limit последних сообщений раньше before (null - с конца истории),
+    // по возрастанию времени. Следующая страница - before = время первого сообщения предыдущей
+    List<Message> findChatHistoryPage(String userId, String otherUserId, LocalDateTime before, int limit);
+
+    // Сообщения группы
+    List<Message> findByGroupId(String groupId);
+
+    // Сообщения группы, отправленные после since (по возрастанию времени)
+    List<Message> findGroupMessagesSince(String groupId, LocalDateTime since);
+
+    // Поиск по сообщениям, доступным пользователю; keyword, start и end могут быть null
+    List<Message> searchMessages(String userId, String keyword, LocalDateTime start, LocalDateTime end);
+
+    // Все сообщения, доступные пользователю, по возрастанию времени: передаются в sink по одному,
+    // без накопления результата в памяти
+    void exportMessages(String userId, Consumer<Message> sink);
+}
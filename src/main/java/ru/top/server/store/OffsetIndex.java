@@ -0,0 +1,65 @@
+package ru.top.server.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Индекс позиций записей одной переписки, упорядоченный по времени.
+// Массивы только растут, поэтому снимок (массивы + размер) остаётся корректным без копирования.
+// Для поиска по id хранится карта id сообщения -> исходная позиция (только у индексов переписок и групп)
+final class OffsetIndex {
+
+    // Неизменяемый снимок индекса для чтения без блокировки
+    record View(long[] positions, long[] keys, int size) {
+
+        // Индекс первой записи с ключом строго больше key
+        int firstAfter(long key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] <= key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Индекс первой записи с ключом не меньше key
+        int firstAtOrAfter(long key) {
+            return key == Long.MIN_VALUE ? 0 : firstAfter(key - 1);
+        }
+    }
+
+    private long[] positions = new long[16];
+    private long[] keys = new long[16];
+    private int size;
+    private final Map<String, Long> ids = new HashMap<>();
+
+    // messageId == null - запись без поиска по id (индекс пользователя)
+    synchronized void add(long position, long key, String messageId) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        // Ключи должны быть монотонны для бинарного поиска: при откате часов берём предыдущее значение
+        keys[size] = size > 0 ? Math.max(key, keys[size - 1]) : key;
+        positions[size] = position;
+        size++;
+        if (messageId != null) {
+            ids.put(messageId, position);
+        }
+    }
+
+    // Исходная позиция сообщения или -1
+    synchronized long positionOf(String messageId) {
+        Long position = ids.get(messageId);
+        return position != null ? position : -1;
+    }
+
+    synchronized View view() {
+        return new View(positions, keys, size);
+    }
+}
@@ -0,0 +1,430 @@
+package ru.top.server.store;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.top.server.model.Message;
+import ru.top.server.repository.ChatUserGroupsRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Хранилище сообщений, разнесённое по N файлам SQLite по хешу ключа переписки.
+// У каждого шарда своё соединение для записи и пул соединений для чтения (WAL, читатели не блокируют писателя).
+// Чтение переписки или группы обращается к одному шарду; поиск выполняется на всех шардах параллельно
+@Component
+@ConditionalOnProperty(name = "chat.message-store.type", havingValue = "sharded")
+public class ShardedSqliteMessageStore implements MessageStore {
+    private static final Logger log = LoggerFactory.getLogger(ShardedSqliteMessageStore.class);
+
+    private static final String COLUMNS = "id, content, sender_id, recipient_id, group_id, chat_type, timestamp, attachment_id, edited_at";
+
+    // Столбцы, добавленные после первого выпуска: шарды, созданные раньше, дополняются при открытии
+    private static final String[][] ADDED_COLUMNS = {{"attachment_id", "TEXT"}, {"edited_at", "INTEGER"}};
+
+    @Autowired
+    private ChatUserGroupsRepository userGroupsRepository;
+
+    @Value("${chat.message-store.sharded.directory:message-shards}")
+    private String directory;
+
+    @Value("${chat.message-store.sharded.count:4}")
+    private int shardCount;
+
+    @Value("${chat.message-store.sharded.read-pool-size:4}")
+    private int readPoolSize;
+
+    private Shard[] shards;
+    private ExecutorService fanOutExecutor;
+    private final AtomicInteger fanOutThreads = new AtomicInteger();
+
+    @PostConstruct
+    public void open() throws Exception {
+        Path root = Path.of(directory);
+        Files.createDirectories(root);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(root.resolve("shard-" + i + ".db"), readPoolSize);
+        }
+        fanOutExecutor = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "message-shard-fanout-" + fanOutThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Opened {} message shards in {}", shardCount, root);
+    }
+
+    @PreDestroy
+    public void close() throws SQLException {
+        fanOutExecutor.shutdownNow();
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    @Override
+    public void save(Message message) {
+        String key = message.conversationKey();
+        try {
+            shardFor(key).insert(message, key);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to store message: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Message findById(String conversationKey, String messageId) {
+        List<Message> found = query(shardFor(conversationKey), "SELECT " + COLUMNS + " FROM chat_message WHERE id = ?", messageId);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public List<Message> findByIds(String conversationKey, List<String> messageIds) {
+        List<Object> parameters = new ArrayList<>(messageIds.size() + 1);
+        parameters.add(conversationKey);
+        parameters.addAll(messageIds);
+        return query(shardFor(conversationKey), "SELECT " + COLUMNS + " FROM chat_message WHERE conversation_key = ? AND id IN (" +
+                String.join(",", Collections.nCopies(messageIds.size(), "?")) + ")", parameters.toArray());
+    }
+
+    @Override
+    public void update(Message message) {
+        try {
+            shardFor(message.conversationKey()).update(message);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to update message: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(Message message) {
+        try {
+            shardFor(message.conversationKey()).delete(message.getId());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to delete message: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<Message> findConversationMessages(String userId, String otherUserId, LocalDateTime since) {
+        String key = Message.privateConversationKey(userId, otherUserId);
+        long sinceKey = since != null ? MessageRecordCodec.sortKey(since) : Long.MIN_VALUE;
+        return query(shardFor(key), "SELECT " + COLUMNS + " FROM chat_message WHERE conversation_key = ? AND timestamp > ? ORDER BY timestamp", key, sinceKey);
+    }
+
+    @Override
+    public List<Message> findChatHistory(String userId, String otherUserId) {
+        String key = Message.privateConversationKey(userId, otherUserId);
+        return query(shardFor(key), "SELECT " + COLUMNS + " FROM chat_message WHERE conversation_key = ? ORDER BY timestamp", key);
+    }
+
+    // Проход по индексу (conversation_key, timestamp) назад от before, не дальше limit строк
+    @Override
+    public List<Message> findChatHistoryPage(String userId, String otherUserId, LocalDateTime before, int limit) {
+        String key = Message.privateConversationKey(userId, otherUserId);
+        long beforeKey = before != null ? MessageRecordCodec.sortKey(before) : Long.MAX_VALUE;
+        List<Message> page = query(shardFor(key), "SELECT " + COLUMNS +
+                " FROM chat_message WHERE conversation_key = ? AND timestamp < ? ORDER BY timestamp DESC LIMIT ?", key, beforeKey, limit);
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    public List<Message> findByGroupId(String groupId) {
+        String key = Message.groupConversationKey(groupId);
+        return query(shardFor(key), "SELECT " + COLUMNS + " FROM chat_message WHERE conversation_key = ? ORDER BY timestamp", key);
+    }
+
+    @Override
+    public List<Message> findGroupMessagesSince(String groupId, LocalDateTime since) {
+        String key = Message.groupConversationKey(groupId);
+        return query(shardFor(key), "SELECT " + COLUMNS + " FROM chat_message WHERE conversation_key = ? AND timestamp > ? ORDER BY timestamp",
+                key, MessageRecordCodec.sortKey(since));
+    }
+
+    @Override
+    public List<Message> searchMessages(String userId, String keyword, LocalDateTime start, LocalDateTime end) {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = userMessagesQuery(userId, parameters);
+        if (keyword != null) {
+            sql.append(" AND content LIKE ?");
+            parameters.add("%" + keyword + "%");
+        }
+        sql.append(" AND timestamp >= ? AND timestamp <= ? ORDER BY timestamp");
+        parameters.add(start != null ? MessageRecordCodec.sortKey(start) : Long.MIN_VALUE);
+        parameters.add(end != null ? MessageRecordCodec.sortKey(end) : Long.MAX_VALUE);
+        Object[] args = parameters.toArray();
+
+        List<Future<List<Message>>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(fanOutExecutor.submit(() -> query(shard, sql.toString(), args)));
+        }
+        List<List<Message>> partial = new ArrayList<>(shards.length);
+        try {
+            for (Future<List<Message>> future : futures) {
+                partial.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return mergeByTimestamp(partial);
+    }
+
+    // Открытые курсоры всех шардов сливаются по времени: в памяти по одной строке на шард.
+    // Чтение идёт через пулы читателей (WAL), запись в шарды во время выгрузки не блокируется
+    @Override
+    public void exportMessages(String userId, Consumer<Message> sink) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = userMessagesQuery(userId, parameters).append(" ORDER BY timestamp, id").toString();
+        List<ShardCursor> open = new ArrayList<>(shards.length);
+        try {
+            PriorityQueue<ShardCursor> cursors = new PriorityQueue<>((a, b) -> a.current.getTimestamp().compareTo(b.current.getTimestamp()));
+            for (Shard shard : shards) {
+                ShardCursor cursor = new ShardCursor(shard, sql, parameters.toArray());
+                open.add(cursor);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            while (!cursors.isEmpty()) {
+                ShardCursor cursor = cursors.poll();
+                sink.accept(cursor.current);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Message shard export failed: " + e.getMessage(), e);
+        } finally {
+            for (ShardCursor cursor : open) {
+                cursor.close();
+            }
+        }
+    }
+
+    // Условие "сообщения, доступные пользователю": его личные сообщения и сообщения его групп.
+    // Группы отбираются по ключу переписки, чтобы каждая ветка OR шла по своему индексу
+    private StringBuilder userMessagesQuery(String userId, List<Object> parameters) {
+        List<String> groupIds = userGroupsRepository.findGroupIdsByUserId(userId);
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM chat_message WHERE (sender_id = ? OR recipient_id = ?");
+        parameters.add(userId);
+        parameters.add(userId);
+        if (!groupIds.isEmpty()) {
+            sql.append(" OR conversation_key IN (").append(String.join(",", Collections.nCopies(groupIds.size(), "?"))).append(")");
+            groupIds.forEach(groupId -> parameters.add(Message.groupConversationKey(groupId)));
+        }
+        return sql.append(")");
+    }
+
+    // Слияние отсортированных по времени результатов шардов
+    private static List<Message> mergeByTimestamp(List<List<Message>> partial) {
+        int total = 0;
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) ->
+                partial.get(a[0]).get(a[1]).getTimestamp().compareTo(partial.get(b[0]).get(b[1]).getTimestamp()));
+        for (int i = 0; i < partial.size(); i++) {
+            total += partial.get(i).size();
+            if (!partial.get(i).isEmpty()) {
+                cursors.add(new int[]{i, 0});
+            }
+        }
+        List<Message> merged = new ArrayList<>(total);
+        while (!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            List<Message> source = partial.get(cursor[0]);
+            merged.add(source.get(cursor[1]));
+            if (++cursor[1] < source.size()) {
+                cursors.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private Shard shardFor(String conversationKey) {
+        return shards[Math.floorMod(conversationKey.hashCode(), shards.length)];
+    }
+
+    private static List<Message> query(Shard shard, String sql, Object... parameters) {
+        try (Connection connection = shard.readPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<Message> result = new ArrayList<>();
+                while (resultSet.next()) {
+                    result.add(map(resultSet));
+                }
+                return result;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Message shard query failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static Message map(ResultSet resultSet) throws SQLException {
+        Message message = new Message();
+        message.setId(resultSet.getString(1));
+        message.setContent(resultSet.getString(2));
+        String senderId = resultSet.getString(3);
+        String recipientId = resultSet.getString(4);
+        String groupId = resultSet.getString(5);
+        if (senderId != null) {
+            message.setSenderId(senderId);
+        }
+        if (recipientId != null) {
+            message.setRecipientId(recipientId);
+        }
+        if (groupId != null) {
+            message.setGroupId(groupId);
+        }
+        message.setChatType(resultSet.getString(6));
+        message.setTimestamp(MessageRecordCodec.fromSortKey(resultSet.getLong(7)));
+        message.setAttachmentId(resultSet.getString(8));
+        long editedAt = resultSet.getLong(9);
+        message.setEditedAt(resultSet.wasNull() ? null : MessageRecordCodec.fromSortKey(editedAt));
+        return message;
+    }
+
+    // Построчный курсор по одному шарду на соединении из пула читателей
+    private static final class ShardCursor {
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private Message current;
+
+        ShardCursor(Shard shard, String sql, Object[] parameters) throws SQLException {
+            connection = shard.readPool.getConnection();
+            try {
+                statement = connection.prepareStatement(sql);
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                resultSet = statement.executeQuery();
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        boolean advance() throws SQLException {
+            current = resultSet.next() ? map(resultSet) : null;
+            return current != null;
+        }
+
+        void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close shard export cursor: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Один файл SQLite: выделенное соединение для записи и пул для чтения
+    private static final class Shard {
+        private final Connection writeConnection;
+        private final PreparedStatement insert;
+        private final PreparedStatement update;
+        private final PreparedStatement delete;
+        private final HikariDataSource readPool;
+
+        Shard(Path file, int readPoolSize) throws SQLException {
+            String url = "jdbc:sqlite:" + file.toAbsolutePath();
+            writeConnection = DriverManager.getConnection(url);
+            try (Statement statement = writeConnection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("PRAGMA busy_timeout=5000");
+                statement.execute("CREATE TABLE IF NOT EXISTS chat_message (" +
+                        "id TEXT PRIMARY KEY, content TEXT NOT NULL, sender_id TEXT, recipient_id TEXT, group_id TEXT, " +
+                        "chat_type TEXT NOT NULL, conversation_key TEXT NOT NULL, timestamp INTEGER NOT NULL, attachment_id TEXT, edited_at INTEGER)");
+                for (String[] column : ADDED_COLUMNS) {
+                    boolean present;
+                    try (ResultSet columns = statement.executeQuery(
+                            "SELECT 1 FROM pragma_table_info('chat_message') WHERE name = '" + column[0] + "'")) {
+                        present = columns.next();
+                    }
+                    if (!present) {
+                        statement.execute("ALTER TABLE chat_message ADD COLUMN " + column[0] + " " + column[1]);
+                    }
+                }
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_chat_message_conversation ON chat_message(conversation_key, timestamp)");
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_chat_message_sender ON chat_message(sender_id, timestamp)");
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_chat_message_recipient ON chat_message(recipient_id, timestamp)");
+            }
+            insert = writeConnection.prepareStatement(
+                    "INSERT OR IGNORE INTO chat_message (" + COLUMNS + ", conversation_key) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            update = writeConnection.prepareStatement("UPDATE chat_message SET content = ?, edited_at = ? WHERE id = ?");
+            delete = writeConnection.prepareStatement("DELETE FROM chat_message WHERE id = ?");
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(url);
+            config.setMaximumPoolSize(readPoolSize);
+            config.setConnectionInitSql("PRAGMA busy_timeout=5000");
+            config.setPoolName("message-" + file.getFileName());
+            readPool = new HikariDataSource(config);
+        }
+
+        // OR IGNORE: шард пишется вне транзакции основной базы, повтор записи после её отката (WriteRetry)
+        // встречает уже сохранённую строку
+        synchronized void insert(Message message, String conversationKey) throws SQLException {
+            insert.setString(1, message.getId());
+            insert.setString(2, message.getContent());
+            insert.setString(3, message.getSenderId());
+            insert.setString(4, message.getRecipientId());
+            insert.setString(5, message.getGroupId());
+            insert.setString(6, message.getChatType());
+            insert.setLong(7, MessageRecordCodec.sortKey(message.getTimestamp()));
+            insert.setString(8, message.getAttachmentId());
+            insert.setObject(9, message.getEditedAt() != null ? MessageRecordCodec.sortKey(message.getEditedAt()) : null);
+            insert.setString(10, conversationKey);
+            insert.executeUpdate();
+        }
+
+        synchronized void update(Message message) throws SQLException {
+            update.setString(1, message.getContent());
+            update.setLong(2, MessageRecordCodec.sortKey(message.getEditedAt()));
+            update.setString(3, message.getId());
+            update.executeUpdate();
+        }
+
+        synchronized void delete(String messageId) throws SQLException {
+            delete.setString(1, messageId);
+            delete.executeUpdate();
+        }
+
+        synchronized void close() throws SQLException {
+            readPool.close();
+            insert.close();
+            update.close();
+            delete.close();
+            writeConnection.close();
+        }
+    }
+}
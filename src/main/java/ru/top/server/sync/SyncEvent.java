@@ -0,0 +1,8 @@
+package ru.top.server.sync;
+
+import java.time.LocalDateTime;
+
+// Событие ленты в ответе GET /api/sync; для deleted content и attachmentId не заполняются
+public record SyncEvent(long seq, String type, String messageId, String chatType, String senderId, String recipientId,
+                        String groupId, String content, String attachmentId, LocalDateTime timestamp, LocalDateTime editedAt) {
+}
@@ -0,0 +1,27 @@
+package ru.top.server.sync;
+
+// Тип события ленты синхронизации
+public enum SyncEventType {
+    CREATED("created"),
+    EDITED("edited"),
+    DELETED("deleted");
+
+    private final String key;
+
+    SyncEventType(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static SyncEventType fromKey(String key) {
+        for (SyncEventType type : values()) {
+            if (type.key.equals(key)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sync event type: " + key);
+    }
+}
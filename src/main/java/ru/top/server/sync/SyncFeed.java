@@ -0,0 +1,201 @@
+package ru.top.server.sync;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.top.server.model.Message;
+import ru.top.server.store.EpochNanos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// Лента синхронизации: каждое изменение сообщения получает глобальный монотонный номер seq.
+// Строка ленты адресована аудитории: "u:<userId>" для участников личной переписки, "g:<groupId>" для группы,
+// первичный ключ (audience, seq) - поэтому выборка одной аудитории после seq - один проход по индексу.
+// Номер выделяется в базе счётчиком chat_sync_seq внутри транзакции записи: UPDATE счётчика берёт блокировку
+// записи SQLite до фиксации, поэтому у всех узлов, пишущих в chat.db, порядок фиксации совпадает с порядком seq,
+// и клиент, прочитавший seq N, не пропустит позднее зафиксированное событие с меньшим номером.
+// Гибридная рассылка: сообщение группы не больше fanout-max-members участников копируется в строки "u:" каждого
+// участника (рассылка при записи), и чтение пользователя не зависит от числа его групп. Группа, однажды
+// превысившая порог, навсегда пишется одной строкой "g:" (рассылка при чтении). Такие группы перечислены
+// в chat_sync_read_fanout; переход фиксируется вместе с первой строкой "g:" и увеличивает read_fanout_version
+// счётчика, по которой узлы обновляют свою копию набора, поэтому переход на любом узле не теряет событий
+@Component
+public class SyncFeed {
+    private static final String COLUMNS =
+            "seq, type, message_id, chat_type, sender_id, recipient_id, group_id, content, attachment_id, timestamp, edited_at";
+
+    private static final String INSERT = "INSERT INTO chat_sync_event (audience, " + COLUMNS + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Участники группы: с лимитом fanout-max-members + 1, чтобы не читать всю большую группу
+    private static final String SELECT_MEMBERS = "SELECT user_id FROM chat_user_groups WHERE group_id = ? LIMIT ?";
+
+    // Первый запрос записи в транзакции: блокировка записи и номера [seq - n + 1, seq]
+    private static final String ALLOCATE_SEQ =
+            "UPDATE chat_sync_seq SET seq = seq + ? WHERE id = 1 RETURNING seq, read_fanout_version";
+
+    // Граница чтения: последний зафиксированный seq и версия набора групп с рассылкой при чтении
+    private static final String SELECT_SEQ = "SELECT seq, read_fanout_version FROM chat_sync_seq WHERE id = 1";
+
+    private static final String SELECT_READ_FANOUT_GROUPS = "SELECT audience FROM chat_sync_read_fanout";
+
+    private static final String INSERT_READ_FANOUT_GROUP =
+            "INSERT OR IGNORE INTO chat_sync_read_fanout (audience) VALUES (?)";
+
+    private static final String BUMP_READ_FANOUT_VERSION =
+            "UPDATE chat_sync_seq SET read_fanout_version = read_fanout_version + 1 WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int fanoutMaxMembers;
+    // Копия chat_sync_read_fanout (аудитории "g:<groupId>") с версией, при которой она прочитана
+    private volatile ReadFanoutGroups readFanoutGroups = new ReadFanoutGroups(-1, Set.of());
+
+    public SyncFeed(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                    @Value("${chat.sync.fanout-max-members:50}") int fanoutMaxMembers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.fanoutMaxMembers = fanoutMaxMembers;
+    }
+
+    // Изменение сообщения (write) и его строки ленты одной транзакцией: при хранилище jpa событие ленты
+    // фиксируется тогда и только тогда, когда фиксируется сообщение
+    public void append(SyncEventType type, Message message, Runnable write) {
+        appendAll(type, () -> {
+            write.run();
+            return List.of(message);
+        });
+    }
+
+    // write сохраняет сообщения и возвращает их; строки ленты пишутся в той же транзакции, seq - по порядку списка.
+    // Повтор после SQLITE_BUSY выполняет write заново вне блокировки (WriteRetry оборачивает весь вызов).
+    // synchronized только избавляет записи одного узла от ожидания блокировки SQLite друг за другом
+    public synchronized List<Message> appendAll(SyncEventType type, Supplier<List<Message>> write) {
+        return transactionTemplate.execute(status -> {
+            List<Message> written = write.get();
+            if (written.isEmpty()) {
+                return written;
+            }
+            long[] allocated = jdbcTemplate.queryForObject(ALLOCATE_SEQ,
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, written.size());
+            long first = allocated[0] - written.size() + 1;
+            // Под блокировкой записи набор групп в базе не меняется: сверяем копию до выбора аудиторий
+            ReadFanoutGroups groups = readFanoutGroups(allocated[1]);
+            for (int i = 0; i < written.size(); i++) {
+                insert(first + i, type, written.get(i), groups);
+            }
+            return written;
+        });
+    }
+
+    private void insert(long seq, SyncEventType type, Message message, ReadFanoutGroups groups) {
+        List<String> audiences = audiences(message, groups);
+        boolean deleted = type == SyncEventType.DELETED;
+        jdbcTemplate.batchUpdate(INSERT, audiences, audiences.size(), (ps, audience) -> {
+            ps.setString(1, audience);
+            ps.setLong(2, seq);
+            ps.setString(3, type.key());
+            ps.setString(4, message.getId());
+            ps.setString(5, message.getChatType());
+            ps.setString(6, message.getSenderId());
+            ps.setString(7, message.getRecipientId());
+            ps.setString(8, message.getGroupId());
+            ps.setString(9, deleted ? null : message.getContent());
+            ps.setString(10, deleted ? null : message.getAttachmentId());
+            ps.setLong(11, EpochNanos.of(message.getTimestamp()));
+            ps.setObject(12, message.getEditedAt() != null ? EpochNanos.of(message.getEditedAt()) : null);
+        });
+    }
+
+    // События после after для пользователя и его групп, не больше limit, по возрастанию seq.
+    // Каждая аудитория - отдельный ограниченный limit проход по первичному ключу, результаты сливаются по seq
+    // Проходов столько, сколько у пользователя групп с рассылкой при чтении, плюс один - его собственная аудитория
+    public List<SyncEvent> read(String userId, List<String> groupIds, long after, int limit) {
+        // Граница и версия читаются одной строкой: группа попадает в набор той же фиксацией, что и её первая
+        // строка "g:", поэтому набор версии не старше границы покрывает все строки "g:" до upTo
+        long[] bound = jdbcTemplate.queryForObject(SELECT_SEQ, (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long upTo = bound[0];
+        ReadFanoutGroups groups = readFanoutGroups(bound[1]);
+        List<String> audiences = new ArrayList<>();
+        audiences.add(userAudience(userId));
+        for (String groupId : groupIds) {
+            String audience = Message.groupConversationKey(groupId);
+            if (groups.audiences().contains(audience)) {
+                audiences.add(audience);
+            }
+        }
+        StringBuilder sql = new StringBuilder();
+        List<Object> parameters = new ArrayList<>(audiences.size() * 4 + 1);
+        for (String audience : audiences) {
+            if (!sql.isEmpty()) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT * FROM (SELECT ").append(COLUMNS)
+                    .append(" FROM chat_sync_event WHERE audience = ? AND seq > ? AND seq <= ? ORDER BY seq LIMIT ?)");
+            parameters.add(audience);
+            parameters.add(after);
+            parameters.add(upTo);
+            parameters.add(limit);
+        }
+        if (audiences.size() > 1) {
+            sql.append(" ORDER BY seq LIMIT ?");
+            parameters.add(limit);
+        }
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            long editedAt = rs.getLong(11);
+            LocalDateTime edited = rs.wasNull() ? null : EpochNanos.toLocalDateTime(editedAt);
+            return new SyncEvent(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                    rs.getString(6), rs.getString(7), rs.getString(8), rs.getString(9),
+                    EpochNanos.toLocalDateTime(rs.getLong(10)), edited);
+        }, parameters.toArray());
+    }
+
+    private List<String> audiences(Message message, ReadFanoutGroups groups) {
+        if ("GROUP".equals(message.getChatType())) {
+            String group = Message.groupConversationKey(message.getGroupId());
+            if (!groups.audiences().contains(group)) {
+                List<String> members = jdbcTemplate.queryForList(SELECT_MEMBERS, String.class, message.getGroupId(), fanoutMaxMembers + 1);
+                if (members.size() <= fanoutMaxMembers) {
+                    List<String> audiences = new ArrayList<>(members.size());
+                    for (String member : members) {
+                        audiences.add(userAudience(member));
+                    }
+                    return audiences;
+                }
+                // Переход фиксируется вместе со строкой "g:"; остальные узлы узнают о нём по версии
+                if (jdbcTemplate.update(INSERT_READ_FANOUT_GROUP, group) > 0) {
+                    jdbcTemplate.update(BUMP_READ_FANOUT_VERSION);
+                }
+            }
+            return List.of(group);
+        }
+        String sender = userAudience(message.getSenderId());
+        String recipient = userAudience(message.getRecipientId());
+        return sender.equals(recipient) ? List.of(sender) : List.of(sender, recipient);
+    }
+
+    // Копия набора групп с рассылкой при чтении не старше version; перечитывается, только когда версия изменилась
+    private ReadFanoutGroups readFanoutGroups(long version) {
+        ReadFanoutGroups current = readFanoutGroups;
+        if (current.version() >= version) {
+            return current;
+        }
+        ReadFanoutGroups loaded = new ReadFanoutGroups(version,
+                Set.copyOf(jdbcTemplate.queryForList(SELECT_READ_FANOUT_GROUPS, String.class)));
+        readFanoutGroups = loaded;
+        return loaded;
+    }
+
+    private static String userAudience(String userId) {
+        return "u:" + userId;
+    }
+
+    private record ReadFanoutGroups(long version, Set<String> audiences) {
+    }
+}
@@ -0,0 +1,185 @@
+package ru.top.server.tail;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.top.server.event.ChatEvent;
+import ru.top.server.event.ChatEventListener;
+import ru.top.server.event.ChatEventType;
+import ru.top.server.model.Message;
+import ru.top.server.store.EpochNanos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Хвосты активных переписок и групп в памяти: последние messages-per-conversation сообщений в виде готового JSON.
+// Заполняется на пути записи MessageRoute после сохранения в хранилище (правка и удаление меняют запись на месте),
+// поэтому опрос с since внутри окна буфера отвечает без запроса к БД и без сериализации.
+// Общий объём ограничен max-bytes: при превышении вытесняются буферы, к которым дольше всего не обращались.
+// События других узлов (шина tcp) сбрасывают буфер переписки - следующая запись начнёт окно заново
+@Component
+public class ConversationTailCache implements ChatEventListener {
+    private static final Logger log = LoggerFactory.getLogger(ConversationTailCache.class);
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int capacity;
+    private final long maxBytes;
+    private final ConcurrentHashMap<String, TailBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ConversationTailCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                 @Value("${chat.tail-cache.enabled:true}") boolean enabled,
+                                 @Value("${chat.tail-cache.messages-per-conversation:64}") int capacity,
+                                 @Value("${chat.tail-cache.max-bytes:67108864}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled && capacity > 0 && maxBytes > 0;
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("chat.tail-cache.requests").tag("result", "hit")
+                .description("Since polls answered from the tail cache").register(meterRegistry);
+        this.misses = Counter.builder("chat.tail-cache.requests").tag("result", "miss")
+                .description("Since polls answered from the message store").register(meterRegistry);
+        this.evictions = Counter.builder("chat.tail-cache.evictions")
+                .description("Conversation buffers evicted to stay within the memory budget").register(meterRegistry);
+        Gauge.builder("chat.tail-cache.bytes", totalBytes, AtomicLong::get)
+                .description("Approximate memory held by cached message JSON").register(meterRegistry);
+        Gauge.builder("chat.tail-cache.conversations", buffers, Map::size)
+                .description("Conversations with a cached tail").register(meterRegistry);
+    }
+
+    // Новое сообщение (уже сохранено в хранилище); буфер переписки создаётся при первой записи
+    public void append(Message message) throws JsonProcessingException {
+        if (!enabled) {
+            return;
+        }
+        byte[] value = objectMapper.writeValueAsBytes(message);
+        long timestamp = EpochNanos.of(message.getTimestamp());
+        long[] delta = new long[1];
+        // Изменения буферов идут под блокировкой корзины карты, как и вытеснение (remove), поэтому запись
+        // не попадает в уже вытесненный буфер
+        TailBuffer buffer = buffers.compute(message.conversationKey(), (key, current) -> {
+            TailBuffer target = current != null ? current : new TailBuffer(capacity, timestamp - 1);
+            delta[0] = target.add(message.getId(), timestamp, value);
+            return target;
+        });
+        buffer.lastAccess = System.nanoTime();
+        account(delta[0]);
+    }
+
+    public void edited(Message message) throws JsonProcessingException {
+        if (!enabled) {
+            return;
+        }
+        byte[] value = objectMapper.writeValueAsBytes(message);
+        long[] delta = new long[1];
+        buffers.computeIfPresent(message.conversationKey(), (key, buffer) -> {
+            delta[0] = buffer.replace(message.getId(), value);
+            return buffer;
+        });
+        account(delta[0]);
+    }
+
+    public void deleted(Message message) {
+        if (!enabled) {
+            return;
+        }
+        long[] delta = new long[1];
+        buffers.computeIfPresent(message.conversationKey(), (key, buffer) -> {
+            delta[0] = buffer.remove(message.getId());
+            return buffer;
+        });
+        account(delta[0]);
+    }
+
+    // JSON-массив сообщений переписки новее since или null, если since вне окна буфера
+    public byte[] since(String conversationKey, LocalDateTime since) {
+        if (!enabled) {
+            return null;
+        }
+        TailBuffer buffer = buffers.get(conversationKey);
+        byte[] result = buffer != null ? buffer.since(EpochNanos.of(since)) : null;
+        if (result == null) {
+            misses.increment();
+            return null;
+        }
+        buffer.lastAccess = System.nanoTime();
+        hits.increment();
+        return result;
+    }
+
+    @Override
+    public void onEvent(ChatEvent event, boolean local) {
+        if (local || event.type() == ChatEventType.MEMBERSHIP_CHANGED
+                || event.type() == ChatEventType.USER_CREATED || event.type() == ChatEventType.GROUP_CREATED) {
+            return;
+        }
+        if (event.type() == ChatEventType.RESET) {
+            // Часть событий другого узла потеряна: неизвестно, какие буферы устарели
+            buffers.keySet().forEach(this::remove);
+            return;
+        }
+        remove(event.conversationKey());
+    }
+
+    private void remove(String conversationKey) {
+        TailBuffer removed = buffers.remove(conversationKey);
+        if (removed != null) {
+            totalBytes.addAndGet(-removed.bytes());
+        }
+    }
+
+    private void account(long delta) {
+        if (delta != 0 && totalBytes.addAndGet(delta) > maxBytes) {
+            evict();
+        }
+    }
+
+    // Вытеснение по давности обращения до 90% бюджета, чтобы не запускать его на каждой записи;
+    // одновременно работает один поток, остальные продолжают без ожидания
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long target = maxBytes / 10 * 9;
+            // Время обращения снимается заранее: во время сортировки оно может меняться
+            List<Candidate> candidates = new ArrayList<>(buffers.size());
+            buffers.forEach((key, buffer) -> candidates.add(new Candidate(key, buffer, buffer.lastAccess)));
+            candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+            int evicted = 0;
+            for (Candidate candidate : candidates) {
+                if (totalBytes.get() <= target) {
+                    break;
+                }
+                if (buffers.remove(candidate.key(), candidate.buffer())) {
+                    totalBytes.addAndGet(-candidate.buffer().bytes());
+                    evicted++;
+                }
+            }
+            evictions.increment(evicted);
+            log.debug("Evicted {} conversation tails, {} bytes cached", evicted, totalBytes.get());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private record Candidate(String key, TailBuffer buffer, long lastAccess) {
+    }
+}
@@ -0,0 +1,150 @@
+package ru.top.server.tail;
+
+// Кольцевой буфер последних сообщений одной переписки: готовый JSON каждого сообщения по возрастанию времени.
+// coveredFrom - граница окна: все сообщения переписки со временем строго больше неё лежат в буфере
+// (более ранние вытеснены или записаны до создания буфера). Методы синхронизированы на буфере
+final class TailBuffer {
+    // Приблизительные накладные расходы на запись сверх байтов JSON (объект, массив, строка id)
+    static final int ENTRY_OVERHEAD = 96;
+
+    private final String[] ids;
+    private final long[] timestamps;
+    private final byte[][] json;
+    private int head;
+    private int size;
+    private long coveredFrom;
+    private long bytes;
+    volatile long lastAccess;
+
+    TailBuffer(int capacity, long coveredFrom) {
+        this.ids = new String[capacity];
+        this.timestamps = new long[capacity];
+        this.json = new byte[capacity][];
+        this.coveredFrom = coveredFrom;
+    }
+
+    // Добавление сообщения на своё место по времени; возвращает изменение занятой памяти
+    synchronized long add(String id, long timestamp, byte[] value) {
+        if (timestamp <= coveredFrom) {
+            return 0;
+        }
+        long delta = 0;
+        if (size == ids.length) {
+            // Вытесняется самое старое: окно сдвигается до его времени
+            coveredFrom = Math.max(coveredFrom, timestamps[head]);
+            delta -= weight(head);
+            clear(head);
+            head = (head + 1) % ids.length;
+            size--;
+            if (timestamp <= coveredFrom) {
+                bytes += delta;
+                return delta;
+            }
+        }
+        // Обычно сообщение новее всех и встаёт в конец; иначе более новые сдвигаются на одну позицию
+        int position = size;
+        while (position > 0 && timestamps[slot(position - 1)] > timestamp) {
+            int from = slot(position - 1);
+            int to = slot(position);
+            ids[to] = ids[from];
+            timestamps[to] = timestamps[from];
+            json[to] = json[from];
+            position--;
+        }
+        int target = slot(position);
+        ids[target] = id;
+        timestamps[target] = timestamp;
+        json[target] = value;
+        size++;
+        delta += weight(target);
+        bytes += delta;
+        return delta;
+    }
+
+    // Новый JSON сообщения после правки (если оно ещё в окне); возвращает изменение занятой памяти
+    synchronized long replace(String id, byte[] value) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return 0;
+        }
+        int target = slot(index);
+        long delta = value.length - json[target].length;
+        json[target] = value;
+        bytes += delta;
+        return delta;
+    }
+
+    // Удаление сообщения из окна; возвращает изменение занятой памяти
+    synchronized long remove(String id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return 0;
+        }
+        long delta = -weight(slot(index));
+        for (int i = index; i < size - 1; i++) {
+            int to = slot(i);
+            int from = slot(i + 1);
+            ids[to] = ids[from];
+            timestamps[to] = timestamps[from];
+            json[to] = json[from];
+        }
+        clear(slot(size - 1));
+        size--;
+        bytes += delta;
+        return delta;
+    }
+
+    // JSON-массив сообщений новее since или null, если since раньше окна и ответ нужно брать из БД
+    synchronized byte[] since(long since) {
+        if (since < coveredFrom) {
+            return null;
+        }
+        int first = size;
+        while (first > 0 && timestamps[slot(first - 1)] > since) {
+            first--;
+        }
+        int length = 2 + Math.max(0, size - first - 1);
+        for (int i = first; i < size; i++) {
+            length += json[slot(i)].length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        result[offset++] = '[';
+        for (int i = first; i < size; i++) {
+            if (i > first) {
+                result[offset++] = ',';
+            }
+            byte[] value = json[slot(i)];
+            System.arraycopy(value, 0, result, offset, value.length);
+            offset += value.length;
+        }
+        result[offset] = ']';
+        return result;
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    private int indexOf(String id) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (id.equals(ids[slot(i)])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int slot(int index) {
+        return (head + index) % ids.length;
+    }
+
+    private long weight(int slot) {
+        return json[slot].length + ids[slot].length() + ENTRY_OVERHEAD;
+    }
+
+    private void clear(int slot) {
+        ids[slot] = null;
+        json[slot] = null;
+    }
+}
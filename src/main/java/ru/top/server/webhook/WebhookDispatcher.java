@@ -0,0 +1,324 @@
+package ru.top.server.webhook;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Доставка событий из chat_webhook_outbox на HTTP-адресаты (chat.webhooks.destinations).
+// У каждой пары (адресат, дорожка) свой курсор - id последнего доставленного события (chat_webhook_cursor).
+// Пара отправляет не больше одной пачки за раз (POST {"events": [...]}, до max-batch событий по возрастанию id),
+// поэтому события одной переписки приходят по порядку; разные пары идут параллельно в пуле из max-concurrency потоков.
+// Ответ 2xx продвигает курсор, иначе пачка повторяется с экспоненциальной задержкой и полным джиттером;
+// после max-attempts неудачных попыток (0 - без ограничения) пачка пропускается. Доставка "хотя бы раз":
+// после сбоя между ответом и записью курсора пачка придёт повторно, получатель отбрасывает дубли по id.
+// Новый адресат получает события, записанные после его появления в настройках
+@Component
+@DependsOnDatabaseInitialization
+public class WebhookDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(WebhookDispatcher.class);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final String SELECT_BATCH =
+            "SELECT id, type, conversation_key, payload, created_at FROM chat_webhook_outbox " +
+                    "WHERE lane = ? AND id > ? ORDER BY id LIMIT ?";
+    // Курсор только растёт: запоздавшая запись (другой узел или повтор после сбоя) не откатывает его назад
+    private static final String UPSERT_CURSOR =
+            "INSERT INTO chat_webhook_cursor (destination, lane, delivered_id) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (destination, lane) DO UPDATE SET delivered_id = max(delivered_id, excluded.delivered_id)";
+
+    private final WebhookOutbox outbox;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final List<String> destinations;
+    private final int maxBatch;
+    private final int maxConcurrency;
+    private final long pollIntervalMs;
+    private final long rescanIntervalMs;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final int maxAttempts;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+    private final List<Lane> states = new ArrayList<>();
+    private ExecutorService pool;
+    private volatile boolean running = true;
+    private Thread dispatcher;
+
+    // Состояние доставки одной дорожки одному адресату; меняется только потоком, занявшим busy
+    private static final class Lane {
+        final String destination;
+        final int lane;
+        final AtomicBoolean busy = new AtomicBoolean();
+        final Counter delivered;
+        final Counter failures;
+        final Counter dropped;
+        final Timer latency;
+        volatile long deliveredId;
+        volatile long retryAt;
+        int attempts;
+
+        Lane(String destination, int lane, long deliveredId, MeterRegistry meterRegistry) {
+            this.destination = destination;
+            this.lane = lane;
+            this.deliveredId = deliveredId;
+            this.delivered = meterRegistry.counter("chat.webhooks.delivered", "destination", destination);
+            this.failures = meterRegistry.counter("chat.webhooks.failures", "destination", destination);
+            this.dropped = meterRegistry.counter("chat.webhooks.dropped", "destination", destination);
+            this.latency = meterRegistry.timer("chat.webhooks.batch", "destination", destination);
+        }
+    }
+
+    private record Event(long id, String type, String conversationKey, String payload, long createdAt) {
+    }
+
+    public WebhookDispatcher(WebhookOutbox outbox, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                             @Value("${chat.webhooks.destinations:}") List<String> destinations,
+                             @Value("${chat.webhooks.max-batch:100}") int maxBatch,
+                             @Value("${chat.webhooks.max-concurrency:4}") int maxConcurrency,
+                             @Value("${chat.webhooks.poll-interval-ms:100}") long pollIntervalMs,
+                             @Value("${chat.webhooks.rescan-interval-ms:5000}") long rescanIntervalMs,
+                             @Value("${chat.webhooks.base-delay-ms:500}") long baseDelayMs,
+                             @Value("${chat.webhooks.max-delay-ms:60000}") long maxDelayMs,
+                             @Value("${chat.webhooks.max-attempts:50}") int maxAttempts,
+                             @Value("${chat.webhooks.request-timeout-ms:10000}") long requestTimeoutMs) {
+        this.outbox = outbox;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.destinations = destinations;
+        this.maxBatch = maxBatch;
+        this.maxConcurrency = maxConcurrency;
+        this.pollIntervalMs = pollIntervalMs;
+        this.rescanIntervalMs = rescanIntervalMs;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxAttempts = maxAttempts;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(Math.min(requestTimeoutMs, 5000)))
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!outbox.enabled()) {
+            return;
+        }
+        loadCursors();
+        for (String destination : destinations) {
+            Gauge.builder("chat.webhooks.lag", this, dispatcher -> dispatcher.lag(destination))
+                    .tag("destination", destination)
+                    .description("Outbox events not yet delivered to the destination").register(meterRegistry);
+        }
+        AtomicInteger threads = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-sender-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = new Thread(this::dispatchLoop, "webhook-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("Webhook delivery started: {} destinations, {} lanes", destinations.size(), outbox.lanes());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (dispatcher == null) {
+            return;
+        }
+        running = false;
+        dispatcher.interrupt();
+        dispatcher.join(5000);
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // Курсоры настроенных адресатов; новый адресат начинает с текущей головы дорожки, курсоры убранных удаляются
+    private void loadCursors() {
+        Map<String, Long> stored = new HashMap<>();
+        jdbcTemplate.query("SELECT destination, lane, delivered_id FROM chat_webhook_cursor", resultSet -> {
+            stored.put(resultSet.getString(1) + "\u0000" + resultSet.getInt(2), resultSet.getLong(3));
+        });
+        for (String destination : destinations) {
+            for (int lane = 0; lane < outbox.lanes(); lane++) {
+                Long deliveredId = stored.get(destination + "\u0000" + lane);
+                if (deliveredId == null) {
+                    deliveredId = outbox.head(lane);
+                    jdbcTemplate.update(UPSERT_CURSOR, destination, lane, deliveredId);
+                }
+                states.add(new Lane(destination, lane, deliveredId, meterRegistry));
+            }
+        }
+        List<Object[]> removed = new ArrayList<>();
+        for (String key : stored.keySet()) {
+            String destination = key.substring(0, key.indexOf('\u0000'));
+            if (!destinations.contains(destination)) {
+                removed.add(new Object[]{destination});
+            }
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM chat_webhook_cursor WHERE destination = ?", removed);
+    }
+
+    private void dispatchLoop() {
+        long nextRescan = System.currentTimeMillis() + rescanIntervalMs;
+        while (running) {
+            try {
+                Thread.sleep(pollIntervalMs);
+                long now = System.currentTimeMillis();
+                if (now >= nextRescan) {
+                    nextRescan = now + rescanIntervalMs;
+                    outbox.refreshHeads();
+                    purgeDelivered();
+                }
+                for (Lane state : states) {
+                    if (state.retryAt <= now && outbox.head(state.lane) > state.deliveredId && state.busy.compareAndSet(false, true)) {
+                        pool.execute(() -> deliver(state));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Webhook dispatch failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void deliver(Lane state) {
+        try {
+            List<Event> events = jdbcTemplate.query(SELECT_BATCH,
+                    (rs, rowNum) -> new Event(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getLong(5)),
+                    state.lane, state.deliveredId, maxBatch);
+            if (events.isEmpty()) {
+                return;
+            }
+            long lastId = events.get(events.size() - 1).id();
+            boolean sent = send(state, events);
+            if (sent) {
+                state.delivered.increment(events.size());
+            } else if (maxAttempts > 0 && state.attempts >= maxAttempts) {
+                log.error("Dropping {} webhook events ({}..{}) for {} after {} attempts",
+                        events.size(), events.get(0).id(), lastId, state.destination, state.attempts);
+                state.dropped.increment(events.size());
+            } else {
+                long delay = ThreadLocalRandom.current().nextLong(
+                        Math.min(maxDelayMs, baseDelayMs << Math.min(state.attempts - 1, 20)) + 1);
+                state.retryAt = System.currentTimeMillis() + delay;
+                return;
+            }
+            state.attempts = 0;
+            state.deliveredId = lastId;
+            jdbcTemplate.update(UPSERT_CURSOR, state.destination, state.lane, lastId);
+        } catch (Exception e) {
+            // курсор в БД отстал: после перезапуска пачка придёт повторно
+            log.error("Webhook delivery to {} failed: {}", state.destination, e.getMessage(), e);
+        } finally {
+            state.busy.set(false);
+        }
+    }
+
+    private boolean send(Lane state, List<Event> events) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(state.destination))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body(events)))
+                .build();
+        long started = System.nanoTime();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 == 2) {
+                return true;
+            }
+            log.warn("Webhook {} answered {} for {} events, attempt {}", state.destination, response.statusCode(),
+                    events.size(), state.attempts + 1);
+        } catch (IOException e) {
+            log.warn("Webhook {} unreachable: {}, attempt {}", state.destination, e.getMessage(), state.attempts + 1);
+        } finally {
+            state.latency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        state.attempts++;
+        state.failures.increment();
+        return false;
+    }
+
+    // {"events": [{"id", "type", "conversationKey", "createdAt", "message": {...}}]}; сообщение вставляется готовым JSON
+    private static byte[] body(List<Event> events) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(events.size() * 512);
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("events");
+            for (Event event : events) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", event.id());
+                generator.writeStringField("type", event.type());
+                generator.writeStringField("conversationKey", event.conversationKey());
+                generator.writeNumberField("createdAt", event.createdAt());
+                generator.writeFieldName("message");
+                generator.writeRawValue(event.payload());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    // События удаляются, когда их получили все адресаты: по дорожке - до наименьшего курсора
+    private void purgeDelivered() {
+        long[] delivered = new long[outbox.lanes()];
+        Arrays.fill(delivered, Long.MAX_VALUE);
+        for (Lane state : states) {
+            delivered[state.lane] = Math.min(delivered[state.lane], state.deliveredId);
+        }
+        List<Object[]> parameters = new ArrayList<>(delivered.length);
+        for (int lane = 0; lane < delivered.length; lane++) {
+            parameters.add(new Object[]{lane, delivered[lane]});
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM chat_webhook_outbox WHERE lane = ? AND id <= ?", parameters);
+        jdbcTemplate.update("DELETE FROM chat_webhook_outbox WHERE lane >= ?", outbox.lanes());
+    }
+
+    // Число недоставленных событий: проход по индексу (lane, id) от курсора, только при снятии метрики
+    private double lag(String destination) {
+        long lag = 0;
+        for (Lane state : states) {
+            if (state.destination.equals(destination) && outbox.head(state.lane) > state.deliveredId) {
+                Long pending = jdbcTemplate.queryForObject("SELECT count(*) FROM chat_webhook_outbox WHERE lane = ? AND id > ?",
+                        Long.class, state.lane, state.deliveredId);
+                lag += pending != null ? pending : 0;
+            }
+        }
+        return lag;
+    }
+}
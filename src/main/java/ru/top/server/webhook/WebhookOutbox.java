@@ -0,0 +1,108 @@
+package ru.top.server.webhook;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.top.server.model.Message;
+import ru.top.server.sync.SyncEventType;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Исходящая очередь событий сообщений для вебхуков (chat_webhook_outbox). Строка пишется в той же транзакции,
+// что и изменение сообщения: при хранилище jpa событие фиксируется тогда и только тогда, когда фиксируется
+// сообщение (у mmap и sharded сообщения лежат в своих файлах, там строка пишется сразу после них).
+// Переписка закреплена за дорожкой (lane) по хешу ключа: WebhookDispatcher доставляет дорожку по порядку id,
+// а разные дорожки - параллельно. SQLite пишет по одной транзакции, поэтому порядок id совпадает с порядком фиксации.
+// Без настроенных адресатов (chat.webhooks.destinations) очередь выключена и запись идёт как раньше
+@Component
+@DependsOnDatabaseInitialization
+public class WebhookOutbox {
+    private static final String INSERT =
+            "INSERT INTO chat_webhook_outbox (lane, type, conversation_key, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int lanes;
+    // Наибольший записанный id по дорожкам: диспетчер не читает БД, пока дорожка не продвинулась
+    private final AtomicLongArray heads;
+
+    public WebhookOutbox(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                         @Value("${chat.webhooks.destinations:}") List<String> destinations,
+                         @Value("${chat.webhooks.lanes:8}") int lanes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.enabled = !destinations.isEmpty();
+        this.lanes = lanes;
+        this.heads = new AtomicLongArray(lanes);
+    }
+
+    @PostConstruct
+    void open() {
+        if (!enabled) {
+            // вебхуки отключены: недоставленные события прежних адресатов больше никому не нужны
+            jdbcTemplate.update("DELETE FROM chat_webhook_outbox");
+            jdbcTemplate.update("DELETE FROM chat_webhook_cursor");
+            return;
+        }
+        refreshHeads();
+    }
+
+    // Изменение сообщения в хранилище и строка очереди одной транзакцией (или в составе внешней - SyncFeed.append)
+    public void write(SyncEventType type, Message message, Runnable storeWrite) {
+        if (!enabled) {
+            storeWrite.run();
+            return;
+        }
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        String conversationKey = message.conversationKey();
+        int lane = lane(conversationKey);
+        Long id = transactionTemplate.execute(status -> {
+            storeWrite.run();
+            jdbcTemplate.update(INSERT, lane, type.key(), conversationKey, payload, System.currentTimeMillis());
+            return jdbcTemplate.queryForObject("SELECT last_insert_rowid()", Long.class);
+        });
+        heads.accumulateAndGet(lane, id, Math::max);
+    }
+
+    // Перечитывание голов дорожек из БД: подхватывает строки, записанные другими процессами с этой же базой
+    void refreshHeads() {
+        jdbcTemplate.query("SELECT lane, max(id) FROM chat_webhook_outbox GROUP BY lane", resultSet -> {
+            int lane = resultSet.getInt(1);
+            if (lane < lanes) {
+                heads.accumulateAndGet(lane, resultSet.getLong(2), Math::max);
+            }
+        });
+    }
+
+    boolean enabled() {
+        return enabled;
+    }
+
+    int lanes() {
+        return lanes;
+    }
+
+    long head(int lane) {
+        return heads.get(lane);
+    }
+
+    private int lane(String conversationKey) {
+        return Math.floorMod(conversationKey.hashCode(), lanes);
+    }
+}
@@ -20,6 +20,8 @@ CREATE TABLE IF NOT EXISTS chat_user_groups (
                                                 FOREIGN KEY (user_id) REFERENCES chat_user(id) ON DELETE CASCADE,
                                                 FOREIGN KEY (group_id) REFERENCES chat_group(id) ON DELETE CASCADE
 );
+CREATE INDEX IF NOT EXISTS idx_chat_user_groups_user ON chat_user_groups(user_id, group_id);
+CREATE INDEX IF NOT EXISTS idx_chat_user_groups_group ON chat_user_groups(group_id, user_id);
 
 CREATE TABLE IF NOT EXISTS chat_message (
                                             id TEXT PRIMARY KEY,
@@ -29,7 +31,121 @@ CREATE TABLE IF NOT EXISTS chat_message (
                                             group_id TEXT,
                                             chat_type TEXT NOT NULL,
                                             timestamp DATETIME NOT NULL,
+                                            attachment_id TEXT,
+                                            edited_at DATETIME,
                                             FOREIGN KEY (sender_id) REFERENCES chat_user(id),
                                             FOREIGN KEY (recipient_id) REFERENCES chat_user(id),
                                             FOREIGN KEY (group_id) REFERENCES chat_group(id)
-);
\ No newline at end of file
+);
+CREATE INDEX IF NOT EXISTS idx_chat_message_group ON chat_message(group_id, timestamp);
+CREATE TABLE IF NOT EXISTS chat_read_receipt (
+                                                 conversation_key TEXT NOT NULL,
+                                                 user_id TEXT NOT NULL,
+                                                 delivered_at INTEGER NOT NULL DEFAULT 0,
+                                                 delivered_message_id TEXT,
+                                                 read_at INTEGER NOT NULL DEFAULT 0,
+                                                 read_message_id TEXT,
+                                                 PRIMARY KEY (conversation_key, user_id)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS chat_attachment (
+                                               id TEXT PRIMARY KEY,
+                                               sha256 TEXT NOT NULL,
+                                               size_bytes INTEGER NOT NULL,
+                                               content_type TEXT NOT NULL,
+                                               file_name TEXT,
+                                               uploader_id TEXT,
+                                               created_at DATETIME NOT NULL,
+                                               FOREIGN KEY (uploader_id) REFERENCES chat_user(id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_sync_event (
+                                               audience TEXT NOT NULL,
+                                               seq INTEGER NOT NULL,
+                                               type TEXT NOT NULL,
+                                               message_id TEXT NOT NULL,
+                                               chat_type TEXT NOT NULL,
+                                               sender_id TEXT,
+                                               recipient_id TEXT,
+                                               group_id TEXT,
+                                               content TEXT,
+                                               attachment_id TEXT,
+                                               timestamp INTEGER NOT NULL,
+                                               edited_at INTEGER,
+                                               PRIMARY KEY (audience, seq)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS chat_sync_seq (
+                                             id INTEGER PRIMARY KEY CHECK (id = 1),
+                                             seq INTEGER NOT NULL,
+                                             read_fanout_version INTEGER NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS chat_sync_read_fanout (
+                                                     audience TEXT PRIMARY KEY
+) WITHOUT ROWID;
+
+INSERT OR IGNORE INTO chat_sync_read_fanout (audience)
+WITH RECURSIVE g(audience) AS (
+    SELECT min(audience) FROM chat_sync_event WHERE audience >= 'g:' AND audience < 'g;'
+    UNION ALL SELECT (SELECT min(audience) FROM chat_sync_event WHERE audience > g.audience AND audience < 'g;')
+    FROM g WHERE g.audience IS NOT NULL)
+SELECT audience FROM g WHERE audience IS NOT NULL;
+
+INSERT OR IGNORE INTO chat_sync_seq (id, seq, read_fanout_version)
+SELECT 1, coalesce(max(seq), 0), 0 FROM chat_sync_event;
+
+CREATE TABLE IF NOT EXISTS chat_message_reaction (
+                                                     message_id TEXT NOT NULL,
+                                                     emoji TEXT NOT NULL,
+                                                     count INTEGER NOT NULL,
+                                                     PRIMARY KEY (message_id, emoji)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS chat_message_reactor (
+                                                    message_id TEXT NOT NULL,
+                                                    user_id TEXT NOT NULL,
+                                                    emoji TEXT NOT NULL,
+                                                    PRIMARY KEY (message_id, user_id, emoji)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS chat_revoked_token (
+                                                  jti TEXT PRIMARY KEY,
+                                                  expires_at INTEGER NOT NULL
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS chat_token_cutoff (
+                                                 username TEXT PRIMARY KEY,
+                                                 revoked_before INTEGER NOT NULL,
+                                                 expires_at INTEGER NOT NULL
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS chat_webhook_outbox (
+                                                   id INTEGER PRIMARY KEY AUTOINCREMENT,
+                                                   lane INTEGER NOT NULL,
+                                                   type TEXT NOT NULL,
+                                                   conversation_key TEXT NOT NULL,
+                                                   payload TEXT NOT NULL,
+                                                   created_at INTEGER NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_chat_webhook_outbox_lane ON chat_webhook_outbox(lane, id);
+
+CREATE TABLE IF NOT EXISTS chat_webhook_cursor (
+                                                   destination TEXT NOT NULL,
+                                                   lane INTEGER NOT NULL,
+                                                   delivered_id INTEGER NOT NULL,
+                                                   PRIMARY KEY (destination, lane)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS chat_scheduled_message (
+                                                      id TEXT PRIMARY KEY,
+                                                      sender_id TEXT NOT NULL,
+                                                      recipient_id TEXT,
+                                                      group_id TEXT,
+                                                      content TEXT NOT NULL,
+                                                      attachment_id TEXT,
+                                                      deliver_at INTEGER NOT NULL,
+                                                      created_at INTEGER NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_chat_scheduled_message_deliver_at ON chat_scheduled_message(deliver_at, id);
+CREATE INDEX IF NOT EXISTS idx_chat_scheduled_message_sender ON chat_scheduled_message(sender_id, deliver_at);
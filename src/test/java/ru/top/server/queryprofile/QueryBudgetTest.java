@@ -0,0 +1,275 @@
+package ru.top.server.queryprofile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.top.server.queryprofile.QueryProfileConfiguration.QueryProfileEndpoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Бюджеты SQL по эндпоинтам: сервер на временной базе SQLite заполняется (три пользователя, группа, переписка),
+// затем каждый эндпоинт вызывается с заголовком X-Query-Profile. Число SQL-операторов запроса (QueryProfile:
+// и Hibernate, и JdbcTemplate, включая проверку JWT) и загрузок сущностей (статистика Hibernate) сравнивается
+// с query-budgets.properties на точное совпадение. Лишний запрос (N+1 по LAZY-связи, повторный findByUsername)
+// или исчезнувший запрос роняет mvn test, в отчёте - SQL запроса.
+// После намеренного изменения запросов: mvn test -Dtest=QueryBudgetTest -Dquery-budgets.update=true,
+// диф src/test/resources/query-budgets.properties просматривается на ревью
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "chat.query-profile.enabled=true",
+        "chat.rate-limit.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "management.server.port=-1",
+        "camel.springboot.main-run-controller=false"})
+class QueryBudgetTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String PASSWORD = "budget-password";
+    private static final Path BUDGETS = Path.of("src/test/resources/query-budgets.properties");
+
+    private record Profile(int statements, long entityLoads, List<String> sql) {
+    }
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) throws IOException {
+        Path directory = Files.createTempDirectory("chat-query-budget");
+        directory.toFile().deleteOnExit();
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + directory.resolve("chat.db"));
+        // Каталоги хранилищ - тоже во временном каталоге, чтобы mvn test ничего не создавал в рабочем дереве
+        registry.add("chat.attachments.directory", () -> directory.resolve("attachments").toString());
+        registry.add("chat.backup.directory", () -> directory.resolve("backups").toString());
+        registry.add("chat.message-store.mmap.directory", () -> directory.resolve("message-log").toString());
+        registry.add("chat.message-store.sharded.directory", () -> directory.resolve("message-shards").toString());
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private QueryProfileEndpoint profileEndpoint;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, Profile> profiles = new LinkedHashMap<>();
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void endpointsMatchQueryBudgets() throws Exception {
+        String alice = call(post("/api/users/register", null, Map.of("username", "alice", "password", PASSWORD))).path("id").asText();
+        String bob = call(post("/api/users/register", null, Map.of("username", "bob", "password", PASSWORD))).path("id").asText();
+        String carol = call(post("/api/users/register", null, Map.of("username", "carol", "password", PASSWORD))).path("id").asText();
+        String aliceToken = login("alice");
+        String bobToken = login("bob");
+        String carolToken = login("carol");
+        String groupId = call(post("/api/groups/create", aliceToken, Map.of("name", "budget-group"))).path("id").asText();
+        call(post("/api/groups/join", bobToken, Map.of("groupId", groupId)));
+        for (int i = 0; i < 5; i++) {
+            call(sendPrivate(aliceToken, alice, bob, "hello bob " + i));
+            call(sendPrivate(bobToken, bob, alice, "hello alice " + i));
+            call(sendGroup(bobToken, bob, groupId, "hello group " + i));
+        }
+
+        profile("register", post("/api/users/register", null, Map.of("username", "dave", "password", PASSWORD)));
+        String loginToken = MAPPER.readTree(profile("login", post("/api/auth/login", null,
+                Map.of("username", "alice", "password", PASSWORD)))).path("token").asText();
+        profile("myInfo", get("/api/users/myInfo", aliceToken));
+        profile("userById", get("/api/users/" + bob, aliceToken));
+        profile("users", get("/api/users", aliceToken));
+        profile("usersCount", get("/api/users/count", aliceToken));
+        profile("usersSearch", get("/api/users/search?prefix=b", aliceToken));
+        profile("groupCreate", post("/api/groups/create", aliceToken, Map.of("name", "budget-group-2")));
+        profile("groups", get("/api/groups", aliceToken));
+        profile("groupsSearch", get("/api/groups/search?prefix=budget", aliceToken));
+        profile("groupJoin", post("/api/groups/join", carolToken, Map.of("groupId", groupId)));
+        profile("sendPrivate", sendPrivate(aliceToken, alice, bob, "hello again"));
+        profile("sendGroup", sendGroup(aliceToken, alice, groupId, "hello again group"));
+        JsonNode conversation = MAPPER.readTree(profile("conversation",
+                get("/api/messages/private/conversation/" + bob + "?since=" + encode("2000-01-01T00:00:00"), aliceToken)));
+        profile("history", get("/api/messages/private/history/" + bob, aliceToken));
+        profile("groupMessages", get("/api/messages/group/" + groupId, aliceToken));
+        profile("search", get("/api/messages/search?keyword=hello", aliceToken));
+
+        JsonNode own = null;
+        JsonNode received = null;
+        for (JsonNode message : conversation) {
+            if (alice.equals(message.path("senderId").asText())) {
+                own = message;
+            } else {
+                received = message;
+            }
+        }
+        if (own == null || received == null) {
+            fail("Seeded conversation is missing messages: " + conversation);
+        }
+        String ownId = own.path("id").asText();
+        profile("edit", post("/api/messages/edit", aliceToken,
+                Map.of("messageId", ownId, "otherUserId", bob, "content", "edited")));
+        profile("reactionToggle", post("/api/messages/reactions", aliceToken,
+                Map.of("messageId", ownId, "otherUserId", bob, "emoji", "+1")));
+        profile("reactions", get("/api/messages/reactions?messageIds=" + ownId + "&otherUserId=" + bob, aliceToken));
+        profile("receipt", post("/api/messages/private/receipts", aliceToken,
+                Map.of("otherUserId", bob, "messageId", received.path("id").asText(), "status", "read")));
+        profile("receipts", get("/api/messages/private/receipts/" + bob, aliceToken));
+        profile("heartbeat", post("/api/presence/heartbeat", aliceToken, Map.of()));
+        profile("presence", get("/api/presence?userIds=" + bob + "," + carol, aliceToken));
+        profile("sync", get("/api/sync?after=0", aliceToken));
+        profile("export", get("/api/messages/export", aliceToken));
+        profile("delete", post("/api/messages/delete", aliceToken, Map.of("messageId", ownId, "otherUserId", bob)));
+        profile("logout", post("/api/auth/logout", loginToken, Map.of()));
+
+        if (Boolean.getBoolean("query-budgets.update")) {
+            writeBudgets();
+            return;
+        }
+        Properties budgets = new Properties();
+        try (InputStream in = QueryBudgetTest.class.getResourceAsStream("/query-budgets.properties")) {
+            if (in != null) {
+                budgets.load(in);
+            }
+        }
+        StringBuilder report = new StringBuilder();
+        int failed = 0;
+        for (Map.Entry<String, Profile> entry : profiles.entrySet()) {
+            String endpoint = entry.getKey();
+            Profile profile = entry.getValue();
+            String statementBudget = budgets.getProperty(endpoint + ".statements");
+            String entityBudget = budgets.getProperty(endpoint + ".entity-loads");
+            if (String.valueOf(profile.statements()).equals(statementBudget) && String.valueOf(profile.entityLoads()).equals(entityBudget)) {
+                continue;
+            }
+            failed++;
+            report.append(String.format("%n%s: %d statements (budget %s), %d entity loads (budget %s)%n", endpoint,
+                    profile.statements(), statementBudget, profile.entityLoads(), entityBudget));
+            for (String sql : profile.sql()) {
+                report.append("  ").append(sql).append('\n');
+            }
+        }
+        assertTrue(failed == 0, failed + " of " + profiles.size() + " endpoints do not match their query budget" + report);
+    }
+
+    // Вызов с профилированием; возвращает тело ответа
+    private String profile(String endpoint, HttpRequest request) throws IOException, InterruptedException {
+        HttpRequest profiled = HttpRequest.newBuilder(request, (name, value) -> true)
+                .header("X-Query-Profile", endpoint)
+                .build();
+        statistics.clear();
+        String body = send(profiled);
+        profiles.put(endpoint, awaitProfile(endpoint));
+        return body;
+    }
+
+    // Профиль сохраняется, когда фильтр завершился - это может случиться чуть позже отправки ответа
+    private Profile awaitProfile(String endpoint) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Map<String, Object> profile = profileEndpoint.profile(endpoint);
+            if (profile != null) {
+                @SuppressWarnings("unchecked")
+                List<String> sql = (List<String>) profile.get("sql");
+                return new Profile((Integer) profile.get("statements"), statistics.getEntityLoadCount(), sql);
+            }
+            Thread.sleep(10);
+        }
+        return fail("No query profile recorded for " + endpoint);
+    }
+
+    private String login(String username) throws IOException, InterruptedException {
+        return call(post("/api/auth/login", null, Map.of("username", username, "password", PASSWORD))).path("token").asText();
+    }
+
+    private HttpRequest sendPrivate(String token, String senderId, String recipientId, String content) {
+        return post("/api/messages/private", token, Map.of("content", content, "senderId", senderId, "recipientId", recipientId));
+    }
+
+    private HttpRequest sendGroup(String token, String senderId, String groupId, String content) {
+        return post("/api/messages/group", token, Map.of("content", content, "senderId", senderId, "groupId", groupId));
+    }
+
+    private JsonNode call(HttpRequest request) throws IOException, InterruptedException {
+        return MAPPER.readTree(send(request));
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            fail(request.method() + " " + request.uri() + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private HttpRequest post(String path, String token, Map<String, ?> body) {
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)));
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private void writeBudgets() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(BUDGETS, StandardCharsets.UTF_8)) {
+            writer.write("#SQL statements and entity loads per request, checked exactly by ru.top.server.queryprofile.QueryBudgetTest.\n");
+            writer.write("#Regenerate with mvn test -Dtest=QueryBudgetTest -Dquery-budgets.update=true and review the diff\n");
+            for (Map.Entry<String, Profile> entry : profiles.entrySet()) {
+                writer.write(entry.getKey() + ".statements=" + entry.getValue().statements() + "\n");
+                writer.write(entry.getKey() + ".entity-loads=" + entry.getValue().entityLoads() + "\n");
+            }
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}